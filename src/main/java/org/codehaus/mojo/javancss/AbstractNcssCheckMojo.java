@@ -0,0 +1,117 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * Base class of the goals checking the methods of the sources against a CCN and a NCSS limit.
+ *
+ * @version $Id$
+ */
+public abstract class AbstractNcssCheckMojo extends AbstractMojo {
+    /**
+     * Whether to fail the build if the validation check fails.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean failOnViolation;
+
+    /**
+     * CCN Limit, any code with a ccn greater than this number will generate a violation
+     */
+    @Parameter(defaultValue = "10")
+    private int ccnLimit;
+
+    /**
+     * ncss Limit, any code with a ncss greater than this number will generate a violation
+     */
+    @Parameter(defaultValue = "100")
+    private int ncssLimit;
+
+    /**
+     * Skip entire check.
+     *
+     * @since 2.1
+     */
+    // FIXME : same variable, same value in NCSSReportMojo...
+    @Parameter(property = "ncss.skip", defaultValue = "false")
+    private boolean skip;
+
+    /**
+     * Gets whether the check is skipped
+     * @return boolean
+     */
+    protected boolean isSkip() {
+        return skip;
+    }
+
+    /**
+     * Checks the methods against the CCN and NCSS limits, and fails the build if told so.
+     * @param functions the methods to check
+     * @throws MojoFailureException if a method exceeds a limit and the build fails on violations
+     */
+    protected void checkLimits(List<NcssFunction> functions) throws MojoFailureException {
+        String violation = warnLimits(functions);
+        if (violation != null && failOnViolation) {
+            throw new MojoFailureException(violation);
+        }
+    }
+
+    /**
+     * Checks the methods against the CCN and NCSS limits, and only logs the violations.
+     * @param functions the methods to check
+     * @return the first violation message, or <code>null</code> if no method exceeds a limit
+     */
+    protected String warnLimits(List<NcssFunction> functions) {
+        // Count ccn & ncss violations, once per method name
+        NcssFunctionRows rows = NcssFunctionRows.of(functions);
+        BitSet ccnViolation = new BitSet();
+        for (int index : rows.exceeding(NcssFunctionRows.CCN, ccnLimit)) {
+            ccnViolation.set(rows.getNameId(index));
+        }
+        BitSet ncssViolation = new BitSet();
+        for (int index : rows.exceeding(NcssFunctionRows.NCSS, ncssLimit)) {
+            ncssViolation.set(rows.getNameId(index));
+        }
+        // crappy....
+        String ccn = reportViolation("ccn", ccnViolation, rows.getNames(), ccnLimit);
+        String ncss = reportViolation("ncss", ncssViolation, rows.getNames(), ncssLimit);
+        return (ccn != null) ? ccn : ncss;
+    }
+
+    private String reportViolation(String statName, BitSet violationSet, NcssNames names, int limit) {
+        getLog().debug(statName + " Violation = " + violationSet.cardinality());
+        if (violationSet.isEmpty()) {
+            return null;
+        }
+        String violationString = "Your code has " + violationSet.cardinality() + " method(s) with a " + statName
+                + " greater than " + limit;
+        getLog().warn(violationString);
+        for (int id = violationSet.nextSetBit(0); id >= 0; id = violationSet.nextSetBit(id + 1)) {
+            getLog().warn("    " + names.get(id));
+        }
+        return violationString;
+    }
+}
@@ -169,6 +169,56 @@ public abstract class AbstractNcssReportGenerator {
         sink.tableRow_();
     }
 
+    /**
+     * Creates a header row for distributions: the given columns, then the percentiles and the maximum of each metric.
+     * @param headers Array of header text keys of the first columns
+     * @param metrics Array of header text keys of the metrics
+     */
+    protected void createDistributionHeader(String[] headers, String... metrics) {
+        sink.tableRow();
+        for (String header : headers) {
+            headerCellHelper(getString(header));
+        }
+        for (String metric : metrics) {
+            for (int percent : NcssHistogram.PERCENTILES) {
+                headerCellHelper(MessageFormat.format(
+                        getString("report.javancss.header.percentile"), getString(metric), percent));
+            }
+            headerCellHelper(MessageFormat.format(getString("report.javancss.header.max"), getString(metric)));
+        }
+        sink.tableRow_();
+    }
+
+    /**
+     * Creates the percentile and maximum cells of a distribution.
+     * @param histogram the distribution
+     */
+    protected void histogramCells(NcssHistogram histogram) {
+        for (int percent : NcssHistogram.PERCENTILES) {
+            tableCellHelper(String.valueOf(histogram.getPercentile(percent)));
+        }
+        tableCellHelper(String.valueOf(histogram.getMax()));
+    }
+
+    /**
+     * Creates the method count, CCN and NCSS cells of a distribution.
+     * @param distribution the distribution
+     */
+    protected void functionDistributionCells(NcssDistribution distribution) {
+        tableCellHelper(String.valueOf(distribution.getFunctionCcn().getCount()));
+        histogramCells(distribution.getFunctionCcn());
+        histogramCells(distribution.getFunctionNcss());
+    }
+
+    /**
+     * Creates the class count and NCSS cells of a distribution.
+     * @param distribution the distribution
+     */
+    protected void objectDistributionCells(NcssDistribution distribution) {
+        tableCellHelper(String.valueOf(distribution.getObjectNcss().getCount()));
+        histogramCells(distribution.getObjectNcss());
+    }
+
     /**
      * Starts a section
      * @param link anchor link to section
@@ -235,6 +285,7 @@ public abstract class AbstractNcssReportGenerator {
             "report.javancss.package.link",
             "report.javancss.object.link",
             "report.javancss.function.link",
+            "report.javancss.distribution.link",
             "report.javancss.explanation.link"
         };
 
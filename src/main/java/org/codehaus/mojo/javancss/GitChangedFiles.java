@@ -0,0 +1,125 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lists the files of a git working copy which changed since a ref, by calling the <code>git</code> command line.<br>
+ * The changes are taken against the merge base of the ref and <code>HEAD</code>, like a pull request shows them,
+ * and include uncommitted and untracked files. Deleted files are left out.
+ *
+ * @version $Id$
+ */
+public final class GitChangedFiles {
+    private GitChangedFiles() {
+        // utility class
+    }
+
+    /**
+     * Lists the files below a directory which changed since a ref.
+     *
+     * @param directory a directory inside the working copy.
+     * @param baseRef the ref to compare with, e.g. <code>origin/main</code>.
+     * @return the paths of the changed files, relative to the directory.
+     * @throws IOException if git can't be run or fails.
+     */
+    public static List<String> list(File directory, String baseRef) throws IOException {
+        String mergeBase = git(directory, "merge-base", baseRef, "HEAD").get(0);
+        Set<String> paths = new LinkedHashSet<>();
+        // --relative: paths relative to the directory, and only below it
+        paths.addAll(git(directory, "diff", "-z", "--name-only", "--relative", "--diff-filter=d", mergeBase));
+        paths.addAll(git(directory, "ls-files", "-z", "--others", "--exclude-standard"));
+        return new ArrayList<>(paths);
+    }
+
+    /**
+     * Keeps the paths matching the include and exclude patterns, the same way the report scans the source directory.
+     *
+     * @param directory the directory the paths are relative to.
+     * @param paths the relative paths, with <code>/</code> as separator.
+     * @param includes the ant-style include patterns, <code>null</code> for all java files.
+     * @param excludes the ant-style exclude patterns, may be <code>null</code>.
+     * @return the matching files.
+     */
+    public static List<File> select(File directory, List<String> paths, String[] includes, String[] excludes) {
+        return new SourceScanner(directory, includes, excludes).select(paths);
+    }
+
+    /**
+     * Runs git and splits its output on NUL characters, or on line ends for the commands without <code>-z</code>.
+     * The errors go to a file, so that git never blocks on a full error pipe while its output is read.
+     */
+    private static List<String> git(File directory, String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add("git");
+        command.addAll(Arrays.asList(args));
+        File errors = File.createTempFile("javancss-git", ".err");
+        String output;
+        try {
+            Process process = new ProcessBuilder(command)
+                    .directory(directory)
+                    .redirectError(errors)
+                    .start();
+            process.getOutputStream().close();
+            output = read(process.getInputStream());
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                String error = new String(Files.readAllBytes(errors.toPath()), StandardCharsets.UTF_8);
+                throw new IOException(
+                        "git " + String.join(" ", args) + " failed with exit code " + exitCode + ": " + error.trim());
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running git", ie);
+        } finally {
+            Files.deleteIfExists(errors.toPath());
+        }
+        List<String> result = new ArrayList<>();
+        for (String item : output.split(Arrays.asList(args).contains("-z") ? "\\u0000" : "\\r?\\n")) {
+            if (!item.isEmpty()) {
+                result.add(item);
+            }
+        }
+        return result;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try (InputStream input = in) {
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
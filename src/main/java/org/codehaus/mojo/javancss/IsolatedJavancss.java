@@ -0,0 +1,260 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.List;
+import javancss.FunctionMetric;
+import javancss.Javancss;
+import javancss.Metric;
+import javancss.ObjectMetric;
+import javancss.PackageMetric;
+
+/**
+ * Runs JavaNCSS inside a class loader of its own.<br>
+ * JavaNCSS counts comments in static fields of its token manager, so two analyses running at the same time in the
+ * same class loader corrupt each other's comment metrics. Each instance loads its own copy of the
+ * <code>javancss.*</code> classes; an instance must only be used by one thread at a time.
+ *
+ * @version $Id$
+ */
+public class IsolatedJavancss {
+    private static final String JAVANCSS_PACKAGE = "javancss.";
+
+    private static final String WARM_UP_SOURCE = "class WarmUp { /** run */ void run() { if (true) { run(); } } }";
+
+    private final Class<?> javancssClass;
+
+    private final Class<?> metricClass;
+
+    private final Class<?> packageMetricClass;
+
+    private final Class<?> objectMetricClass;
+
+    private final Class<?> functionMetricClass;
+
+    /**
+     * Creates a new isolated JavaNCSS, loading the JavaNCSS classes from the same location as the plugin does.
+     */
+    public IsolatedJavancss() {
+        URL location = Javancss.class.getProtectionDomain().getCodeSource().getLocation();
+        ClassLoader loader = new JavancssClassLoader(location, IsolatedJavancss.class.getClassLoader());
+        try {
+            javancssClass = loader.loadClass(Javancss.class.getName());
+            metricClass = loader.loadClass(Metric.class.getName());
+            packageMetricClass = loader.loadClass(PackageMetric.class.getName());
+            objectMetricClass = loader.loadClass(ObjectMetric.class.getName());
+            functionMetricClass = loader.loadClass(FunctionMetric.class.getName());
+        } catch (ClassNotFoundException cnfe) {
+            throw new IllegalStateException("Can't load JavaNCSS from " + location, cnfe);
+        }
+    }
+
+    /**
+     * Runs the isolated JavaNCSS once on a tiny source, so that the cost of loading and initializing its classes is
+     * not charged to the first files it analyzes.
+     *
+     * @throws ReflectiveOperationException if the isolated JavaNCSS can't be called.
+     */
+    public void warmUp() throws ReflectiveOperationException {
+        try {
+            javancssClass.getConstructor(Reader.class).newInstance(new StringReader(WARM_UP_SOURCE));
+        } catch (InvocationTargetException ite) {
+            throw unwrap(ite);
+        }
+    }
+
+    /**
+     * Analyzes a set of files.
+     *
+     * @param files the files to analyze.
+     * @param encoding the encoding of the files, <code>null</code> for the platform encoding.
+     * @return the metrics of the files.
+     * @throws ReflectiveOperationException if the isolated JavaNCSS can't be called.
+     */
+    public Result analyze(List<File> files, String encoding) throws ReflectiveOperationException {
+        Object javancss;
+        try {
+            javancss = javancssClass.getConstructor(List.class, String.class).newInstance(files, encoding);
+        } catch (InvocationTargetException ite) {
+            throw unwrap(ite);
+        }
+
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (Object metric : (List<?>) invoke(javancss, "getPackageMetrics")) {
+            builder.addPackage(new NcssPackage(
+                    getName(metric),
+                    getInt(packageMetricClass, metric, "classes"),
+                    getInt(packageMetricClass, metric, "functions"),
+                    getInt(metricClass, metric, "ncss"),
+                    getInt(metricClass, metric, "javadocs"),
+                    getInt(metricClass, metric, "javadocsLn"),
+                    getInt(metricClass, metric, "singleLn"),
+                    getInt(metricClass, metric, "multiLn")));
+        }
+        for (Object metric : (List<?>) invoke(javancss, "getObjectMetrics")) {
+            builder.addObject(new NcssObject(
+                    getName(metric),
+                    getInt(metricClass, metric, "ncss"),
+                    getInt(objectMetricClass, metric, "functions"),
+                    getInt(objectMetricClass, metric, "classes"),
+                    getInt(metricClass, metric, "javadocs"),
+                    getInt(metricClass, metric, "javadocsLn"),
+                    getInt(metricClass, metric, "singleLn"),
+                    getInt(metricClass, metric, "multiLn")));
+        }
+        for (Object metric : (List<?>) invoke(javancss, "getFunctionMetrics")) {
+            builder.addFunction(new NcssFunction(
+                    getName(metric),
+                    getInt(metricClass, metric, "ncss"),
+                    getInt(functionMetricClass, metric, "ccn"),
+                    getInt(metricClass, metric, "javadocs")));
+        }
+        return new Result(builder.build(), (Throwable) invoke(javancss, "getLastError"), (String)
+                invoke(javancss, "getLastErrorMessage"));
+    }
+
+    private String getName(Object metric) throws ReflectiveOperationException {
+        return (String) metricClass.getField("name").get(metric);
+    }
+
+    private static int getInt(Class<?> type, Object source, String name) throws ReflectiveOperationException {
+        Field field = type.getField(name);
+        return field.getInt(source);
+    }
+
+    private Object invoke(Object javancss, String name) throws ReflectiveOperationException {
+        Method method = javancssClass.getMethod(name);
+        try {
+            return method.invoke(javancss);
+        } catch (InvocationTargetException ite) {
+            throw unwrap(ite);
+        }
+    }
+
+    private static ReflectiveOperationException unwrap(InvocationTargetException ite) {
+        Throwable cause = ite.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return ite;
+    }
+
+    /**
+     * The metrics of one analysis, with the last error JavaNCSS hit.
+     */
+    public static class Result {
+        private final NcssMetrics metrics;
+
+        private final Throwable lastError;
+
+        private final String lastErrorMessage;
+
+        private final int failedFile;
+
+        /**
+         * Creates the result of an analysis.
+         *
+         * @param metrics the metrics.
+         * @param lastError the last error JavaNCSS hit, <code>null</code> if none.
+         * @param lastErrorMessage the message of the last error.
+         */
+        public Result(NcssMetrics metrics, Throwable lastError, String lastErrorMessage) {
+            this(metrics, lastError, lastErrorMessage, -1);
+        }
+
+        /**
+         * Creates the result of an analysis which stopped at a known file: the metrics are those of the files before
+         * it.
+         */
+        /* package */ Result(NcssMetrics metrics, Throwable lastError, String lastErrorMessage, int failedFile) {
+            this.metrics = metrics;
+            this.lastError = lastError;
+            this.lastErrorMessage = lastErrorMessage;
+            this.failedFile = failedFile;
+        }
+
+        /**
+         * Gets the metrics
+         * @return NcssMetrics
+         */
+        public NcssMetrics getMetrics() {
+            return metrics;
+        }
+
+        /**
+         * Gets the last error JavaNCSS hit, loaded by the isolated class loader.
+         * @return Throwable or <code>null</code>
+         */
+        public Throwable getLastError() {
+            return lastError;
+        }
+
+        /**
+         * Gets the message of the last error JavaNCSS hit
+         * @return String
+         */
+        public String getLastErrorMessage() {
+            return lastErrorMessage;
+        }
+
+        /**
+         * Gets the index of the file the analysis stopped at, <code>-1</code> if the failing file isn't known
+         * @return int
+         */
+        /* package */ int getFailedFile() {
+            return failedFile;
+        }
+    }
+
+    // child-first for the JavaNCSS classes only, everything else comes from the plugin class loader
+    private static final class JavancssClassLoader extends URLClassLoader {
+        private JavancssClassLoader(URL location, ClassLoader parent) {
+            super(new URL[] {location}, parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(JAVANCSS_PACKAGE)) {
+                return super.loadClass(name, resolve);
+            }
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> loaded = findLoadedClass(name);
+                if (loaded == null) {
+                    loaded = findClass(name);
+                }
+                if (resolve) {
+                    resolveClass(loaded);
+                }
+                return loaded;
+            }
+        }
+    }
+}
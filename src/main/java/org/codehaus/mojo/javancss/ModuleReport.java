@@ -20,7 +20,6 @@ package org.codehaus.mojo.javancss;
  */
 
 import org.apache.maven.project.MavenProject;
-import org.dom4j.Document;
 
 /**
  * A bean which holds a child project and its associated JavaNCSS raw report.
@@ -37,32 +36,32 @@ public class ModuleReport {
     /**
      * The Report associated with the MavenProject
      */
-    private Document report;
+    private NcssMetrics report;
 
     /**
      * Creates a new module report
      * @param project project
-     * @param document document
+     * @param metrics metrics
      */
-    public ModuleReport(MavenProject project, Document document) {
+    public ModuleReport(MavenProject project, NcssMetrics metrics) {
         module = project;
-        report = document;
+        report = metrics;
     }
 
     /**
-     * Gets the report document
-     * @return document
+     * Gets the report metrics
+     * @return metrics
      */
-    public Document getJavancssDocument() {
+    public NcssMetrics getMetrics() {
         return report;
     }
 
     /**
      * Sets this modules report
-     * @param javancssDocument report
+     * @param metrics report
      */
-    public void setReport(Document javancssDocument) {
-        this.report = javancssDocument;
+    public void setReport(NcssMetrics metrics) {
+        this.report = metrics;
     }
 
     /**
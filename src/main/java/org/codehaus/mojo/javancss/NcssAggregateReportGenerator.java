@@ -25,8 +25,6 @@ import java.util.ResourceBundle;
 
 import org.apache.maven.doxia.sink.Sink;
 import org.apache.maven.plugin.logging.Log;
-import org.dom4j.Document;
-import org.dom4j.Node;
 
 /**
  * Generates the JavaNCSS aggregate report.
@@ -70,6 +68,11 @@ public class NcssAggregateReportGenerator extends AbstractNcssReportGenerator {
         doModuleAnalysis(moduleReports);
         endSection();
 
+        // distributions
+        startSection("report.javancss.distribution.link", "report.javancss.distribution.title");
+        doModuleDistributions(moduleReports);
+        endSection();
+
         getSink().body_();
         getSink().close();
     }
@@ -92,43 +95,24 @@ public class NcssAggregateReportGenerator extends AbstractNcssReportGenerator {
         createTableHeader(headers);
 
         // Initialize counters
-        int packages = 0, classes = 0, methods = 0, ncss = 0;
-        int javadocs = 0, jdlines = 0, single = 0, multi = 0;
+        int packages = 0;
+        NcssPackage sum = new NcssPackage(null, 0, 0, 0, 0, 0, 0, 0);
 
         // Data rows
         for (ModuleReport report : reports) {
-            Document document = report.getJavancssDocument();
+            NcssTotals totals = report.getMetrics().getTotals();
             getSink().tableRow();
 
             getLog().debug("Aggregating " + report.getModule().getArtifactId());
             tableCellHelper(report.getModule().getArtifactId());
 
             // Package count
-            int packageSize =
-                    document.selectNodes("//javancss/packages/package").size();
-            packages += packageSize;
-            tableCellHelper(String.valueOf(packageSize));
-
-            // Get totals node
-            Node node = document.selectSingleNode("//javancss/packages/total");
-
-            // Process each metric
-            String[] metrics = {
-                "classes",
-                "functions",
-                "ncss",
-                "javadocs",
-                "javadoc_lines",
-                "single_comment_lines",
-                "multi_comment_lines"
-            };
-            int[] sums = {classes, methods, ncss, javadocs, jdlines, single, multi};
-
-            for (int i = 0; i < metrics.length; i++) {
-                String value = node.valueOf(metrics[i]);
-                tableCellHelper(value);
-                sums[i] += Integer.parseInt(value);
-            }
+            packages += totals.getPackageCount();
+            tableCellHelper(String.valueOf(totals.getPackageCount()));
+
+            NcssPackage total = totals.getPackageTotal();
+            packageCells(total);
+            sum = sum.add(total);
 
             getSink().tableRow_();
         }
@@ -136,22 +120,67 @@ public class NcssAggregateReportGenerator extends AbstractNcssReportGenerator {
         // Totals row
         getSink().tableRow();
         tableCellHelper(getString("report.javancss.header.totals"));
-        String[] totals = {
-            String.valueOf(packages),
-            String.valueOf(classes),
-            String.valueOf(methods),
-            String.valueOf(ncss),
-            String.valueOf(javadocs),
-            String.valueOf(jdlines),
-            String.valueOf(single),
-            String.valueOf(multi)
-        };
+        tableCellHelper(String.valueOf(packages));
+        packageCells(sum);
+        getSink().tableRow_();
+
+        endTable();
+    }
 
-        for (String total : totals) {
-            tableCellHelper(total);
+    private void doModuleDistributions(List<ModuleReport> reports) {
+        paragraphHelper(getString("report.javancss.distribution.module.text"));
+        NcssDistribution total = new NcssDistribution(null);
+        for (ModuleReport report : reports) {
+            total.addAll(report.getMetrics().getDistributions().getTotal());
+        }
+
+        subtitleHelper(getString("report.javancss.distribution.function"));
+        startTable();
+        createDistributionHeader(
+                new String[] {"report.javancss.header.module", "report.javancss.header.function"},
+                "report.javancss.header.ccn",
+                "report.javancss.header.ncss");
+        for (ModuleReport report : reports) {
+            NcssDistribution distribution =
+                    report.getMetrics().getDistributions().getTotal();
+            getSink().tableRow();
+            tableCellHelper(report.getModule().getArtifactId());
+            functionDistributionCells(distribution);
+            getSink().tableRow_();
         }
+        getSink().tableRow();
+        tableCellHelper(getString("report.javancss.header.totals"));
+        functionDistributionCells(total);
         getSink().tableRow_();
+        endTable();
 
+        subtitleHelper(getString("report.javancss.distribution.object"));
+        startTable();
+        createDistributionHeader(
+                new String[] {"report.javancss.header.module", "report.javancss.header.classe"},
+                "report.javancss.header.ncss");
+        for (ModuleReport report : reports) {
+            NcssDistribution distribution =
+                    report.getMetrics().getDistributions().getTotal();
+            getSink().tableRow();
+            tableCellHelper(report.getModule().getArtifactId());
+            objectDistributionCells(distribution);
+            getSink().tableRow_();
+        }
+        getSink().tableRow();
+        tableCellHelper(getString("report.javancss.header.totals"));
+        objectDistributionCells(total);
+        getSink().tableRow_();
         endTable();
     }
+
+    private void packageCells(NcssPackage total) {
+        tableCellHelper(String.valueOf(total.getClasses()));
+        tableCellHelper(String.valueOf(total.getFunctions()));
+        tableCellHelper(String.valueOf(total.getNcss()));
+        tableCellHelper(String.valueOf(total.getJavadocs()));
+        tableCellHelper(String.valueOf(total.getJavadocLines()));
+        tableCellHelper(String.valueOf(total.getSingleCommentLines()));
+        tableCellHelper(String.valueOf(total.getMultiCommentLines()));
+    }
 }
@@ -0,0 +1,69 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * The analysis service of a build session, shared by all modules of the reactor.<br>
+ * It holds one pool of workers with their warmed isolated JavaNCSS instances: the modules hand their files over as they
+ * get built, and the number of sources parsed at a time is capped for the whole build, however many modules are built
+ * at the same time. The service is stored in the data of the repository session, which lives as long as the build.
+ *
+ * @version $Id$
+ */
+public class NcssAnalysisService {
+    private final NcssWorkers workers;
+
+    private NcssAnalysisService(int threads) {
+        this.workers = new NcssWorkers(threads);
+    }
+
+    /**
+     * Gets the analysis service of a build session, creating it on first use. The number of threads given by the first
+     * module caps the analysis of the whole build.
+     *
+     * @param session the repository session of the build.
+     * @param threads the number of sources parsed at a time, if the service gets created.
+     * @return the service.
+     */
+    public static NcssAnalysisService forSession(RepositorySystemSession session, int threads) {
+        SessionData data = session.getData();
+        Object service = data.get(NcssAnalysisService.class);
+        if (service == null) {
+            NcssAnalysisService candidate = new NcssAnalysisService(threads);
+            if (data.set(NcssAnalysisService.class, null, candidate)) {
+                return candidate;
+            }
+            // another module created it meanwhile, the candidate never started a thread
+            service = data.get(NcssAnalysisService.class);
+        }
+        return (NcssAnalysisService) service;
+    }
+
+    /**
+     * Gets the workers shared by all modules
+     * @return NcssWorkers
+     */
+    public NcssWorkers getWorkers() {
+        return workers;
+    }
+}
@@ -0,0 +1,569 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import javancss.Javancss;
+import javancss.parser.ParseException;
+import javancss.parser.TokenMgrError;
+
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * Analyzes java sources with JavaNCSS and returns their metrics as an immutable {@link NcssMetrics}, without going
+ * through the JavaNCSS XML output.
+ *
+ * @version $Id$
+ */
+public class NcssAnalyzer implements Closeable {
+    // more chunks than threads, so that a badly estimated chunk doesn't leave the other workers idle
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private String encoding = null;
+
+    private int threads = 1;
+
+    private File cacheFile = null;
+
+    private int batchSize = 0;
+
+    private boolean isolateParseFailures = false;
+
+    private File failureFile = null;
+
+    private long fileTimeout = 0;
+
+    private boolean keepWorkers = false;
+
+    // the workers kept between analyses or shared with other analyzers, or null
+    private NcssWorkers workers;
+
+    private boolean sharedWorkers = false;
+
+    /**
+     * Sets the character encoding
+     * @param encoding character encoding, <code>null</code> for the platform encoding
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Gets the character encoding
+     * @return String
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Sets the number of worker threads used to analyze the sources, i.e. the number of chunks parsed at a time.
+     * @param threads number of threads, 1 runs JavaNCSS once on the whole source set
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        if (workers != null && !sharedWorkers && workers.getSize() != this.threads) {
+            workers.shutdown();
+            workers = null;
+        }
+    }
+
+    /**
+     * Gets the number of worker threads used to analyze the sources.
+     * @return int
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the file caching the metrics of each source file between two analyses.
+     * @param cacheFile the cache file, <code>null</code> to analyze every file each time
+     */
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Gets the file caching the metrics of each source file between two analyses.
+     * @return File
+     */
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Sets the number of files analyzed per batch.
+     * @param batchSize number of files, 0 to analyze all files in a single batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(0, batchSize);
+    }
+
+    /**
+     * Gets the number of files analyzed per batch.
+     * @return int
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets whether a source JavaNCSS can't parse fails the analysis, or is isolated by bisecting the files, left out
+     * of the metrics and reported in {@link NcssMetrics#getFailures()}.
+     * @param isolateParseFailures <code>true</code> to isolate the sources which can't be parsed
+     */
+    public void setIsolateParseFailures(boolean isolateParseFailures) {
+        this.isolateParseFailures = isolateParseFailures;
+    }
+
+    /**
+     * Gets whether the sources JavaNCSS can't parse are isolated.
+     * @return boolean
+     */
+    public boolean isIsolateParseFailures() {
+        return isolateParseFailures;
+    }
+
+    /**
+     * Sets the file remembering the sources which failed to parse, so that they are skipped until they change.
+     * @param failureFile the file, <code>null</code> to isolate the failures again on each analysis
+     */
+    public void setFailureFile(File failureFile) {
+        this.failureFile = failureFile;
+    }
+
+    /**
+     * Gets the file remembering the sources which failed to parse.
+     * @return File
+     */
+    public File getFailureFile() {
+        return failureFile;
+    }
+
+    /**
+     * Sets the time JavaNCSS may spend per source file. A source which takes longer is abandoned, left out of the
+     * metrics and reported as timed out in {@link NcssMetrics#getFailures()}.
+     * @param fileTimeout the time budget per file in milliseconds, 0 for none
+     */
+    public void setFileTimeout(long fileTimeout) {
+        this.fileTimeout = Math.max(0, fileTimeout);
+    }
+
+    /**
+     * Gets the time JavaNCSS may spend per source file, in milliseconds.
+     * @return long
+     */
+    public long getFileTimeout() {
+        return fileTimeout;
+    }
+
+    /**
+     * Sets whether the worker threads and their copies of JavaNCSS are kept between analyses, so that the next
+     * analysis runs on a JIT-compiled parser. Kept workers are released by {@link #close()}.
+     * @param keepWorkers <code>true</code> to keep the workers
+     */
+    public void setKeepWorkers(boolean keepWorkers) {
+        this.keepWorkers = keepWorkers;
+        if (!keepWorkers) {
+            close();
+        }
+    }
+
+    /**
+     * Gets whether the workers are kept between analyses.
+     * @return boolean
+     */
+    public boolean isKeepWorkers() {
+        return keepWorkers;
+    }
+
+    /**
+     * Sets workers shared with other analyzers, e.g. by all modules of a build. The sources are then chunked for the
+     * size of the shared workers, and the workers are never shut down by this analyzer.
+     * @param workers the shared workers, <code>null</code> for workers of its own
+     */
+    public void setWorkers(NcssWorkers workers) {
+        close();
+        this.workers = workers;
+        this.sharedWorkers = (workers != null);
+    }
+
+    /**
+     * Releases the workers kept between analyses.
+     */
+    @Override
+    public void close() {
+        if (workers != null && !sharedWorkers) {
+            workers.shutdown();
+        }
+        workers = null;
+        sharedWorkers = false;
+    }
+
+    /**
+     * Analyzes a set of java sources.
+     *
+     * @param files the source files.
+     * @return the metrics of the sources.
+     * @throws MavenReportException if JavaNCSS fails on a source, or the sources can't be read.
+     */
+    public NcssMetrics analyze(List<File> files) throws MavenReportException {
+        final NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        analyze(files, new NcssMetricsHandler() {
+            @Override
+            public void handle(NcssMetrics batch) {
+                builder.addAll(batch);
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Analyzes a set of java sources batch by batch, handing the metrics of each batch to a handler before starting
+     * the next one, so that only one batch is held in memory at a time.
+     *
+     * @param files the source files.
+     * @param handler the handler receiving the metrics of each batch, in the order of the files.
+     * @throws MavenReportException if JavaNCSS fails on a source, the sources can't be read or the handler fails.
+     */
+    public void analyze(List<File> files, NcssMetricsHandler handler) throws MavenReportException {
+        NcssCache cache = (cacheFile == null) ? null : NcssCache.load(cacheFile, getJavaNCSSVersion(), encoding);
+        NcssKnownFailures knownFailures = (isolateParseFailures && failureFile != null)
+                ? NcssKnownFailures.load(failureFile, getJavaNCSSVersion(), encoding)
+                : null;
+        try {
+            analyzeBatches(files, handler, cache, knownFailures);
+        } finally {
+            if (cache != null) {
+                cache.close();
+            }
+        }
+    }
+
+    /**
+     * Analyzes the sources batch by batch, then saves the cache and the known failures.
+     */
+    private void analyzeBatches(
+            List<File> files, NcssMetricsHandler handler, NcssCache cache, NcssKnownFailures knownFailures)
+            throws MavenReportException {
+        List<File> failedFiles = new ArrayList<>();
+        int size = (batchSize > 0) ? batchSize : Math.max(1, files.size());
+        NcssWorkers workers = acquireWorkers();
+        int parallelism = sharedWorkers ? workers.getSize() : threads;
+        try {
+            for (int from = 0; from < files.size(); from += size) {
+                List<File> batch = files.subList(from, Math.min(from + size, files.size()));
+                List<NcssFailure> failures = new ArrayList<>();
+                if (knownFailures != null) {
+                    batch = skipKnownFailures(knownFailures, batch, failures);
+                }
+                int known = failures.size();
+
+                List<NcssMetrics> results;
+                if (cache != null) {
+                    results = analyzeIncremental(workers, cache, batch, failures);
+                } else if (parallelism > 1) {
+                    results = analyzeChunks(
+                            workers, SourceChunker.split(batch, parallelism * CHUNKS_PER_THREAD), failures);
+                } else {
+                    results = analyzeChunks(workers, Collections.singletonList(batch), failures);
+                }
+
+                NcssMetricsBuilder builder = new NcssMetricsBuilder();
+                for (NcssMetrics result : results) {
+                    builder.addAll(result);
+                }
+                for (int i = 0; i < failures.size(); i++) {
+                    NcssFailure failure = failures.get(i);
+                    File file = new File(failure.getFile());
+                    failedFiles.add(file);
+                    if (knownFailures != null
+                            && i >= known
+                            && !failure.getMessage().startsWith(NcssWorkers.TIMED_OUT)) {
+                        knownFailures.put(file, NcssCache.stamp(file), failure.getMessage());
+                    }
+                    builder.addFailure(failure);
+                }
+                handler.handle(builder.build());
+            }
+        } catch (IOException ioe) {
+            throw new MavenReportException(
+                    "IO Error while analyzing sources with JavaNCSS " + getJavaNCSSVersion(), ioe);
+        } finally {
+            releaseWorkers(workers);
+        }
+        if (cache != null) {
+            cache.retainAll(files);
+            try {
+                cache.save(cacheFile);
+            } catch (IOException ioe) {
+                throw new MavenReportException("IO Error while writing JavaNCSS cache " + cacheFile, ioe);
+            }
+        }
+        if (knownFailures != null) {
+            knownFailures.retainAll(failedFiles);
+            try {
+                knownFailures.save(failureFile);
+            } catch (IOException ioe) {
+                throw new MavenReportException("IO Error while writing JavaNCSS failures " + failureFile, ioe);
+            }
+        }
+    }
+
+    /**
+     * Analyzes java sources one by one, so that their metrics can be attributed to each of them. The cache, the batch
+     * size and the known failures are not used.
+     *
+     * @param files the source files.
+     * @return the metrics of each file, in the order of the files; a file which failed holds its failure only.
+     * @throws MavenReportException if JavaNCSS fails on a source and parse failures are not isolated.
+     */
+    public Map<File, NcssMetrics> analyzeEach(List<File> files) throws MavenReportException {
+        List<List<File>> chunks = new ArrayList<>(files.size());
+        for (File file : files) {
+            chunks.add(Collections.singletonList(file));
+        }
+        List<NcssFailure> failures = new ArrayList<>();
+        NcssWorkers workers = acquireWorkers();
+        List<NcssMetrics> results;
+        try {
+            results = analyzeChunks(workers, chunks, failures);
+        } finally {
+            releaseWorkers(workers);
+        }
+        Map<File, NcssMetrics> metrics = new LinkedHashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            metrics.put(files.get(i), results.get(i));
+        }
+        for (NcssFailure failure : failures) {
+            metrics.put(
+                    new File(failure.getFile()),
+                    new NcssMetricsBuilder().addFailure(failure).build());
+        }
+        return metrics;
+    }
+
+    private NcssWorkers acquireWorkers() {
+        NcssWorkers acquired = (workers != null) ? workers : new NcssWorkers(threads);
+        if (keepWorkers) {
+            workers = acquired;
+        }
+        return acquired;
+    }
+
+    private void releaseWorkers(NcssWorkers acquired) {
+        if (acquired != workers) {
+            acquired.shutdown();
+        }
+    }
+
+    /**
+     * Moves the unchanged sources which are known to fail from the batch to the failures.
+     *
+     * @return the sources left to analyze.
+     */
+    private List<File> skipKnownFailures(NcssKnownFailures knownFailures, List<File> batch, List<NcssFailure> failures)
+            throws IOException {
+        List<File> remaining = new ArrayList<>(batch.size());
+        for (File file : batch) {
+            String message = knownFailures.get(file);
+            if (message == null) {
+                remaining.add(file);
+            } else {
+                failures.add(new NcssFailure(file.getPath(), message));
+            }
+        }
+        return remaining;
+    }
+
+    /**
+     * Takes the metrics of unchanged files from the cache and analyzes the new and changed files one by one.
+     *
+     * @return the metrics of each file, in the order of the files.
+     */
+    private List<NcssMetrics> analyzeIncremental(
+            NcssWorkers workers, NcssCache cache, List<File> files, List<NcssFailure> failures)
+            throws MavenReportException, IOException {
+        List<NcssMetrics> results = new ArrayList<>(files.size());
+        List<File> changedFiles = new ArrayList<>();
+        List<NcssCache.Stamp> stamps = new ArrayList<>();
+        List<List<File>> chunks = new ArrayList<>();
+        for (File file : files) {
+            NcssMetrics cached = cache.get(file);
+            results.add(cached);
+            if (cached == null) {
+                changedFiles.add(file);
+                stamps.add(NcssCache.stamp(file));
+                // one file per chunk, so that the metrics can be attributed to their file
+                chunks.add(Collections.singletonList(file));
+            }
+        }
+
+        int known = failures.size();
+        List<NcssMetrics> analyzed = analyzeChunks(workers, chunks, failures);
+        Set<String> failed = new HashSet<>();
+        for (NcssFailure failure : failures.subList(known, failures.size())) {
+            failed.add(failure.getFile());
+        }
+        for (int i = 0, j = 0; i < results.size(); i++) {
+            if (results.get(i) == null) {
+                NcssMetrics result = analyzed.get(j);
+                File file = changedFiles.get(j);
+                if (!failed.contains(file.getPath())) {
+                    cache.put(file, stamps.get(j), result);
+                }
+                results.set(i, result);
+                j++;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Runs JavaNCSS on each chunk. A file which timed out, or which fails to parse when parse failures are isolated, is
+     * added to the failures: when the workers know which file failed, the files after it are analyzed again, otherwise
+     * the chunk is bisected until the failing sources are found.
+     *
+     * @return the metrics, in the order of the chunks.
+     */
+    private List<NcssMetrics> analyzeChunks(NcssWorkers workers, List<List<File>> chunks, List<NcssFailure> failures)
+            throws MavenReportException {
+        List<IsolatedJavancss.Result> results = workers.analyze(chunks, encoding, fileTimeout);
+        List<NcssMetrics> metrics = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            IsolatedJavancss.Result result = results.get(i);
+            if (result.getLastError() == null) {
+                metrics.add(result.getMetrics());
+            } else if (result.getLastError() instanceof TimeoutException
+                    || (isolateParseFailures && isParseFailure(result.getLastError()))) {
+                metrics.add(
+                        (result.getFailedFile() < 0)
+                                ? bisect(workers, chunks.get(i), result, failures)
+                                : skip(workers, chunks.get(i), result, failures));
+            } else {
+                checkLastError(result.getLastError(), result.getLastErrorMessage());
+            }
+        }
+        return metrics;
+    }
+
+    private NcssMetrics bisect(
+            NcssWorkers workers, List<File> chunk, IsolatedJavancss.Result result, List<NcssFailure> failures)
+            throws MavenReportException {
+        if (chunk.size() == 1) {
+            failures.add(new NcssFailure(chunk.get(0).getPath(), limit(result.getLastErrorMessage(), 3)));
+            return new NcssMetricsBuilder().build();
+        }
+        int middle = chunk.size() / 2;
+        List<List<File>> halves = new ArrayList<>(2);
+        halves.add(chunk.subList(0, middle));
+        halves.add(chunk.subList(middle, chunk.size()));
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (NcssMetrics half : analyzeChunks(workers, halves, failures)) {
+            builder.addAll(half);
+        }
+        return builder.build();
+    }
+
+    // the failing file is known: it is never parsed again, only the files after it are
+    private NcssMetrics skip(
+            NcssWorkers workers, List<File> chunk, IsolatedJavancss.Result result, List<NcssFailure> failures)
+            throws MavenReportException {
+        int failed = result.getFailedFile();
+        failures.add(new NcssFailure(chunk.get(failed).getPath(), limit(result.getLastErrorMessage(), 3)));
+        NcssMetricsBuilder builder = new NcssMetricsBuilder().addAll(result.getMetrics());
+        if (failed + 1 < chunk.size()) {
+            List<List<File>> rest = new ArrayList<>(1);
+            rest.add(chunk.subList(failed + 1, chunk.size()));
+            builder.addAll(analyzeChunks(workers, rest, failures).get(0));
+        }
+        return builder.build();
+    }
+
+    // compare by name: the error comes from an isolated copy of JavaNCSS
+    private static boolean isParseFailure(Throwable error) {
+        String name = error.getClass().getName();
+        return ParseException.class.getName().equals(name)
+                || TokenMgrError.class.getName().equals(name);
+    }
+
+    private void checkLastError(Throwable ncssThrow, String ncssMessage) throws MavenReportException {
+        if (ncssThrow != null) {
+            String lastErrorMessage = limit(ncssMessage, 3);
+
+            if (ParseException.class.getName().equals(ncssThrow.getClass().getName())) {
+                throw new MavenReportException(
+                        "Parsing error while executing JavaNCSS " + getJavaNCSSVersion() + " " + lastErrorMessage,
+                        (Exception) ncssThrow);
+            }
+
+            Exception e = (ncssThrow instanceof Exception) ? (Exception) ncssThrow : new Exception(ncssThrow);
+            throw new MavenReportException(
+                    "Unexpected error while executing JavaNCSS " + getJavaNCSSVersion() + " " + lastErrorMessage, e);
+        }
+    }
+
+    private String limit(String source, int lines) {
+        BufferedReader reader = new BufferedReader(new StringReader(source));
+        StringBuilder sb = new StringBuilder();
+        try {
+            for (int i = 0; i < lines; i++) {
+                String line = reader.readLine();
+
+                if (line != null) {
+                    if (sb.length() > 0) {
+                        sb.append("\n");
+                    }
+                    sb.append(line);
+                }
+            }
+            reader.close();
+        } catch (IOException ioe) {
+            // cannot happen: in-memory StringReader
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Gets the JavaNCSSVersion number for this plugin
+     * @return The version number as a string
+     */
+    public static String getJavaNCSSVersion() {
+        Package p = Javancss.class.getPackage();
+        String version = (p == null) ? null : p.getSpecificationVersion();
+        if (version == null) {
+            version = "unknown";
+        }
+        return version;
+    }
+}
@@ -0,0 +1,452 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Persistent per-file cache of JavaNCSS metrics.<br>
+ * Entries are keyed by the path of the source file and remember its size, modification time and content hash: a file
+ * whose size and modification time are unchanged is a hit, and a file that was only touched is recognized by its hash.
+ * The whole cache is dropped when the JavaNCSS version or the source encoding changes.<br>
+ * Only the paths and stamps are held in memory: the metrics stay in the cache file, or in a spool file for the files
+ * analyzed since, and are read back one file at a time, so that a batched analysis doesn't hold the metrics of the
+ * whole source tree. The cache file holds the metrics of each file, then an index of the paths, stamps and positions
+ * of the metrics, then the position of the index.
+ *
+ * @version $Id$
+ */
+public class NcssCache implements Closeable {
+    private static final int MAGIC = 0x4e435353; // "NCSS"
+
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final String javancssVersion;
+
+    private final String encoding;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    // the loaded or last saved cache file, and the file of the metrics put since, or null
+    private RandomAccessFile data;
+
+    private File spoolFile;
+
+    private RandomAccessFile spool;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param javancssVersion the JavaNCSS version producing the metrics.
+     * @param encoding the encoding of the source files, may be <code>null</code>.
+     */
+    public NcssCache(String javancssVersion, String encoding) {
+        this.javancssVersion = javancssVersion;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Loads the index of a cache from disk, keeping the file open to read the metrics from. A missing, unreadable or
+     * incompatible cache file gives an empty cache.
+     *
+     * @param file the cache file.
+     * @param javancssVersion the JavaNCSS version producing the metrics.
+     * @param encoding the encoding of the source files, may be <code>null</code>.
+     * @return the cache, to be closed.
+     */
+    public static NcssCache load(File file, String javancssVersion, String encoding) {
+        NcssCache cache = new NcssCache(javancssVersion, encoding);
+        if (!file.isFile()) {
+            return cache;
+        }
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !javancssVersion.equals(in.readUTF())
+                    || !Objects.equals(encoding, in.readBoolean() ? in.readUTF() : null)) {
+                in.close();
+                return cache;
+            }
+            in.seek(in.length() - 8);
+            in.seek(in.readLong());
+            DataInputStream index =
+                    new DataInputStream(new BufferedInputStream(Channels.newInputStream(in.getChannel())));
+            int count = index.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = index.readUTF();
+                Stamp stamp = Stamp.read(index);
+                cache.entries.put(path, new Entry(path, stamp, in, index.readLong(), index.readInt()));
+            }
+            cache.data = in;
+        } catch (IOException ioe) {
+            // a corrupt cache is no worse than no cache at all
+            cache.entries.clear();
+            closeQuietly(in);
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the cache to disk, replacing the file it was loaded from if it's the same. The cache then reads its
+     * metrics from the written file.
+     *
+     * @param file the cache file.
+     * @throws IOException if the file can't be written.
+     */
+    public void save(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File temp = File.createTempFile("javancss-cache", ".tmp", parent);
+        Map<String, Entry> saved = new HashMap<>();
+        try {
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(javancssVersion);
+                writeNullableUTF(out, encoding);
+                long position = out.size();
+                for (Entry entry : entries.values()) {
+                    out.write(entry.read());
+                    saved.put(entry.path, new Entry(entry.path, entry.stamp, null, position, entry.length));
+                    position += entry.length;
+                }
+                out.writeInt(saved.size());
+                for (Entry entry : saved.values()) {
+                    out.writeUTF(entry.path);
+                    entry.stamp.write(out);
+                    out.writeLong(entry.offset);
+                    out.writeInt(entry.length);
+                }
+                out.writeLong(position);
+            }
+            // the file being replaced may be the one open for reading
+            close();
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+        data = new RandomAccessFile(file, "r");
+        entries.clear();
+        for (Entry entry : saved.values()) {
+            entries.put(entry.path, new Entry(entry.path, entry.stamp, data, entry.offset, entry.length));
+        }
+    }
+
+    /**
+     * Closes the cache file and deletes the spooled metrics, which are lost unless the cache was saved.
+     */
+    @Override
+    public void close() {
+        closeQuietly(data);
+        data = null;
+        closeQuietly(spool);
+        spool = null;
+        if (spoolFile != null) {
+            spoolFile.delete();
+            spoolFile = null;
+        }
+    }
+
+    /**
+     * Looks up the cached metrics of a file.
+     *
+     * @param file the source file.
+     * @return the cached metrics, or <code>null</code> if the file is new or changed.
+     * @throws IOException if the file can't be read to compute its hash, or the metrics can't be read.
+     */
+    public NcssMetrics get(File file) throws IOException {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry == null || !entry.stamp.matches(file)) {
+            return null;
+        }
+        return readMetrics(new DataInputStream(new ByteArrayInputStream(entry.read())));
+    }
+
+    /**
+     * Stores the metrics of a file, in the spool file until the cache is saved.
+     *
+     * @param file the source file.
+     * @param stamp the stamp of the file taken before it was analyzed.
+     * @param metrics the metrics of the file.
+     * @throws IOException if the metrics can't be spooled.
+     */
+    public void put(File file, Stamp stamp, NcssMetrics metrics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        writeMetrics(out, metrics);
+        out.flush();
+        if (spool == null) {
+            spoolFile = File.createTempFile("javancss-cache", ".spool");
+            spool = new RandomAccessFile(spoolFile, "rw");
+        }
+        long offset = spool.length();
+        spool.seek(offset);
+        spool.write(bytes.toByteArray());
+        Entry entry = new Entry(file.getAbsolutePath(), stamp, spool, offset, bytes.size());
+        entries.put(entry.path, entry);
+    }
+
+    /**
+     * Drops the entries of all files which are not in the given collection, i.e. of deleted or excluded files.
+     *
+     * @param files the files to keep.
+     */
+    public void retainAll(Collection<File> files) {
+        Set<String> paths = new HashSet<>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        entries.keySet().retainAll(paths);
+    }
+
+    /**
+     * Gets the number of cached files
+     * @return int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Takes the stamp of a file before it gets analyzed.
+     *
+     * @param file the source file.
+     * @return the size, modification time and content hash of the file.
+     * @throws IOException if the file can't be read.
+     */
+    public static Stamp stamp(File file) throws IOException {
+        return new Stamp(file.length(), file.lastModified(), hash(file));
+    }
+
+    /* package */ static byte[] hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(HASH_ALGORITHM + " is not available", nsae);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException ioe) {
+            // nothing left to read from it
+        }
+    }
+
+    /**
+     * Reads the packages, objects and functions written by {@link #writeMetrics(DataOutputStream, NcssMetrics)}.
+     */
+    /* package */ static NcssMetrics readMetrics(DataInputStream in) throws IOException {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            builder.addPackage(new NcssPackage(
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt()));
+        }
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            builder.addObject(new NcssObject(
+                    in.readUTF(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt(),
+                    in.readInt()));
+        }
+        count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            builder.addFunction(new NcssFunction(in.readUTF(), in.readInt(), in.readInt(), in.readInt()));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the packages, objects and functions of the metrics, but not their failures.
+     */
+    /* package */ static void writeMetrics(DataOutputStream out, NcssMetrics metrics) throws IOException {
+        out.writeInt(metrics.getPackages().size());
+        for (NcssPackage metric : metrics.getPackages()) {
+            out.writeUTF(metric.getName());
+            out.writeInt(metric.getClasses());
+            out.writeInt(metric.getFunctions());
+            out.writeInt(metric.getNcss());
+            out.writeInt(metric.getJavadocs());
+            out.writeInt(metric.getJavadocLines());
+            out.writeInt(metric.getSingleCommentLines());
+            out.writeInt(metric.getMultiCommentLines());
+        }
+        out.writeInt(metrics.getObjects().size());
+        for (NcssObject metric : metrics.getObjects()) {
+            out.writeUTF(metric.getName());
+            out.writeInt(metric.getNcss());
+            out.writeInt(metric.getFunctions());
+            out.writeInt(metric.getClasses());
+            out.writeInt(metric.getJavadocs());
+            out.writeInt(metric.getJavadocLines());
+            out.writeInt(metric.getSingleCommentLines());
+            out.writeInt(metric.getMultiCommentLines());
+        }
+        out.writeInt(metrics.getFunctions().size());
+        for (NcssFunction metric : metrics.getFunctions()) {
+            out.writeUTF(metric.getName());
+            out.writeInt(metric.getNcss());
+            out.writeInt(metric.getCcn());
+            out.writeInt(metric.getJavadocs());
+        }
+    }
+
+    /* package */ static String readNullableUTF(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /* package */ static void writeNullableUTF(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * The size, modification time and content hash of a source file.
+     */
+    public static final class Stamp {
+        private final long size;
+
+        private long lastModified;
+
+        private final byte[] hash;
+
+        private Stamp(long size, long lastModified, byte[] hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+
+        /**
+         * Checks whether a file still has the content it had when it was stamped: its size and modification time are
+         * unchanged, or it was only touched and its hash is unchanged.
+         */
+        /* package */ boolean matches(File file) throws IOException {
+            long currentSize = file.length();
+            long currentLastModified = file.lastModified();
+            if (size == currentSize && lastModified == currentLastModified) {
+                return true;
+            }
+            if (size == currentSize && Arrays.equals(hash, hash(file))) {
+                // touched, but not modified
+                lastModified = currentLastModified;
+                return true;
+            }
+            return false;
+        }
+
+        /* package */ void write(DataOutputStream out) throws IOException {
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeByte(hash.length);
+            out.write(hash);
+        }
+
+        /* package */ static Stamp read(DataInputStream in) throws IOException {
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            return new Stamp(size, lastModified, hash);
+        }
+    }
+
+    /**
+     * The stamp of a file, and where its metrics are stored.
+     */
+    private static final class Entry {
+        private final String path;
+
+        private final Stamp stamp;
+
+        private final RandomAccessFile data;
+
+        private final long offset;
+
+        private final int length;
+
+        private Entry(String path, Stamp stamp, RandomAccessFile data, long offset, int length) {
+            this.path = path;
+            this.stamp = stamp;
+            this.data = data;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        private byte[] read() throws IOException {
+            byte[] bytes = new byte[length];
+            data.seek(offset);
+            data.readFully(bytes);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * Check the methods of the java sources changed in the git working copy since a ref against the CCN and NCSS limits,
+ * without analyzing the rest of the sources nor generating the report. Fails the build if told so.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+@Mojo(name = "check-changed", defaultPhase = LifecyclePhase.VERIFY)
+public class NcssChangedCheckMojo extends AbstractNcssCheckMojo {
+    /**
+     * Specifies the location of the source files to be used.
+     */
+    @Parameter(defaultValue = "${project.build.sourceDirectory}", readonly = true, required = true)
+    private File sourceDirectory;
+
+    /**
+     * List of ant-style patterns used to specify the java sources that should be included when running JavaNCSS. If
+     * this is not specified, all .java files in the project source directories are included.
+     */
+    @Parameter
+    private String[] includes;
+
+    /**
+     * List of ant-style patterns used to specify the java sources that should be excluded when running JavaNCSS. If
+     * this is not specified, no files in the project source directories are excluded.
+     */
+    @Parameter
+    private String[] excludes;
+
+    /**
+     * The git ref the changes are taken against, from its merge base with <code>HEAD</code>. Uncommitted and untracked
+     * sources are checked too.
+     */
+    @Parameter(property = "ncss.baseRef", defaultValue = "origin/main")
+    private String baseRef;
+
+    /**
+     * Specifies the encoding of the source files.
+     */
+    @Parameter(property = "encoding", defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * Number of worker threads used to analyze the changed sources.
+     */
+    @Parameter(property = "ncss.threads", defaultValue = "1")
+    private int threads;
+
+    /**
+     * Executes the check
+     * @throws MojoExecutionException if git or JavaNCSS fail
+     * @throws MojoFailureException if a method exceeds a limit
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (isSkip() || (sourceDirectory == null) || !sourceDirectory.exists()) {
+            return;
+        }
+        List<File> files;
+        try {
+            files = GitChangedFiles.select(
+                    sourceDirectory, GitChangedFiles.list(sourceDirectory, baseRef), includes, excludes);
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Can't list the sources changed since " + baseRef, ioe);
+        }
+        if (files.isEmpty()) {
+            getLog().info("No java source changed since " + baseRef);
+            return;
+        }
+        getLog().info("Checking " + files.size() + " java source(s) changed since " + baseRef + " with JavaNCSS "
+                + NcssAnalyzer.getJavaNCSSVersion());
+        if (getLog().isDebugEnabled()) {
+            for (File file : files) {
+                getLog().debug("    " + file);
+            }
+        }
+
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setEncoding(encoding);
+        analyzer.setThreads(threads);
+        NcssMetrics metrics;
+        try {
+            metrics = analyzer.analyze(files);
+        } catch (MavenReportException mre) {
+            throw new MojoExecutionException(mre.getMessage(), mre);
+        }
+        checkLimits(metrics.getFunctions());
+    }
+}
@@ -0,0 +1,260 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the binary columnar sidecar written by {@link NcssColumnarWriter}: the file is read in one go and closed,
+ * then only the sections asked for are decoded, e.g. the functions for a CCN check, and only the strings their rows
+ * refer to.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssColumnarReader {
+    private static final int PACKAGE_COLUMNS = 7;
+
+    private static final int OBJECT_COLUMNS = 7;
+
+    private static final int FUNCTION_COLUMNS = 3;
+
+    // footer offset and magic
+    private static final int TRAILER_SIZE = 12;
+
+    private final ByteBuffer buffer;
+
+    private final int footer;
+
+    private NcssColumnarReader(ByteBuffer buffer, int footer) {
+        this.buffer = buffer;
+        this.footer = footer;
+    }
+
+    /**
+     * Reads the sidecar of a raw report.
+     *
+     * @param report the raw report.
+     * @return the reader, or <code>null</code> if the report has no sidecar, or one written for another report.
+     * @throws IOException if the sidecar can't be read.
+     */
+    public static NcssColumnarReader open(File report) throws IOException {
+        File file = NcssColumnarWriter.forReport(report);
+        if (!file.isFile() || !report.isFile()) {
+            return null;
+        }
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 8 + TRAILER_SIZE || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            // read onto the heap rather than mapped, so the file is not held open until the mapping is collected
+            // and a later report in the same JVM can rewrite it
+            buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    return null;
+                }
+            }
+        }
+        int size = buffer.capacity();
+        if (buffer.getInt(0) != NcssColumnarWriter.MAGIC
+                || buffer.getInt(4) != NcssColumnarWriter.FORMAT_VERSION
+                || buffer.getInt(size - 4) != NcssColumnarWriter.MAGIC) {
+            return null;
+        }
+        long footer = buffer.getLong(size - TRAILER_SIZE);
+        if (footer < 8 || footer > size - TRAILER_SIZE - 16) {
+            return null;
+        }
+        int position = (int) footer;
+        if (buffer.getLong(position) != report.length() || buffer.getLong(position + 8) != report.lastModified()) {
+            // left behind by another report
+            return null;
+        }
+        return new NcssColumnarReader(buffer, position);
+    }
+
+    /**
+     * Reads all the metrics.
+     *
+     * @return the metrics of the report.
+     * @throws IOException if the sidecar is corrupt.
+     */
+    public NcssMetrics readMetrics() throws IOException {
+        try {
+            NcssMetricsBuilder builder = new NcssMetricsBuilder();
+            Strings strings = new Strings(footer + 16);
+            int position = strings.end;
+            int[] blocks = new int[buffer.getInt(position)];
+            for (int i = 0; i < blocks.length; i++) {
+                blocks[i] = buffer.getInt(position + 4 + 4 * i);
+            }
+            position += 4 + 4 * blocks.length;
+            List<NcssPackage> packages = new ArrayList<>();
+            position = readPackages(position, strings, packages);
+            for (NcssPackage metric : packages) {
+                builder.addPackage(metric);
+            }
+            int roots = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < roots; i++) {
+                String directory = strings.get(buffer.getInt(position));
+                List<NcssPackage> rootPackages = new ArrayList<>();
+                position = readPackages(position + 4, strings, rootPackages);
+                builder.addRoot(new NcssRoot(directory, rootPackages));
+            }
+            int failures = buffer.getInt(position);
+            position += 4;
+            for (int i = 0; i < failures; i++) {
+                builder.addFailure(new NcssFailure(
+                        strings.get(buffer.getInt(position + 8 * i)),
+                        strings.get(buffer.getInt(position + 8 * i + 4))));
+            }
+            for (int block : blocks) {
+                readBlock(block, builder, true);
+            }
+            return builder.build();
+        } catch (RuntimeException re) {
+            // an offset or a count out of the file
+            throw new IOException("Corrupt JavaNCSS columnar report", re);
+        }
+    }
+
+    /**
+     * Reads the functions only.
+     *
+     * @return the functions of the report.
+     * @throws IOException if the sidecar is corrupt.
+     */
+    public List<NcssFunction> readFunctions() throws IOException {
+        try {
+            NcssMetricsBuilder builder = new NcssMetricsBuilder();
+            int position = new Strings(footer + 16).end;
+            int blocks = buffer.getInt(position);
+            for (int i = 0; i < blocks; i++) {
+                readBlock(buffer.getInt(position + 4 + 4 * i), builder, false);
+            }
+            return builder.build().getFunctions();
+        } catch (RuntimeException re) {
+            // an offset or a count out of the file
+            throw new IOException("Corrupt JavaNCSS columnar report", re);
+        }
+    }
+
+    private void readBlock(int block, NcssMetricsBuilder builder, boolean withObjects) {
+        int objects = buffer.getInt(block);
+        int functions = buffer.getInt(block + 4);
+        Strings strings = new Strings(block + 8);
+        int position = strings.end;
+        if (withObjects) {
+            for (int i = 0; i < objects; i++) {
+                int[] values = values(position, objects, OBJECT_COLUMNS, i);
+                builder.addObject(new NcssObject(
+                        strings.get(buffer.getInt(position + 4 * i)),
+                        values[0],
+                        values[1],
+                        values[2],
+                        values[3],
+                        values[4],
+                        values[5],
+                        values[6]));
+            }
+        }
+        position += 4 * (OBJECT_COLUMNS + 1) * objects;
+        for (int i = 0; i < functions; i++) {
+            int[] values = values(position, functions, FUNCTION_COLUMNS, i);
+            builder.addFunction(
+                    new NcssFunction(strings.get(buffer.getInt(position + 4 * i)), values[0], values[1], values[2]));
+        }
+    }
+
+    /**
+     * Reads a package table.
+     *
+     * @return the position following the table.
+     */
+    private int readPackages(int position, Strings strings, List<NcssPackage> packages) {
+        int count = buffer.getInt(position);
+        int start = position + 4;
+        for (int i = 0; i < count; i++) {
+            int[] values = values(start, count, PACKAGE_COLUMNS, i);
+            packages.add(new NcssPackage(
+                    strings.get(buffer.getInt(start + 4 * i)),
+                    values[0],
+                    values[1],
+                    values[2],
+                    values[3],
+                    values[4],
+                    values[5],
+                    values[6]));
+        }
+        return start + 4 * (PACKAGE_COLUMNS + 1) * count;
+    }
+
+    // the values of a row, from the columns following the name column of a table
+    private int[] values(int start, int rows, int columns, int row) {
+        int[] values = new int[columns];
+        for (int column = 0; column < columns; column++) {
+            values[column] = buffer.getInt(start + 4 * ((column + 1) * rows + row));
+        }
+        return values;
+    }
+
+    /**
+     * A string table, decoding each string the first time it is asked for.
+     */
+    private final class Strings {
+        private final int offsets;
+
+        private final int bytes;
+
+        private final int end;
+
+        private final String[] decoded;
+
+        private Strings(int position) {
+            decoded = new String[buffer.getInt(position)];
+            offsets = position + 4;
+            bytes = offsets + 4 * decoded.length;
+            end = bytes + ((decoded.length == 0) ? 0 : buffer.getInt(bytes - 4));
+        }
+
+        private String get(int index) {
+            if (decoded[index] == null) {
+                int from = (index == 0) ? 0 : buffer.getInt(offsets + 4 * (index - 1));
+                byte[] string = new byte[buffer.getInt(offsets + 4 * index) - from];
+                ByteBuffer slice = buffer.duplicate();
+                slice.position(bytes + from);
+                slice.get(string);
+                decoded[index] = new String(string, StandardCharsets.UTF_8);
+            }
+            return decoded[index];
+        }
+    }
+}
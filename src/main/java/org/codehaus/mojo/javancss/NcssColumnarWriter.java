@@ -0,0 +1,268 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the binary columnar sidecar of a raw report, which {@link NcssColumnarReader} maps back without parsing XML.
+ * <br>
+ * The rows of each batch are written as a block of int columns with a string table of their own, so that the sidecar
+ * is streamed like the raw report. A footer holds the packages, roots and failures, the offsets of the blocks and the
+ * size and modification time of the raw report, so that a sidecar left behind by an older report is ignored:
+ *
+ * <pre>
+ * header  MAGIC, FORMAT_VERSION
+ * block   objects, functions, strings, object name and value columns, function name and value columns
+ * footer  report size and time, strings, block offsets, packages, roots, failures
+ * trailer footer offset, MAGIC
+ * </pre>
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public class NcssColumnarWriter implements NcssMetricsHandler, Closeable {
+    /* package */ static final int MAGIC = 0x4e435343; // "NCSC"
+
+    /* package */ static final int FORMAT_VERSION = 1;
+
+    private static final String REPORT_EXTENSION = ".xml";
+
+    private static final String EXTENSION = ".bin";
+
+    private final DataOutputStream out;
+
+    private final List<Integer> blocks = new ArrayList<>();
+
+    /**
+     * Creates a writer and writes the header.
+     *
+     * @param file the sidecar file.
+     * @throws IOException if the file can't be written.
+     */
+    public NcssColumnarWriter(File file) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+    }
+
+    /**
+     * Gets the sidecar of a raw report, <code>javancss-raw-report.bin</code> for <code>javancss-raw-report.xml</code>
+     * or <code>javancss-raw-report.xml.gz</code>.
+     *
+     * @param report the raw report.
+     * @return the sidecar file next to the report.
+     */
+    public static File forReport(File report) {
+        String name = report.getName();
+        if (name.endsWith(NcssXmlWriter.GZIP_EXTENSION)) {
+            name = name.substring(0, name.length() - NcssXmlWriter.GZIP_EXTENSION.length());
+        }
+        if (name.endsWith(REPORT_EXTENSION)) {
+            name = name.substring(0, name.length() - REPORT_EXTENSION.length());
+        }
+        return new File(report.getAbsoluteFile().getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Writes the sidecar of a raw report in a single block.
+     *
+     * @param report the raw report, already written.
+     * @param metrics the metrics of the report.
+     * @throws IOException if the sidecar can't be written.
+     */
+    public static void write(File report, NcssMetrics metrics) throws IOException {
+        try (NcssColumnarWriter writer = new NcssColumnarWriter(forReport(report))) {
+            writer.handle(metrics);
+            writer.finish(metrics, report);
+        }
+    }
+
+    /**
+     * Writes the objects and functions of a batch as a block.
+     *
+     * @param batch the metrics of the batch.
+     * @throws IOException if the sidecar can't be written.
+     */
+    @Override
+    public void handle(NcssMetrics batch) throws IOException {
+        blocks.add(out.size());
+        Section section = new Section();
+        for (NcssObject metric : batch.getObjects()) {
+            section.data.writeInt(section.string(metric.getName()));
+        }
+        writeColumns(section, objectValues(batch.getObjects()));
+        for (NcssFunction metric : batch.getFunctions()) {
+            section.data.writeInt(section.string(metric.getName()));
+        }
+        writeColumns(section, functionValues(batch.getFunctions()));
+        out.writeInt(batch.getObjects().size());
+        out.writeInt(batch.getFunctions().size());
+        section.writeTo(out);
+    }
+
+    /**
+     * Writes the footer and the trailer, after the blocks of all batches.
+     *
+     * @param metrics the packages, roots and failures of the report.
+     * @param report the raw report, already written.
+     * @throws IOException if the sidecar can't be written.
+     */
+    public void finish(NcssMetrics metrics, File report) throws IOException {
+        int footer = out.size();
+        out.writeLong(report.length());
+        out.writeLong(report.lastModified());
+        Section section = new Section();
+        section.data.writeInt(blocks.size());
+        for (int block : blocks) {
+            section.data.writeInt(block);
+        }
+        writePackages(section, metrics.getPackages());
+        section.data.writeInt(metrics.getRoots().size());
+        for (NcssRoot root : metrics.getRoots()) {
+            section.data.writeInt(section.string(root.getDirectory()));
+            writePackages(section, root.getPackages());
+        }
+        section.data.writeInt(metrics.getFailures().size());
+        for (NcssFailure failure : metrics.getFailures()) {
+            section.data.writeInt(section.string(failure.getFile()));
+            section.data.writeInt(section.string(failure.getMessage()));
+        }
+        section.writeTo(out);
+        out.writeLong(footer);
+        out.writeInt(MAGIC);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private static void writePackages(Section section, List<NcssPackage> packages) throws IOException {
+        section.data.writeInt(packages.size());
+        for (NcssPackage metric : packages) {
+            section.data.writeInt(section.string(metric.getName()));
+        }
+        writeColumns(section, packageValues(packages));
+    }
+
+    // one column after the other: all the values of the first column, then all the values of the second one...
+    private static void writeColumns(Section section, int[][] rows) throws IOException {
+        int columns = (rows.length == 0) ? 0 : rows[0].length;
+        for (int column = 0; column < columns; column++) {
+            for (int[] row : rows) {
+                section.data.writeInt(row[column]);
+            }
+        }
+    }
+
+    private static int[][] packageValues(List<NcssPackage> packages) {
+        int[][] rows = new int[packages.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            NcssPackage metric = packages.get(i);
+            rows[i] = new int[] {
+                metric.getClasses(),
+                metric.getFunctions(),
+                metric.getNcss(),
+                metric.getJavadocs(),
+                metric.getJavadocLines(),
+                metric.getSingleCommentLines(),
+                metric.getMultiCommentLines()
+            };
+        }
+        return rows;
+    }
+
+    private static int[][] objectValues(List<NcssObject> objects) {
+        int[][] rows = new int[objects.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            NcssObject metric = objects.get(i);
+            rows[i] = new int[] {
+                metric.getNcss(),
+                metric.getFunctions(),
+                metric.getClasses(),
+                metric.getJavadocs(),
+                metric.getJavadocLines(),
+                metric.getSingleCommentLines(),
+                metric.getMultiCommentLines()
+            };
+        }
+        return rows;
+    }
+
+    private static int[][] functionValues(List<NcssFunction> functions) {
+        int[][] rows = new int[functions.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            NcssFunction metric = functions.get(i);
+            rows[i] = new int[] {metric.getNcss(), metric.getCcn(), metric.getJavadocs()};
+        }
+        return rows;
+    }
+
+    /**
+     * The columns of a block or of the footer, with the table of the strings they refer to.
+     */
+    private static final class Section {
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        private final List<byte[]> strings = new ArrayList<>();
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream data = new DataOutputStream(bytes);
+
+        private int string(String value) {
+            String key = (value == null) ? "" : value;
+            Integer index = indexes.get(key);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(key, index);
+                strings.add(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return index;
+        }
+
+        // the string count, the end offset of each string, the UTF-8 bytes of the strings, then the columns
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(strings.size());
+            int end = 0;
+            for (byte[] string : strings) {
+                end += string.length;
+                out.writeInt(end);
+            }
+            for (byte[] string : strings) {
+                out.write(string);
+            }
+            data.flush();
+            bytes.writeTo(out);
+        }
+    }
+}
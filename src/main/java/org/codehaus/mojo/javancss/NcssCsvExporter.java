@@ -0,0 +1,170 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Exports metrics as CSV, one file per table with a header line: <code>javancss-objects.csv</code> and
+ * <code>javancss-functions.csv</code> written as the batches are handled, then <code>javancss-packages.csv</code>,
+ * <code>javancss-totals.csv</code> (the totals, then one line per source root) and
+ * <code>javancss-failures.csv</code>.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public class NcssCsvExporter extends NcssExporter {
+    private static final String PREFIX = "javancss-";
+
+    private static final String EXTENSION = ".csv";
+
+    private final File directory;
+
+    private final Writer objects;
+
+    private final Writer functions;
+
+    /**
+     * Creates the object and function files.
+     *
+     * @param directory the directory of the exported files.
+     * @throws IOException if a file can't be created.
+     */
+    public NcssCsvExporter(File directory) throws IOException {
+        this.directory = directory;
+        objects = open("objects", "name", NcssObjectRows.METRICS);
+        try {
+            functions = open("functions", "name", NcssFunctionRows.METRICS);
+        } catch (IOException ioe) {
+            objects.close();
+            throw ioe;
+        }
+    }
+
+    /**
+     * Gets the exported file of a table
+     * @param directory the directory of the exported files
+     * @param table <code>objects</code>, <code>functions</code>, <code>packages</code>, <code>totals</code> or
+     *     <code>failures</code>
+     * @return File
+     */
+    public static File getFile(File directory, String table) {
+        return new File(directory, PREFIX + table + EXTENSION);
+    }
+
+    @Override
+    public void handle(NcssMetrics batch) throws IOException {
+        writeRows(objects, batch.getObjects(), NcssObjectRows.METRICS.length);
+        writeRows(functions, batch.getFunctions(), NcssFunctionRows.METRICS.length);
+    }
+
+    @Override
+    public void finish(NcssMetrics metrics) throws IOException {
+        objects.flush();
+        functions.flush();
+        try (Writer out = open("packages", "name", NcssExporter.PACKAGE_METRICS)) {
+            for (NcssPackage metric : metrics.getPackages()) {
+                writeLine(out, metric.getName(), NcssExporter.packageValues(metric));
+            }
+        }
+        String[] totalColumns = new String[NcssExporter.PACKAGE_METRICS.length + 1];
+        totalColumns[0] = "packages";
+        System.arraycopy(NcssExporter.PACKAGE_METRICS, 0, totalColumns, 1, NcssExporter.PACKAGE_METRICS.length);
+        try (Writer out = open("totals", "root", totalColumns)) {
+            NcssTotals totals = metrics.getTotals();
+            writeTotal(out, "", totals.getPackageCount(), totals.getPackageTotal());
+            for (NcssRoot root : metrics.getRoots()) {
+                writeTotal(out, root.getDirectory(), root.getPackages().size(), root.getTotal());
+            }
+        }
+        try (Writer out = open("failures", "file", new String[] {"message"})) {
+            for (NcssFailure failure : metrics.getFailures()) {
+                writeField(out, failure.getFile());
+                out.write(',');
+                writeField(out, failure.getMessage());
+                out.write('\n');
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            objects.close();
+        } finally {
+            functions.close();
+        }
+    }
+
+    private Writer open(String table, String first, String[] columns) throws IOException {
+        Writer out = NcssXmlWriter.newWriter(getFile(directory, table));
+        out.write(first);
+        for (String column : columns) {
+            out.write(',');
+            out.write(column);
+        }
+        out.write('\n');
+        return out;
+    }
+
+    private static void writeRows(Writer out, NcssRows<?> rows, int columns) throws IOException {
+        for (int row = 0; row < rows.size(); row++) {
+            writeField(out, rows.getName(row));
+            for (int column = 0; column < columns; column++) {
+                out.write(',');
+                out.write(Integer.toString(rows.getValue(column, row)));
+            }
+            out.write('\n');
+        }
+    }
+
+    private static void writeTotal(Writer out, String root, int packages, NcssPackage total) throws IOException {
+        int[] values = NcssExporter.packageValues(total);
+        int[] line = new int[values.length + 1];
+        line[0] = packages;
+        System.arraycopy(values, 0, line, 1, values.length);
+        writeLine(out, root, line);
+    }
+
+    private static void writeLine(Writer out, String name, int[] values) throws IOException {
+        writeField(out, name);
+        for (int value : values) {
+            out.write(',');
+            out.write(Integer.toString(value));
+        }
+        out.write('\n');
+    }
+
+    // quoted as in RFC 4180 when it holds a separator, a quote or a line break
+    private static void writeField(Writer out, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
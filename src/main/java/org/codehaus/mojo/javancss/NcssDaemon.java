@@ -0,0 +1,420 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * A background process analyzing sources for the builds of the local user, so that they run on a JIT-compiled
+ * JavaNCSS instead of warming up a new one each time.<br>
+ * The daemon listens on a loopback port, which it writes with a random token, its JavaNCSS version and the build of
+ * the plugin it runs into a state file. A build connects with the token, checks that both versions match, since the
+ * daemon runs the plugin class path it was started with, and hands over its file list and analyzer settings; the
+ * daemon streams the metrics back batch by batch. Each build is served on a thread of its own, so that it is
+ * answered at once, and analyzed at the same time as the others on warm workers: the builds capping the parses of
+ * their reactor share one pool of workers per cap, the others take an idle pool left by earlier builds or get a new
+ * one. The daemon exits after a configurable idle time.
+ *
+ * @version $Id$
+ * @see NcssDaemonClient
+ */
+public class NcssDaemon {
+    /* package */ static final String STATE_FILE_NAME = "daemon.properties";
+
+    /* package */ static final String LOG_FILE_NAME = "daemon.log";
+
+    /* package */ static final int MAGIC = 0x4e435344; // "NCSD"
+
+    /* package */ static final int PROTOCOL_VERSION = 3;
+
+    /* package */ static final byte STATUS_OK = 0;
+
+    /* package */ static final byte STATUS_VERSION_MISMATCH = 1;
+
+    /* package */ static final byte STATUS_DENIED = 2;
+
+    /* package */ static final byte COMMAND_ANALYZE = 1;
+
+    /* package */ static final byte COMMAND_STOP = 2;
+
+    /* package */ static final byte FRAME_END = 0;
+
+    /* package */ static final byte FRAME_BATCH = 1;
+
+    /* package */ static final byte FRAME_ERROR = 2;
+
+    // a build sends its whole request right after connecting, so that a silent one can't keep the daemon from stopping
+    private static final int READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+
+    private final File directory;
+
+    private final long idleTimeout;
+
+    private final String token;
+
+    // the workers shared by the builds with the same reactor cap, by cap
+    private final Map<Integer, NcssWorkers> reactorWorkers = new HashMap<>();
+
+    // the workers of the builds without a reactor cap which are done, by size
+    private final Map<Integer, Deque<NcssWorkers>> idleWorkers = new HashMap<>();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private volatile long lastActive;
+
+    private volatile boolean stopped;
+
+    private volatile ServerSocket server;
+
+    private static String pluginBuild;
+
+    /**
+     * Creates a daemon.
+     *
+     * @param directory the directory of the state file.
+     * @param idleTimeout the time in milliseconds after which the daemon exits when no build connects.
+     */
+    public NcssDaemon(File directory, long idleTimeout) {
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+        byte[] random = new byte[16];
+        new SecureRandom().nextBytes(random);
+        this.token = hex(random);
+    }
+
+    /**
+     * Starts a daemon.
+     *
+     * @param args the directory of the state file, and the idle timeout in milliseconds.
+     * @throws IOException if the daemon can't listen.
+     */
+    public static void main(String[] args) throws IOException {
+        new NcssDaemon(new File(args[0]), Long.parseLong(args[1])).run();
+    }
+
+    /**
+     * Serves the builds until the daemon is idle for too long or is told to stop.
+     *
+     * @throws IOException if the daemon can't listen or write its state file.
+     */
+    public void run() throws IOException {
+        File stateFile = new File(directory, STATE_FILE_NAME);
+        ExecutorService connections = Executors.newCachedThreadPool(NcssWorkers.daemonThreads("javancss-daemon-"));
+        try (ServerSocket listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            server = listener;
+            listener.setSoTimeout((int) Math.min(Integer.MAX_VALUE, Math.max(1, idleTimeout)));
+            writeState(stateFile, listener.getLocalPort());
+            lastActive = System.currentTimeMillis();
+            while (!stopped) {
+                final Socket socket;
+                try {
+                    socket = listener.accept();
+                } catch (SocketTimeoutException ste) {
+                    if (active.get() == 0 && System.currentTimeMillis() - lastActive >= idleTimeout) {
+                        break;
+                    }
+                    continue;
+                } catch (IOException ioe) {
+                    if (!stopped) {
+                        log("Accept failed: " + ioe);
+                    }
+                    continue;
+                }
+                active.incrementAndGet();
+                connections.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            // let the running analyses finish
+            connections.shutdown();
+            try {
+                connections.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            shutdownWorkers();
+            deleteState(stateFile);
+        }
+    }
+
+    /**
+     * Serves one connection, on a thread of its own.
+     */
+    private void handle(Socket socket) {
+        try (Socket connection = socket) {
+            connection.setSoTimeout(READ_TIMEOUT);
+            if (!serve(connection)) {
+                stop();
+            }
+        } catch (IOException ioe) {
+            // the build went away, wait for the next one
+            log("Request failed: " + ioe);
+        } finally {
+            lastActive = System.currentTimeMillis();
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting builds, once the running analyses are done.
+     */
+    private void stop() {
+        stopped = true;
+        try {
+            server.close();
+        } catch (IOException ioe) {
+            // stopping anyway
+        }
+    }
+
+    /**
+     * Serves one connection.
+     *
+     * @return <code>false</code> if the daemon was told to stop.
+     */
+    private boolean serve(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (in.readInt() != MAGIC || in.readInt() != PROTOCOL_VERSION || !token.equals(in.readUTF())) {
+            out.writeByte(STATUS_DENIED);
+            out.flush();
+            return true;
+        }
+        String version = in.readUTF();
+        String build = in.readUTF();
+        if (!NcssAnalyzer.getJavaNCSSVersion().equals(version)
+                || !getPluginBuild().equals(build)) {
+            out.writeByte(STATUS_VERSION_MISMATCH);
+            out.writeUTF(NcssAnalyzer.getJavaNCSSVersion());
+            out.flush();
+            return true;
+        }
+        out.writeByte(STATUS_OK);
+        out.flush();
+
+        if (in.readByte() == COMMAND_STOP) {
+            return false;
+        }
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setEncoding(NcssCache.readNullableUTF(in));
+        analyzer.setThreads(in.readInt());
+        analyzer.setCacheFile(readFile(in));
+        analyzer.setBatchSize(in.readInt());
+        analyzer.setIsolateParseFailures(in.readBoolean());
+        analyzer.setFailureFile(readFile(in));
+        analyzer.setFileTimeout(in.readLong());
+        int reactorThreads = in.readInt();
+        int count = in.readInt();
+        List<File> files = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            files.add(new File(in.readUTF()));
+        }
+
+        NcssWorkers workers = acquireWorkers(analyzer.getThreads(), reactorThreads);
+        analyzer.setWorkers(workers);
+        try {
+            analyze(analyzer, files, out);
+        } finally {
+            releaseWorkers(workers, reactorThreads);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the workers of a build: the pool shared by the builds with the same reactor cap, or else an idle pool of
+     * the size of the build, which is then the only one using it.
+     */
+    private synchronized NcssWorkers acquireWorkers(int threads, int reactorThreads) {
+        if (reactorThreads > 0) {
+            NcssWorkers workers = reactorWorkers.get(reactorThreads);
+            if (workers == null) {
+                workers = new NcssWorkers(reactorThreads);
+                reactorWorkers.put(reactorThreads, workers);
+            }
+            return workers;
+        }
+        Deque<NcssWorkers> idle = idleWorkers.get(Math.max(1, threads));
+        return (idle == null || idle.isEmpty()) ? new NcssWorkers(threads) : idle.pop();
+    }
+
+    private synchronized void releaseWorkers(NcssWorkers workers, int reactorThreads) {
+        if (reactorThreads > 0) {
+            return;
+        }
+        Deque<NcssWorkers> idle = idleWorkers.get(workers.getSize());
+        if (idle == null) {
+            idle = new ArrayDeque<>();
+            idleWorkers.put(workers.getSize(), idle);
+        }
+        idle.push(workers);
+    }
+
+    private synchronized void shutdownWorkers() {
+        for (NcssWorkers workers : reactorWorkers.values()) {
+            workers.shutdown();
+        }
+        for (Deque<NcssWorkers> idle : idleWorkers.values()) {
+            for (NcssWorkers workers : idle) {
+                workers.shutdown();
+            }
+        }
+        reactorWorkers.clear();
+        idleWorkers.clear();
+    }
+
+    /**
+     * Analyzes the sources of a build, streaming the metrics back batch by batch.
+     */
+    private void analyze(NcssAnalyzer analyzer, List<File> files, final DataOutputStream out) throws IOException {
+        try {
+            analyzer.analyze(files, new NcssMetricsHandler() {
+                @Override
+                public void handle(NcssMetrics batch) throws IOException {
+                    out.writeByte(FRAME_BATCH);
+                    writeBatch(out, batch);
+                    out.flush();
+                }
+            });
+            out.writeByte(FRAME_END);
+        } catch (MavenReportException mre) {
+            out.writeByte(FRAME_ERROR);
+            out.writeUTF(mre.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * Identifies the build of the plugin classes: the hash of the plugin jar, so that a rebuilt snapshot with the same
+     * version is told apart, or the directory of the classes when they aren't in a jar.
+     */
+    /* package */ static synchronized String getPluginBuild() {
+        if (pluginBuild == null) {
+            URL url = NcssDaemon.class.getProtectionDomain().getCodeSource().getLocation();
+            try {
+                File location = new File(url.toURI());
+                pluginBuild = location.isFile() ? hex(NcssCache.hash(location)) : location.getAbsolutePath();
+            } catch (Exception e) {
+                // not worth failing for: compare the location only
+                pluginBuild = url.toString();
+            }
+        }
+        return pluginBuild;
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    /* package */ static void writeBatch(DataOutputStream out, NcssMetrics batch) throws IOException {
+        NcssCache.writeMetrics(out, batch);
+        out.writeInt(batch.getFailures().size());
+        for (NcssFailure failure : batch.getFailures()) {
+            out.writeUTF(failure.getFile());
+            out.writeUTF(failure.getMessage());
+        }
+    }
+
+    /* package */ static NcssMetrics readBatch(DataInputStream in) throws IOException {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        builder.addAll(NcssCache.readMetrics(in));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            builder.addFailure(new NcssFailure(in.readUTF(), in.readUTF()));
+        }
+        return builder.build();
+    }
+
+    private static File readFile(DataInputStream in) throws IOException {
+        String path = NcssCache.readNullableUTF(in);
+        return (path == null) ? null : new File(path);
+    }
+
+    /**
+     * Writes the state file, readable by the owner only: the token is what keeps other users out.
+     */
+    private void writeState(File stateFile, int port) throws IOException {
+        Properties state = new Properties();
+        state.setProperty("port", String.valueOf(port));
+        state.setProperty("token", token);
+        state.setProperty("version", NcssAnalyzer.getJavaNCSSVersion());
+        state.setProperty("plugin", getPluginBuild());
+        state.setProperty("process", ManagementFactory.getRuntimeMXBean().getName());
+        File temp = File.createTempFile("daemon", ".tmp", directory);
+        temp.setReadable(false, false);
+        temp.setReadable(true, true);
+        try (OutputStream out = Files.newOutputStream(temp.toPath())) {
+            state.store(out, "JavaNCSS daemon");
+        }
+        Files.move(temp.toPath(), stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes the state file, unless a newer daemon already replaced it.
+     */
+    private void deleteState(File stateFile) {
+        try {
+            if (token.equals(NcssDaemonClient.readState(stateFile).getProperty("token"))) {
+                Files.deleteIfExists(stateFile.toPath());
+            }
+        } catch (IOException ioe) {
+            // already gone
+        }
+    }
+
+    private static void log(String message) {
+        System.err.println(message);
+    }
+}
@@ -0,0 +1,330 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javancss.Javancss;
+
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * Hands the analysis of a build over to the {@link NcssDaemon} of the local user, starting it when none is running
+ * or when the running one uses another JavaNCSS version or another build of the plugin. When the daemon can't be
+ * reached, the sources are analyzed in the build instead.
+ *
+ * @version $Id$
+ */
+public class NcssDaemonClient {
+    private static final long START_TIMEOUT = TimeUnit.SECONDS.toMillis(20);
+
+    private static final long START_POLL = 50;
+
+    private static final String LOCK_FILE_NAME = "daemon.lock";
+
+    // the daemon answers at once, even while it analyzes for other builds
+    private static final int HANDSHAKE_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(10);
+
+    private final File directory;
+
+    private final long idleTimeout;
+
+    private int reactorThreads;
+
+    private boolean used;
+
+    /**
+     * Creates a client.
+     *
+     * @param directory the directory of the daemon state file and log.
+     * @param idleTimeout the time in milliseconds after which a daemon started by this client exits when unused.
+     */
+    public NcssDaemonClient(File directory, long idleTimeout) {
+        this.directory = directory;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Analyzes the sources with the settings of an analyzer, in the daemon if possible, or else with the analyzer.
+     *
+     * @param analyzer the analyzer holding the settings, and analyzing the sources when the daemon can't.
+     * @param files the source files.
+     * @param handler the handler receiving the metrics of each batch, in the order of the files.
+     * @throws MavenReportException if JavaNCSS fails on a source, or the handler fails.
+     */
+    public void analyze(NcssAnalyzer analyzer, List<File> files, NcssMetricsHandler handler)
+            throws MavenReportException {
+        Socket socket;
+        try {
+            socket = connect();
+        } catch (IOException ioe) {
+            // not worth failing the build for
+            used = false;
+            analyzer.analyze(files, handler);
+            return;
+        }
+        used = true;
+        try (Socket connection = socket) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            out.writeByte(NcssDaemon.COMMAND_ANALYZE);
+            NcssCache.writeNullableUTF(out, analyzer.getEncoding());
+            out.writeInt(analyzer.getThreads());
+            NcssCache.writeNullableUTF(out, path(analyzer.getCacheFile()));
+            out.writeInt(analyzer.getBatchSize());
+            out.writeBoolean(analyzer.isIsolateParseFailures());
+            NcssCache.writeNullableUTF(out, path(analyzer.getFailureFile()));
+            out.writeLong(analyzer.getFileTimeout());
+            out.writeInt(reactorThreads);
+            out.writeInt(files.size());
+            for (File file : files) {
+                out.writeUTF(file.getAbsolutePath());
+            }
+            out.flush();
+
+            byte frame;
+            while ((frame = in.readByte()) == NcssDaemon.FRAME_BATCH) {
+                handler.handle(NcssDaemon.readBatch(in));
+            }
+            if (frame == NcssDaemon.FRAME_ERROR) {
+                throw new MavenReportException(in.readUTF());
+            }
+        } catch (IOException ioe) {
+            throw new MavenReportException("IO Error while analyzing sources with the JavaNCSS daemon", ioe);
+        }
+    }
+
+    /**
+     * Sets the number of sources parsed at a time by all modules of the build together, in the daemon. The daemon
+     * shares one pool of workers among all builds with the same value.
+     * @param reactorThreads the number of sources parsed at a time, 0 to give each module workers of its own
+     */
+    public void setReactorThreads(int reactorThreads) {
+        this.reactorThreads = reactorThreads;
+    }
+
+    /**
+     * Tells whether the last analysis ran in the daemon.
+     * @return boolean
+     */
+    public boolean isUsed() {
+        return used;
+    }
+
+    /**
+     * Stops the running daemon, if any.
+     *
+     * @throws IOException if the daemon can't be reached.
+     */
+    public void stop() throws IOException {
+        File stateFile = new File(directory, NcssDaemon.STATE_FILE_NAME);
+        if (stateFile.isFile()) {
+            try (Socket socket = handshake(readState(stateFile))) {
+                if (socket != null) {
+                    socket.getOutputStream().write(NcssDaemon.COMMAND_STOP);
+                    socket.getOutputStream().flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * Connects to a daemon with the same JavaNCSS version and plugin build, starting one if needed. The builds of the
+     * local user take turns, through a lock file, so that the modules of a parallel build don't each start a daemon of
+     * their own.
+     */
+    private Socket connect() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        // a file lock is held by the whole JVM: the threads of a parallel build take turns before taking it
+        synchronized (NcssDaemonClient.class) {
+            try (FileChannel channel = FileChannel.open(
+                            new File(directory, LOCK_FILE_NAME).toPath(),
+                            StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE);
+                    FileLock lock = channel.lock()) {
+                return connectLocked();
+            }
+        }
+    }
+
+    /**
+     * Connects to the daemon or starts one, while holding the lock: the state file is read once no other build can
+     * start a daemon anymore.
+     */
+    private Socket connectLocked() throws IOException {
+        File stateFile = new File(directory, NcssDaemon.STATE_FILE_NAME);
+        if (stateFile.isFile()) {
+            try {
+                Socket socket = handshake(readState(stateFile));
+                if (socket != null) {
+                    return socket;
+                }
+                // another version: make room for ours, the other one stops when idle
+                Files.deleteIfExists(stateFile.toPath());
+            } catch (SocketTimeoutException ste) {
+                // alive but slow: keep it, and analyze in this build
+                throw ste;
+            } catch (IOException ioe) {
+                // a dead daemon left its state file behind
+                Files.deleteIfExists(stateFile.toPath());
+            }
+        }
+        start();
+        long deadline = System.currentTimeMillis() + START_TIMEOUT;
+        while (!stateFile.isFile()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException(
+                        "The JavaNCSS daemon did not start, see " + new File(directory, NcssDaemon.LOG_FILE_NAME));
+            }
+            try {
+                Thread.sleep(START_POLL);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while starting the JavaNCSS daemon", ie);
+            }
+        }
+        Socket socket = handshake(readState(stateFile));
+        if (socket == null) {
+            throw new IOException("The JavaNCSS daemon runs another JavaNCSS version or plugin build");
+        }
+        return socket;
+    }
+
+    /**
+     * Connects and checks the token, the JavaNCSS version and the plugin build.
+     *
+     * @return the connected socket, or <code>null</code> if the daemon uses another JavaNCSS version or plugin build.
+     */
+    private static Socket handshake(Properties state) throws IOException {
+        String port = state.getProperty("port");
+        String token = state.getProperty("token");
+        if (port == null || token == null) {
+            throw new IOException("Incomplete JavaNCSS daemon state");
+        }
+        Socket socket = new Socket();
+        try {
+            socket.connect(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port)), HANDSHAKE_TIMEOUT);
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(NcssDaemon.MAGIC);
+            out.writeInt(NcssDaemon.PROTOCOL_VERSION);
+            out.writeUTF(token);
+            out.writeUTF(NcssAnalyzer.getJavaNCSSVersion());
+            out.writeUTF(NcssDaemon.getPluginBuild());
+            out.flush();
+            int status = socket.getInputStream().read();
+            if (status == NcssDaemon.STATUS_OK) {
+                // the analysis takes as long as it takes
+                socket.setSoTimeout(0);
+                return socket;
+            }
+            socket.close();
+            if (status == NcssDaemon.STATUS_VERSION_MISMATCH) {
+                return null;
+            }
+            throw new IOException("The JavaNCSS daemon refused the connection");
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /* package */ static Properties readState(File stateFile) throws IOException {
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile.toPath())) {
+            state.load(in);
+        }
+        return state;
+    }
+
+    /**
+     * Starts a daemon in a background JVM, with the class path of the plugin.
+     */
+    private void start() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(getClassPath());
+        command.add(NcssDaemon.class.getName());
+        command.add(directory.getAbsolutePath());
+        command.add(String.valueOf(idleTimeout));
+        File log = new File(directory, NcssDaemon.LOG_FILE_NAME);
+        new ProcessBuilder(command)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                .start()
+                .getOutputStream()
+                .close();
+    }
+
+    private static String getClassPath() throws IOException {
+        Set<String> entries = new LinkedHashSet<>();
+        ClassLoader loader = NcssDaemonClient.class.getClassLoader();
+        if (loader instanceof URLClassLoader) {
+            // the plugin class realm
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                entries.add(toPath(url));
+            }
+        }
+        for (Class<?> type : new Class<?>[] {NcssDaemon.class, Javancss.class, MavenReportException.class}) {
+            entries.add(toPath(type.getProtectionDomain().getCodeSource().getLocation()));
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static String toPath(URL url) throws IOException {
+        try {
+            return new File(url.toURI()).getPath();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Can't put " + url + " on the JavaNCSS daemon class path", e);
+        }
+    }
+
+    private static String path(File file) {
+        return (file == null) ? null : file.getAbsolutePath();
+    }
+}
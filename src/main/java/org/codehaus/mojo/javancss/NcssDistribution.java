@@ -0,0 +1,88 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The distributions of the NCSS and CCN of the functions and of the NCSS of the objects of a package or of a whole
+ * analysis, see {@link NcssDistributions}.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssDistribution {
+    private final String name;
+
+    private final NcssHistogram functionNcss = new NcssHistogram();
+
+    private final NcssHistogram functionCcn = new NcssHistogram();
+
+    private final NcssHistogram objectNcss = new NcssHistogram();
+
+    /* package */ NcssDistribution(String name) {
+        this.name = name;
+    }
+
+    /* package */ void addFunction(int ncss, int ccn) {
+        functionNcss.add(ncss);
+        functionCcn.add(ccn);
+    }
+
+    /* package */ void addObject(int ncss) {
+        objectNcss.add(ncss);
+    }
+
+    /* package */ void addAll(NcssDistribution distribution) {
+        functionNcss.addAll(distribution.functionNcss);
+        functionCcn.addAll(distribution.functionCcn);
+        objectNcss.addAll(distribution.objectNcss);
+    }
+
+    /**
+     * Gets the package name, <code>null</code> for a whole analysis
+     * @return String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the distribution of the NCSS of the functions
+     * @return NcssHistogram
+     */
+    public NcssHistogram getFunctionNcss() {
+        return functionNcss;
+    }
+
+    /**
+     * Gets the distribution of the CCN of the functions
+     * @return NcssHistogram
+     */
+    public NcssHistogram getFunctionCcn() {
+        return functionCcn;
+    }
+
+    /**
+     * Gets the distribution of the NCSS of the objects
+     * @return NcssHistogram
+     */
+    public NcssHistogram getObjectNcss() {
+        return objectNcss;
+    }
+}
@@ -0,0 +1,171 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The distributions of the function and object metrics of an analysis, per package and in total, filled in one pass
+ * over the rows. The distributions of a stream of batches are merged bucket by bucket, so that they take the same
+ * memory whatever the number of objects and functions.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssDistributions {
+    // the package JavaNCSS puts the classes without a package declaration in
+    private static final String DEFAULT_PACKAGE = ".";
+
+    private final Map<String, NcssDistribution> packages = new TreeMap<>();
+
+    private final NcssDistribution total = new NcssDistribution(null);
+
+    /* package */ NcssDistributions() {
+        // empty distributions
+    }
+
+    /**
+     * Computes the distributions of an analysis. Each object and function is counted in the package its name starts
+     * with, the longest one if packages are nested.
+     *
+     * @param metrics the metrics of the analysis.
+     * @return the distributions.
+     */
+    /* package */ static NcssDistributions of(NcssMetrics metrics) {
+        NcssDistributions distributions = new NcssDistributions();
+        List<NcssDistribution> byIndex = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        Set<String> prefixes = new HashSet<>();
+        for (NcssPackage metric : metrics.getPackages()) {
+            String name = metric.getName();
+            indexes.put(name, byIndex.size());
+            byIndex.add(distributions.get(name));
+            for (int dot = name.indexOf('.'); dot > 0; dot = name.indexOf('.', dot + 1)) {
+                prefixes.add(name.substring(0, dot));
+            }
+            prefixes.add(name);
+        }
+        Integer defaultPackage = indexes.get(DEFAULT_PACKAGE);
+        int fallback = (defaultPackage == null) ? -1 : defaultPackage;
+
+        NcssFunctionRows functions = metrics.getFunctions();
+        int[] packageOf = packageIndexes(functions.getNames(), indexes, prefixes, fallback);
+        for (int i = 0; i < functions.size(); i++) {
+            int ncss = functions.getValue(NcssFunctionRows.NCSS, i);
+            int ccn = functions.getValue(NcssFunctionRows.CCN, i);
+            distributions.total.addFunction(ncss, ccn);
+            int id = functions.getNameId(i);
+            int index = (id < 0) ? fallback : packageOf[id];
+            if (index >= 0) {
+                byIndex.get(index).addFunction(ncss, ccn);
+            }
+        }
+        NcssObjectRows objects = metrics.getObjects();
+        packageOf = packageIndexes(objects.getNames(), indexes, prefixes, fallback);
+        for (int i = 0; i < objects.size(); i++) {
+            int ncss = objects.getValue(NcssObjectRows.NCSS, i);
+            distributions.total.addObject(ncss);
+            int id = objects.getNameId(i);
+            int index = (id < 0) ? fallback : packageOf[id];
+            if (index >= 0) {
+                byIndex.get(index).addObject(ncss);
+            }
+        }
+        return distributions;
+    }
+
+    /**
+     * Finds the package of each name in one pass over the ids, parents first: a name is in the package of its parent,
+     * unless it is a package itself. Only the names which are packages or package prefixes are built as strings.
+     */
+    private static int[] packageIndexes(
+            NcssNames names, Map<String, Integer> indexes, Set<String> prefixes, int fallback) {
+        int[] packageOf = new int[names.size()];
+        String[] prefixOf = new String[names.size()];
+        packageOf[NcssNames.ROOT] = fallback;
+        prefixOf[NcssNames.ROOT] = "";
+        for (int id = NcssNames.ROOT + 1; id < names.size(); id++) {
+            int parent = names.getParent(id);
+            packageOf[id] = packageOf[parent];
+            if (prefixOf[parent] != null) {
+                String name = (parent == NcssNames.ROOT)
+                        ? names.getSegment(id)
+                        : prefixOf[parent] + '.' + names.getSegment(id);
+                if (prefixes.contains(name)) {
+                    prefixOf[id] = name;
+                    Integer index = indexes.get(name);
+                    if (index != null) {
+                        packageOf[id] = index;
+                    }
+                }
+            }
+        }
+        return packageOf;
+    }
+
+    /**
+     * Adds the distributions of another analysis, e.g. of the next batch.
+     *
+     * @param distributions the distributions to add.
+     */
+    /* package */ void addAll(NcssDistributions distributions) {
+        for (NcssDistribution distribution : distributions.packages.values()) {
+            get(distribution.getName()).addAll(distribution);
+        }
+        total.addAll(distributions.total);
+    }
+
+    /* package */ NcssDistributions copy() {
+        NcssDistributions copy = new NcssDistributions();
+        copy.addAll(this);
+        return copy;
+    }
+
+    private NcssDistribution get(String name) {
+        NcssDistribution distribution = packages.get(name);
+        if (distribution == null) {
+            distribution = new NcssDistribution(name);
+            packages.put(name, distribution);
+        }
+        return distribution;
+    }
+
+    /**
+     * Gets the distributions of each package, sorted by package name
+     * @return List
+     */
+    public List<NcssDistribution> getPackages() {
+        return new ArrayList<>(packages.values());
+    }
+
+    /**
+     * Gets the distributions of the whole analysis
+     * @return NcssDistribution
+     */
+    public NcssDistribution getTotal() {
+        return total;
+    }
+}
@@ -19,39 +19,70 @@ package org.codehaus.mojo.javancss;
  * under the License.
  */
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import javancss.Javancss;
-import javancss.parser.ParseException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.maven.reporting.MavenReportException;
 
 /**
  * The NcssExecuter is able to call JavaNCSS to produce a code analysis.<br>
- * The results are produced into a raw xml file.
+ * The results are returned as {@link NcssMetrics}, and optionally exported into a raw xml file.
  *
  * @author <a href="jeanlaurent@gmail.com">Jean-Laurent de Morlhon</a>
  * @version $Id$
  */
 public class NcssExecuter {
-    private static final int ARG_SIZE = 8;
+    // the number of batches waiting to be written while the next one is analyzed
+    private static final int PIPELINE_CAPACITY = 2;
 
     // the full path to the directory holding the sources to point JavaNCSS to.
     // Or the location of a file holding the path towards all files. (javancss style *sigh* :)
     private final File sourceLocation;
 
-    // JavaNCSS will write an xml output into this file.
+    // the raw xml report is written into this file, unless it is null.
     private final String outputFilename;
 
     private final String[] fileList;
 
+    // the files of each source root, or null for a single root
+    private final Map<String, String[]> sourceRoots;
+
     private String encoding = null;
 
+    private int threads = 1;
+
+    private File cacheFile = null;
+
+    private int batchSize = 0;
+
+    private int lineThreshold = Integer.MAX_VALUE;
+
+    private List<NcssRanking> rankings = NcssRanking.DEFAULTS;
+
+    private List<String> exportFormats = Collections.emptyList();
+
+    private File exportDirectory = null;
+
+    private boolean isolateParseFailures = false;
+
+    private File failureFile = null;
+
+    private long fileTimeout = 0;
+
+    private NcssDaemonClient daemon = null;
+
+    private NcssWorkers workers = null;
+
     /**
      * Construct a NcssExecuter with no arguments.<br>
      * Used for testing.
@@ -60,29 +91,45 @@ public class NcssExecuter {
         this.sourceLocation = null;
         this.outputFilename = null;
         this.fileList = null;
+        this.sourceRoots = null;
     }
 
     /**
      * Construct a NcssExecuter.
      *
      * @param sourceDirectory the directory where the source to analyze are.
-     * @param outputFilename the output file where the result will be written.
+     * @param outputFilename the output file where the result will be written, <code>null</code> for none.
      */
     public NcssExecuter(File sourceDirectory, String outputFilename) {
         this.sourceLocation = sourceDirectory;
         this.outputFilename = outputFilename;
         this.fileList = null;
+        this.sourceRoots = null;
     }
 
     /**
      * Creates a NcssExecuter
      * @param fileList some array of files
-     * @param outputFilename output file name
+     * @param outputFilename output file name, <code>null</code> for none
      */
     public NcssExecuter(String[] fileList, String outputFilename) {
         this.sourceLocation = null;
         this.fileList = fileList;
         this.outputFilename = outputFilename;
+        this.sourceRoots = null;
+    }
+
+    /**
+     * Creates a NcssExecuter analyzing several source roots in one pass. The roots are analyzed at the same time on
+     * one set of workers, and each one gets its own section in the raw report, next to the combined metrics.
+     * @param sourceRoots the files of each source root, by root name, in the order of the report
+     * @param outputFilename output file name, <code>null</code> for none
+     */
+    public NcssExecuter(Map<String, String[]> sourceRoots, String outputFilename) {
+        this.sourceLocation = null;
+        this.fileList = null;
+        this.outputFilename = outputFilename;
+        this.sourceRoots = new LinkedHashMap<>(sourceRoots);
     }
 
     /**
@@ -102,79 +149,520 @@ public class NcssExecuter {
     }
 
     /**
-     * Call the JavaNCSS code analysis tool to produce the result to a temporary file.
+     * Sets the number of worker threads used to analyze the sources.
+     * @param threads number of threads, 1 runs JavaNCSS once on the whole source set
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Gets the number of worker threads used to analyze the sources.
+     * @return int
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the file caching the metrics of each source file between two executions.
+     * @param cacheFile the cache file, <code>null</code> to analyze every file on each execution
+     */
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Gets the file caching the metrics of each source file between two executions.
+     * @return File
+     */
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    /**
+     * Sets the number of files analyzed per batch. In batch mode, the metrics of each batch are streamed into the raw
+     * xml report and released before the next batch starts, and only the rows shown in the report are kept.
+     * @param batchSize number of files, 0 to analyze all files at once
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(0, batchSize);
+    }
+
+    /**
+     * Gets the number of files analyzed per batch.
+     * @return int
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of objects and functions kept per ranking in batch mode.
+     * @param lineThreshold the maximum number of lines shown in the report
+     */
+    public void setLineThreshold(int lineThreshold) {
+        this.lineThreshold = lineThreshold;
+    }
+
+    /**
+     * Gets the number of objects and functions kept per ranking in batch mode.
+     * @return int
+     */
+    public int getLineThreshold() {
+        return lineThreshold;
+    }
+
+    /**
+     * Sets the rankings whose objects and functions are kept in batch mode.
+     * @param rankings the "top N" tables of the report
+     */
+    public void setRankings(List<NcssRanking> rankings) {
+        this.rankings = rankings;
+    }
+
+    /**
+     * Gets the rankings whose objects and functions are kept in batch mode.
+     * @return List
+     */
+    public List<NcssRanking> getRankings() {
+        return rankings;
+    }
+
+    /**
+     * Sets the formats the metrics are exported in, see {@link NcssExporter}.
+     * @param exportFormats the formats, empty for no export
+     */
+    public void setExportFormats(List<String> exportFormats) {
+        this.exportFormats = exportFormats;
+    }
+
+    /**
+     * Gets the formats the metrics are exported in.
+     * @return List
+     */
+    public List<String> getExportFormats() {
+        return exportFormats;
+    }
+
+    /**
+     * Sets the directory of the exported metrics.
+     * @param exportDirectory the directory, <code>null</code> for no export
+     */
+    public void setExportDirectory(File exportDirectory) {
+        this.exportDirectory = exportDirectory;
+    }
+
+    /**
+     * Gets the directory of the exported metrics.
+     * @return File
+     */
+    public File getExportDirectory() {
+        return exportDirectory;
+    }
+
+    /**
+     * Sets whether the sources JavaNCSS can't parse are isolated and reported instead of failing the analysis.
+     * @param isolateParseFailures <code>true</code> to isolate the sources which can't be parsed
+     */
+    public void setIsolateParseFailures(boolean isolateParseFailures) {
+        this.isolateParseFailures = isolateParseFailures;
+    }
+
+    /**
+     * Gets whether the sources JavaNCSS can't parse are isolated.
+     * @return boolean
+     */
+    public boolean isIsolateParseFailures() {
+        return isolateParseFailures;
+    }
+
+    /**
+     * Sets the file remembering the sources which failed to parse, so that they are skipped until they change.
+     * @param failureFile the file, <code>null</code> to isolate the failures again on each execution
+     */
+    public void setFailureFile(File failureFile) {
+        this.failureFile = failureFile;
+    }
+
+    /**
+     * Gets the file remembering the sources which failed to parse.
+     * @return File
+     */
+    public File getFailureFile() {
+        return failureFile;
+    }
+
+    /**
+     * Sets the time JavaNCSS may spend per source file before the file is abandoned and reported as timed out.
+     * @param fileTimeout the time budget per file in milliseconds, 0 for none
+     */
+    public void setFileTimeout(long fileTimeout) {
+        this.fileTimeout = Math.max(0, fileTimeout);
+    }
+
+    /**
+     * Gets the time JavaNCSS may spend per source file, in milliseconds.
+     * @return long
+     */
+    public long getFileTimeout() {
+        return fileTimeout;
+    }
+
+    /**
+     * Sets the daemon the analysis is handed over to.
+     * @param daemon the daemon client, <code>null</code> to analyze the sources in this JVM
+     */
+    public void setDaemon(NcssDaemonClient daemon) {
+        this.daemon = daemon;
+    }
+
+    /**
+     * Gets the daemon the analysis is handed over to.
+     * @return NcssDaemonClient
+     */
+    public NcssDaemonClient getDaemon() {
+        return daemon;
+    }
+
+    /**
+     * Sets the workers shared with the analyses of other modules.
+     * @param workers the shared workers, <code>null</code> for workers of this analysis only
+     */
+    public void setWorkers(NcssWorkers workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Gets the workers shared with the analyses of other modules.
+     * @return NcssWorkers
+     */
+    public NcssWorkers getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Call the JavaNCSS code analysis tool, and write the raw xml report if an output file was given.
      *
+     * @return the metrics of the sources.
      * @throws MavenReportException if something goes bad during the execution
      */
-    public void execute() throws MavenReportException {
-        try {
-            Javancss javancss = new Javancss(getCommandLineArgument());
-            Throwable ncssThrow = javancss.getLastError();
-            if (ncssThrow != null) {
-                String lastErrorMessage = limit(javancss.getLastErrorMessage(), 3);
-
-                if (ncssThrow instanceof ParseException) {
-                    throw new MavenReportException(
-                            "Parsing error while executing JavaNCSS " + getJavaNCSSVersion() + " " + lastErrorMessage,
-                            (Exception) ncssThrow);
-                }
+    public NcssMetrics execute() throws MavenReportException {
+        return execute(null);
+    }
 
-                Exception e = (ncssThrow instanceof Exception) ? (Exception) ncssThrow : new Exception(ncssThrow);
-                throw new MavenReportException(
-                        "Unexpected error while executing JavaNCSS " + getJavaNCSSVersion() + " " + lastErrorMessage,
-                        e);
+    /**
+     * Call the JavaNCSS code analysis tool, and render the metrics while the raw xml report is written, if an output
+     * file was given.
+     *
+     * @param renderer the handler rendering the metrics of the sources, <code>null</code> if none.
+     * @return the metrics of the sources.
+     * @throws MavenReportException if something goes bad during the execution
+     */
+    public NcssMetrics execute(NcssMetricsHandler renderer) throws MavenReportException {
+        if (batchSize > 0) {
+            return executeBatches(renderer);
+        }
+        final NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        List<NcssRoot> roots = analyze(new NcssMetricsHandler() {
+            @Override
+            public void handle(NcssMetrics batch) {
+                builder.addAll(batch);
+            }
+        });
+        NcssMetrics metrics = builder.build().withRoots(roots);
+        try (final NcssExporter exporter = openExporter()) {
+            if (outputFilename == null && exporter == null) {
+                render(renderer, metrics);
+            } else {
+                renderWhileWriting(renderer, metrics, new NcssMetricsHandler() {
+                    @Override
+                    public void handle(NcssMetrics report) throws IOException {
+                        if (outputFilename != null) {
+                            NcssXmlWriter.write(new File(outputFilename), report);
+                            NcssColumnarWriter.write(new File(outputFilename), report);
+                        }
+                        if (exporter != null) {
+                            exporter.export(report);
+                        }
+                    }
+                });
+            }
+        } catch (IOException ioe) {
+            throw new MavenReportException("IO Error while writing JavaNCSS report " + outputFilename, ioe);
+        }
+        return metrics;
+    }
+
+    /**
+     * Streams the metrics of each batch into the raw report and the exports, and keeps only what the report shows.
+     * The batches are written on a thread of their own while the next ones are analyzed.
+     *
+     * @return all packages and totals, but only the top objects and functions.
+     */
+    private NcssMetrics executeBatches(NcssMetricsHandler renderer) throws MavenReportException {
+        final NcssSummaryCollector summary = new NcssSummaryCollector(lineThreshold, rankings);
+        final File output = (outputFilename == null) ? null : new File(outputFilename);
+        try (final NcssXmlSpool spool = (output == null)
+                        ? null
+                        : new NcssXmlSpool(output.getAbsoluteFile().getParentFile());
+                final NcssColumnarWriter columns =
+                        (output == null) ? null : new NcssColumnarWriter(NcssColumnarWriter.forReport(output));
+                final NcssExporter exporter = openExporter()) {
+            if (output == null && exporter == null) {
+                List<NcssRoot> roots = analyze(summary);
+                NcssMetrics metrics = summary.getMetrics().withRoots(roots);
+                render(renderer, metrics);
+                return metrics;
             }
+            List<NcssRoot> roots;
+            try (NcssPipeline pipeline = new NcssPipeline(
+                    new NcssMetricsHandler() {
+                        @Override
+                        public void handle(NcssMetrics batch) throws IOException {
+                            summary.handle(batch);
+                            if (output != null) {
+                                spool.handle(batch);
+                                columns.handle(batch);
+                            }
+                            if (exporter != null) {
+                                exporter.handle(batch);
+                            }
+                        }
+                    },
+                    PIPELINE_CAPACITY)) {
+                roots = analyze(pipeline);
+            }
+            NcssMetrics metrics = summary.getMetrics().withRoots(roots);
+            renderWhileWriting(renderer, metrics, new NcssMetricsHandler() {
+                @Override
+                public void handle(NcssMetrics report) throws IOException {
+                    if (output != null) {
+                        spool.write(output, report);
+                        columns.finish(report, output);
+                    }
+                    if (exporter != null) {
+                        exporter.finish(report);
+                    }
+                }
+            });
+            return metrics;
         } catch (IOException ioe) {
-            throw new MavenReportException("IO Error while executing JavaNCSS " + getJavaNCSSVersion(), ioe);
+            throw new MavenReportException("IO Error while writing JavaNCSS report " + outputFilename, ioe);
+        }
+    }
+
+    private NcssExporter openExporter() throws IOException {
+        return (exportDirectory == null) ? null : NcssExporter.open(exportFormats, exportDirectory);
+    }
+
+    private static void render(NcssMetricsHandler renderer, NcssMetrics metrics) throws IOException {
+        if (renderer != null) {
+            renderer.handle(metrics);
         }
     }
 
-    private String limit(String source, int lines) {
-        BufferedReader reader = new BufferedReader(new StringReader(source));
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Renders the metrics while the raw report is written on a thread of its own: both only read the metrics.
+     */
+    private static void renderWhileWriting(
+            NcssMetricsHandler renderer, final NcssMetrics metrics, final NcssMetricsHandler writer)
+            throws IOException {
+        if (renderer == null) {
+            writer.handle(metrics);
+            return;
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
         try {
-            for (int i = 0; i < lines; i++) {
-                String line = reader.readLine();
+            Future<Void> written = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    writer.handle(metrics);
+                    return null;
+                }
+            });
+            renderer.handle(metrics);
+            NcssPipeline.await(written);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                if (line != null) {
-                    if (sb.length() > 0) {
-                        sb.append("\n");
-                    }
-                    sb.append(line);
+    /**
+     * Analyzes the sources, root by root if there are several.
+     *
+     * @return the metrics of each root, empty for a single root.
+     */
+    private List<NcssRoot> analyze(NcssMetricsHandler handler) throws MavenReportException {
+        if (sourceRoots == null || sourceRoots.size() < 2) {
+            analyze(newAnalyzer(0, workers), getSourceFiles(), handler);
+            return Collections.emptyList();
+        }
+        NcssWorkers rootWorkers = (workers != null) ? workers : new NcssWorkers(threads);
+        try {
+            return analyzeRoots(rootWorkers, handler);
+        } finally {
+            if (rootWorkers != workers) {
+                rootWorkers.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Analyzes the source roots at the same time on the same workers, then hands their metrics over in the order of
+     * the roots. In batch mode the roots are analyzed one after the other, each one streaming its batches, so that
+     * only one batch is held in memory at a time; so are they when a daemon analyzes them, one request at a time.
+     */
+    private List<NcssRoot> analyzeRoots(NcssWorkers rootWorkers, final NcssMetricsHandler handler)
+            throws MavenReportException {
+        final boolean streaming = (batchSize > 0);
+        List<String> names = new ArrayList<>(sourceRoots.keySet());
+        List<Callable<NcssMetrics>> tasks = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            final NcssAnalyzer analyzer = newAnalyzer(i + 1, rootWorkers);
+            final List<File> files = toFiles(sourceRoots.get(names.get(i)));
+            tasks.add(new Callable<NcssMetrics>() {
+                @Override
+                public NcssMetrics call() throws MavenReportException {
+                    final NcssMetricsBuilder root = new NcssMetricsBuilder();
+                    analyze(analyzer, files, new NcssMetricsHandler() {
+                        @Override
+                        public void handle(NcssMetrics batch) throws IOException {
+                            if (streaming) {
+                                for (NcssPackage metric : batch.getPackages()) {
+                                    root.addPackage(metric);
+                                }
+                                handler.handle(batch);
+                            } else {
+                                root.addAll(batch);
+                            }
+                        }
+                    });
+                    return root.build();
                 }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                (streaming || daemon != null) ? 1 : tasks.size(), NcssWorkers.daemonThreads("javancss-root-"));
+        try {
+            List<Future<NcssMetrics>> futures = new ArrayList<>(tasks.size());
+            for (Callable<NcssMetrics> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            List<NcssRoot> roots = new ArrayList<>(names.size());
+            for (int i = 0; i < futures.size(); i++) {
+                NcssMetrics root = futures.get(i).get();
+                if (!streaming) {
+                    handler.handle(root);
+                }
+                roots.add(new NcssRoot(names.get(i), root.getPackages()));
+            }
+            return roots;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MavenReportException("Interrupted while executing JavaNCSS " + getJavaNCSSVersion(), ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof MavenReportException) {
+                throw (MavenReportException) cause;
             }
-            reader.close();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            MavenReportException failure =
+                    new MavenReportException("Error while executing JavaNCSS " + getJavaNCSSVersion());
+            failure.initCause(cause);
+            throw failure;
         } catch (IOException ioe) {
-            // cannot happen: in-memory StringReader
+            throw new MavenReportException(
+                    "IO Error while analyzing sources with JavaNCSS " + getJavaNCSSVersion(), ioe);
+        } finally {
+            executor.shutdownNow();
         }
-        return sb.toString();
     }
 
-    private String[] getCommandLineArgument() {
-        List<String> argumentList = new ArrayList<>(ARG_SIZE);
-        argumentList.add("-package");
-        argumentList.add("-object");
-        argumentList.add("-function");
-        argumentList.add("-xml");
-        argumentList.add("-recursive");
-        argumentList.add("-out");
-        argumentList.add(outputFilename);
+    /**
+     * Creates an analyzer with the settings of this executer.
+     *
+     * @param root the number of the source root, from 1, which gets cache and failure files of its own; 0 for a
+     *     single root.
+     */
+    private NcssAnalyzer newAnalyzer(int root, NcssWorkers analyzerWorkers) {
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setEncoding(encoding);
+        analyzer.setThreads(threads);
+        analyzer.setCacheFile(forRoot(cacheFile, root));
+        analyzer.setBatchSize(batchSize);
+        analyzer.setIsolateParseFailures(isolateParseFailures);
+        analyzer.setFailureFile(forRoot(failureFile, root));
+        analyzer.setFileTimeout(fileTimeout);
+        analyzer.setWorkers(analyzerWorkers);
+        return analyzer;
+    }
+
+    // javancss-cache.bin becomes javancss-cache-2.bin for the second root
+    private static File forRoot(File file, int root) {
+        if (file == null || root == 0) {
+            return file;
+        }
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = (dot < 0) ? name : name.substring(0, dot);
+        String extension = (dot < 0) ? "" : name.substring(dot);
+        return new File(file.getParentFile(), base + "-" + root + extension);
+    }
 
-        if (encoding != null) {
-            argumentList.add("-encoding");
-            argumentList.add(encoding);
+    private void analyze(NcssAnalyzer analyzer, List<File> files, NcssMetricsHandler handler)
+            throws MavenReportException {
+        if (daemon == null) {
+            analyzer.analyze(files, handler);
+        } else {
+            daemon.analyze(analyzer, files, handler);
         }
+    }
 
-        // If the source location is a directory, it means we can pass it straight to
-        // javancss. If it's a file, we assume it's containing the file list to parse
-        // so we pass it to javancss the way it expects it.
-        // (check javancss cmd line doc for more information)
+    /**
+     * Lists the files to analyze: either the given file list, the files of the only source root, or all java files
+     * below the source directory.
+     */
+    private List<File> getSourceFiles() {
+        List<File> files = new ArrayList<>();
         if ((sourceLocation != null) && (sourceLocation.isDirectory())) {
-            argumentList.add(sourceLocation.getAbsolutePath());
+            addJavaFiles(sourceLocation, files);
+        } else if (sourceRoots != null) {
+            for (String[] rootFiles : sourceRoots.values()) {
+                files.addAll(toFiles(rootFiles));
+            }
         } else {
-            argumentList.addAll(Arrays.asList(fileList));
+            files.addAll(toFiles(fileList));
+        }
+        return files;
+    }
+
+    private static List<File> toFiles(String[] fileNames) {
+        List<File> files = new ArrayList<>(fileNames.length);
+        for (String fileName : fileNames) {
+            files.add(new File(fileName));
+        }
+        return files;
+    }
+
+    private static void addJavaFiles(File directory, List<File> files) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addJavaFiles(child, files);
+            } else if (child.getName().endsWith(".java")) {
+                files.add(child);
+            }
         }
-        return argumentList.toArray(new String[argumentList.size()]);
     }
 
     /**
@@ -182,11 +670,6 @@ public class NcssExecuter {
      * @return The version number as a string
      */
     public static String getJavaNCSSVersion() {
-        Package p = Javancss.class.getPackage();
-        String version = (p == null) ? null : p.getSpecificationVersion();
-        if (version == null) {
-            version = "unknown";
-        }
-        return version;
+        return NcssAnalyzer.getJavaNCSSVersion();
     }
 }
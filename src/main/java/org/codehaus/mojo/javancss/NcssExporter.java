@@ -0,0 +1,189 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exports metrics for other tools, streaming the objects and functions of each batch as they are handled and the
+ * packages, source roots, totals and parse failures once all batches are. The exported metrics are those the report
+ * renders, named like in the raw report.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public abstract class NcssExporter implements NcssMetricsHandler, Closeable {
+    /**
+     * Exports JSON Lines, see {@link NcssJsonLinesExporter}.
+     */
+    public static final String JSONL = "jsonl";
+
+    /**
+     * Exports CSV, see {@link NcssCsvExporter}.
+     */
+    public static final String CSV = "csv";
+
+    /**
+     * The names of the package metrics, as in the raw report.
+     */
+    /* package */ static final String[] PACKAGE_METRICS = {
+        "classes", "functions", "ncss", "javadocs", "javadoc_lines", "single_comment_lines", "multi_comment_lines"
+    };
+
+    /**
+     * Opens the exporters of some formats.
+     *
+     * @param formats the formats, see {@link #JSONL} and {@link #CSV}.
+     * @param directory the directory of the exported files.
+     * @return an exporter writing all formats, or <code>null</code> if there is no format.
+     * @throws IOException if a file can't be created.
+     * @throws IllegalArgumentException if a format is not recognized.
+     */
+    public static NcssExporter open(List<String> formats, File directory) throws IOException {
+        List<String> checked = checkFormats(formats);
+        if (checked.isEmpty()) {
+            return null;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        final List<NcssExporter> exporters = new ArrayList<>();
+        try {
+            for (String format : checked) {
+                exporters.add(
+                        JSONL.equals(format)
+                                ? new NcssJsonLinesExporter(new File(directory, NcssJsonLinesExporter.FILE_NAME))
+                                : new NcssCsvExporter(directory));
+            }
+        } catch (IOException ioe) {
+            closeAll(exporters);
+            throw ioe;
+        }
+        return (exporters.size() == 1)
+                ? exporters.get(0)
+                : new NcssExporter() {
+                    @Override
+                    public void handle(NcssMetrics batch) throws IOException {
+                        for (NcssExporter exporter : exporters) {
+                            exporter.handle(batch);
+                        }
+                    }
+
+                    @Override
+                    public void finish(NcssMetrics metrics) throws IOException {
+                        for (NcssExporter exporter : exporters) {
+                            exporter.finish(metrics);
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        closeAll(exporters);
+                    }
+                };
+    }
+
+    /**
+     * Checks the export formats.
+     *
+     * @param formats the formats, in any case, may be <code>null</code>.
+     * @return the distinct formats, in lower case.
+     * @throws IllegalArgumentException if a format is not recognized.
+     */
+    public static List<String> checkFormats(List<String> formats) {
+        if (formats == null) {
+            return Collections.emptyList();
+        }
+        List<String> checked = new ArrayList<>();
+        for (String format : formats) {
+            String lowerCase = format.trim().toLowerCase(Locale.ENGLISH);
+            if (!JSONL.equals(lowerCase) && !CSV.equals(lowerCase)) {
+                throw new IllegalArgumentException(
+                        "Unknown JavaNCSS export format '" + format + "', expected " + JSONL + " or " + CSV);
+            }
+            if (!checked.contains(lowerCase)) {
+                checked.add(lowerCase);
+            }
+        }
+        return checked;
+    }
+
+    /**
+     * Exports all metrics of an analysis at once.
+     *
+     * @param metrics the metrics.
+     * @throws IOException if the metrics can't be written.
+     */
+    public void export(NcssMetrics metrics) throws IOException {
+        handle(metrics);
+        finish(metrics);
+    }
+
+    /**
+     * Writes the objects and functions of a batch.
+     *
+     * @param batch the metrics of the batch.
+     * @throws IOException if the metrics can't be written.
+     */
+    @Override
+    public abstract void handle(NcssMetrics batch) throws IOException;
+
+    /**
+     * Writes the packages, source roots, totals and parse failures, after the batches.
+     *
+     * @param metrics the metrics of the analysis.
+     * @throws IOException if the metrics can't be written.
+     */
+    public abstract void finish(NcssMetrics metrics) throws IOException;
+
+    /* package */ static int[] packageValues(NcssPackage metric) {
+        return new int[] {
+            metric.getClasses(),
+            metric.getFunctions(),
+            metric.getNcss(),
+            metric.getJavadocs(),
+            metric.getJavadocLines(),
+            metric.getSingleCommentLines(),
+            metric.getMultiCommentLines()
+        };
+    }
+
+    private static void closeAll(List<? extends Closeable> closeables) throws IOException {
+        IOException failure = null;
+        for (Closeable closeable : closeables) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                if (failure == null) {
+                    failure = ioe;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
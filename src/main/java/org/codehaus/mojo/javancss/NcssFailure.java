@@ -0,0 +1,82 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Objects;
+
+/**
+ * A source file JavaNCSS could not parse. Its metrics are missing from the analysis.
+ *
+ * @version $Id$
+ */
+public final class NcssFailure {
+    private final String file;
+
+    private final String message;
+
+    /**
+     * Creates a failure.
+     *
+     * @param file the path of the source file.
+     * @param message the JavaNCSS error message.
+     */
+    public NcssFailure(String file, String message) {
+        this.file = file;
+        this.message = message;
+    }
+
+    /**
+     * Gets the path of the source file
+     * @return String
+     */
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the JavaNCSS error message
+     * @return String
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NcssFailure)) {
+            return false;
+        }
+        NcssFailure other = (NcssFailure) obj;
+        return Objects.equals(file, other.file) && Objects.equals(message, other.message);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(file, message);
+    }
+
+    @Override
+    public String toString() {
+        return file + ": " + message;
+    }
+}
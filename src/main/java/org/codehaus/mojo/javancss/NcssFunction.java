@@ -0,0 +1,116 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Objects;
+
+/**
+ * The metrics of one method or constructor.
+ *
+ * @version $Id$
+ */
+public final class NcssFunction {
+    private final String name;
+
+    private final int ncss;
+
+    private final int ccn;
+
+    private final int javadocs;
+
+    /**
+     * Creates the metrics of a function.
+     *
+     * @param name the fully qualified function name, with its parameter types.
+     * @param ncss the number of non commenting source statements.
+     * @param ccn the cyclomatic complexity number.
+     * @param javadocs the number of javadoc comments.
+     */
+    public NcssFunction(String name, int ncss, int ccn, int javadocs) {
+        this.name = name;
+        this.ncss = ncss;
+        this.ccn = ccn;
+        this.javadocs = javadocs;
+    }
+
+    /**
+     * Sums the metrics of two functions, e.g. to compute totals.
+     *
+     * @param other the metrics to add.
+     * @return the summed metrics, named after this function.
+     */
+    public NcssFunction add(NcssFunction other) {
+        return new NcssFunction(name, ncss + other.ncss, ccn + other.ccn, javadocs + other.javadocs);
+    }
+
+    /**
+     * Gets the function name
+     * @return String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of non commenting source statements
+     * @return int
+     */
+    public int getNcss() {
+        return ncss;
+    }
+
+    /**
+     * Gets the cyclomatic complexity number
+     * @return int
+     */
+    public int getCcn() {
+        return ccn;
+    }
+
+    /**
+     * Gets the number of javadoc comments
+     * @return int
+     */
+    public int getJavadocs() {
+        return javadocs;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NcssFunction)) {
+            return false;
+        }
+        NcssFunction other = (NcssFunction) obj;
+        return Objects.equals(name, other.name) && ncss == other.ncss && ccn == other.ccn && javadocs == other.javadocs;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, ncss, ccn, javadocs);
+    }
+
+    @Override
+    public String toString() {
+        return name + " [ncss=" + ncss + ", ccn=" + ccn + "]";
+    }
+}
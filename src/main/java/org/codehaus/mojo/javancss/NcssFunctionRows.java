@@ -0,0 +1,93 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+/**
+ * The function rows of an analysis, stored column by column.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssFunctionRows extends NcssRows<NcssFunction> {
+    /**
+     * The column of the non commenting source statements.
+     */
+    public static final int NCSS = 0;
+
+    /**
+     * The column of the cyclomatic complexity.
+     */
+    public static final int CCN = 1;
+
+    /**
+     * The column of the javadoc comments.
+     */
+    public static final int JAVADOCS = 2;
+
+    /**
+     * The names of the columns, as in the raw report.
+     */
+    /* package */ static final String[] METRICS = {"ncss", "ccn", "javadocs"};
+
+    private static final int COLUMNS = METRICS.length;
+
+    /* package */ NcssFunctionRows() {
+        super(COLUMNS);
+    }
+
+    private NcssFunctionRows(NcssFunctionRows rows) {
+        super(rows);
+    }
+
+    /**
+     * Stores a list of functions column by column, unless it already is.
+     *
+     * @param functions the functions.
+     * @return the rows.
+     */
+    /* package */ static NcssFunctionRows of(List<NcssFunction> functions) {
+        if (functions instanceof NcssFunctionRows) {
+            return (NcssFunctionRows) functions;
+        }
+        NcssFunctionRows rows = new NcssFunctionRows();
+        for (NcssFunction metric : functions) {
+            rows.append(metric);
+        }
+        return rows;
+    }
+
+    /* package */ void append(NcssFunction metric) {
+        int index = append(metric.getName());
+        set(NCSS, index, metric.getNcss());
+        set(CCN, index, metric.getCcn());
+        set(JAVADOCS, index, metric.getJavadocs());
+    }
+
+    /* package */ NcssFunctionRows copy() {
+        return new NcssFunctionRows(this);
+    }
+
+    @Override
+    /* package */ NcssFunction row(int index) {
+        return new NcssFunction(getName(index), getValue(NCSS, index), getValue(CCN, index), getValue(JAVADOCS, index));
+    }
+}
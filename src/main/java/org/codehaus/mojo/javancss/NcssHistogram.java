@@ -0,0 +1,144 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * The distribution of one metric over a stream of values, in fixed buckets: values below 32 are counted exactly, and
+ * each larger power of two is split into 16 buckets, so that a percentile is never more than 1/16 above the real value.
+ * The memory used only depends on the largest value, never on the number of values.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssHistogram {
+    // the values counted exactly
+    private static final int EXACT = 32;
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // the exponent of the first power of two split into sub-buckets
+    private static final int FIRST_EXPONENT = 5;
+
+    /**
+     * The percentiles shown by the report and written to the raw report.
+     */
+    /* package */ static final int[] PERCENTILES = {50, 90, 99};
+
+    /* package */ static final int BUCKETS = EXACT + (31 - FIRST_EXPONENT) * SUB_BUCKETS;
+
+    private int[] counts = new int[0];
+
+    private long count;
+
+    private int max;
+
+    /**
+     * Counts a value. Negative values are counted as 0.
+     *
+     * @param value the value.
+     */
+    /* package */ void add(int value) {
+        int v = Math.max(0, value);
+        int bucket = bucket(v);
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, Math.min(BUCKETS, Math.max(bucket + 1, counts.length * 2)));
+        }
+        counts[bucket]++;
+        count++;
+        max = Math.max(max, v);
+    }
+
+    /**
+     * Adds the values of another histogram.
+     *
+     * @param histogram the other histogram.
+     */
+    /* package */ void addAll(NcssHistogram histogram) {
+        if (histogram.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, histogram.counts.length);
+        }
+        for (int i = 0; i < histogram.counts.length; i++) {
+            counts[i] += histogram.counts[i];
+        }
+        count += histogram.count;
+        max = Math.max(max, histogram.max);
+    }
+
+    /**
+     * Gets the number of values
+     * @return long
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the largest value, 0 if there are none
+     * @return int
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Gets a percentile: the value which the given percentage of the values do not exceed, rounded up to the upper
+     * bound of its bucket, but never above the largest value.
+     *
+     * @param percent the percentage, from 0 to 100.
+     * @return the percentile, 0 if there are no values.
+     */
+    public int getPercentile(int percent) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (count * Math.min(100, Math.max(0, percent)) + 99) / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, upperBound(bucket));
+            }
+        }
+        return max;
+    }
+
+    /* package */ static int bucket(int value) {
+        if (value < EXACT) {
+            return value;
+        }
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return EXACT + ((exponent - FIRST_EXPONENT) << SUB_BUCKET_BITS) + ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /* package */ static int upperBound(int bucket) {
+        if (bucket < EXACT) {
+            return bucket;
+        }
+        int exponent = ((bucket - EXACT) >> SUB_BUCKET_BITS) + FIRST_EXPONENT;
+        int shift = exponent - SUB_BUCKET_BITS;
+        int lower = (SUB_BUCKETS + ((bucket - EXACT) & (SUB_BUCKETS - 1))) << shift;
+        return lower + ((1 << shift) - 1);
+    }
+}
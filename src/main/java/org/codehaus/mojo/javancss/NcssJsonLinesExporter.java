@@ -0,0 +1,112 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Exports metrics as JSON Lines, one record per line told apart by its <code>type</code>: <code>object</code> and
+ * <code>function</code> records as the batches are handled, then <code>package</code>, <code>root</code>,
+ * <code>totals</code> and <code>failure</code> records.
+ *
+ * <pre>
+ * {"type":"function","name":"org.foo.Bar.baz()","ncss":12,"ccn":3,"javadocs":1}
+ * {"type":"totals","packages":1,"classes":1,"functions":1,"ncss":14,...}
+ * </pre>
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public class NcssJsonLinesExporter extends NcssExporter {
+    /**
+     * The name of the exported file.
+     */
+    public static final String FILE_NAME = "javancss-metrics.jsonl";
+
+    private final Writer out;
+
+    /**
+     * Creates the exported file, gzip-compressed if its name ends with <code>.gz</code>.
+     *
+     * @param file the exported file.
+     * @throws IOException if the file can't be created.
+     */
+    public NcssJsonLinesExporter(File file) throws IOException {
+        out = NcssXmlWriter.newWriter(file);
+    }
+
+    @Override
+    public void handle(NcssMetrics batch) throws IOException {
+        writeRows("object", batch.getObjects(), NcssObjectRows.METRICS);
+        writeRows("function", batch.getFunctions(), NcssFunctionRows.METRICS);
+    }
+
+    @Override
+    public void finish(NcssMetrics metrics) throws IOException {
+        for (NcssPackage metric : metrics.getPackages()) {
+            start("package", "name", metric.getName());
+            writeValues(NcssExporter.PACKAGE_METRICS, NcssExporter.packageValues(metric));
+        }
+        for (NcssRoot root : metrics.getRoots()) {
+            start("root", "directory", root.getDirectory());
+            out.write(",\"packages\":" + root.getPackages().size());
+            writeValues(NcssExporter.PACKAGE_METRICS, NcssExporter.packageValues(root.getTotal()));
+        }
+        NcssTotals totals = metrics.getTotals();
+        out.write("{\"type\":\"totals\",\"packages\":" + totals.getPackageCount());
+        writeValues(NcssExporter.PACKAGE_METRICS, NcssExporter.packageValues(totals.getPackageTotal()));
+        for (NcssFailure failure : metrics.getFailures()) {
+            start("failure", "file", failure.getFile());
+            out.write(",\"message\":");
+            NcssListingWriter.writeString(out, failure.getMessage());
+            out.write("}\n");
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeRows(String type, NcssRows<?> rows, String[] metrics) throws IOException {
+        for (int row = 0; row < rows.size(); row++) {
+            start(type, "name", rows.getName(row));
+            for (int column = 0; column < metrics.length; column++) {
+                out.write(",\"" + metrics[column] + "\":" + rows.getValue(column, row));
+            }
+            out.write("}\n");
+        }
+    }
+
+    private void start(String type, String key, String value) throws IOException {
+        out.write("{\"type\":\"" + type + "\",\"" + key + "\":");
+        NcssListingWriter.writeString(out, value);
+    }
+
+    private void writeValues(String[] metrics, int[] values) throws IOException {
+        for (int i = 0; i < metrics.length; i++) {
+            out.write(",\"" + metrics[i] + "\":" + values[i]);
+        }
+        out.write("}\n");
+    }
+}
@@ -0,0 +1,174 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Persistent set of the source files JavaNCSS failed to parse, so that later analyses skip them right away instead of
+ * isolating them again. A file is retried as soon as its content changes, and the whole set is dropped when the
+ * JavaNCSS version or the source encoding changes.
+ *
+ * @version $Id$
+ */
+public class NcssKnownFailures {
+    private static final int MAGIC = 0x4e434646; // "NCFF"
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final String javancssVersion;
+
+    private final String encoding;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Creates an empty set.
+     *
+     * @param javancssVersion the JavaNCSS version which failed to parse the files.
+     * @param encoding the encoding of the source files, may be <code>null</code>.
+     */
+    public NcssKnownFailures(String javancssVersion, String encoding) {
+        this.javancssVersion = javancssVersion;
+        this.encoding = encoding;
+    }
+
+    /**
+     * Loads the set from disk. A missing, unreadable or incompatible file gives an empty set.
+     *
+     * @param file the file holding the set.
+     * @param javancssVersion the JavaNCSS version which failed to parse the files.
+     * @param encoding the encoding of the source files, may be <code>null</code>.
+     * @return the set.
+     */
+    public static NcssKnownFailures load(File file, String javancssVersion, String encoding) {
+        NcssKnownFailures failures = new NcssKnownFailures(javancssVersion, encoding);
+        if (!file.isFile()) {
+            return failures;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC
+                    || in.readInt() != FORMAT_VERSION
+                    || !javancssVersion.equals(in.readUTF())
+                    || !Objects.equals(encoding, NcssCache.readNullableUTF(in))) {
+                return failures;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                NcssCache.Stamp stamp = NcssCache.Stamp.read(in);
+                failures.entries.put(path, new Entry(stamp, in.readUTF()));
+            }
+        } catch (IOException ioe) {
+            // the files will simply be isolated again
+            failures.entries.clear();
+        }
+        return failures;
+    }
+
+    /**
+     * Writes the set to disk.
+     *
+     * @param file the file holding the set.
+     * @throws IOException if the file can't be written.
+     */
+    public void save(File file) throws IOException {
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(javancssVersion);
+            NcssCache.writeNullableUTF(out, encoding);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().stamp.write(out);
+                out.writeUTF(entry.getValue().message);
+            }
+        }
+    }
+
+    /**
+     * Looks up a file.
+     *
+     * @param file the source file.
+     * @return the error message of the failure, or <code>null</code> if the file is not known to fail or has changed.
+     * @throws IOException if the file can't be read to compute its hash.
+     */
+    public String get(File file) throws IOException {
+        Entry entry = entries.get(file.getAbsolutePath());
+        return (entry != null && entry.stamp.matches(file)) ? entry.message : null;
+    }
+
+    /**
+     * Records a file which failed to parse.
+     *
+     * @param file the source file.
+     * @param stamp the stamp of the file.
+     * @param message the error message.
+     */
+    public void put(File file, NcssCache.Stamp stamp, String message) {
+        entries.put(file.getAbsolutePath(), new Entry(stamp, message));
+    }
+
+    /**
+     * Drops all files which are not in the given collection, i.e. which were deleted or parsed successfully.
+     *
+     * @param files the files which still fail.
+     */
+    public void retainAll(Collection<File> files) {
+        Set<String> paths = new HashSet<>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        entries.keySet().retainAll(paths);
+    }
+
+    /**
+     * Gets the number of known failures
+     * @return int
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+        private final NcssCache.Stamp stamp;
+
+        private final String message;
+
+        private Entry(NcssCache.Stamp stamp, String message) {
+            this.stamp = stamp;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the complete object and function tables as data pages next to the html report, which shows them one page at
+ * a time instead of rendering every row into the report page. Each table is written sorted by NCSS, by its second
+ * metric (CCN for functions, methods for objects) and by name. A page is a JSON object wrapped in a call to
+ * <code>javancssListingPage</code>, so that the report loads it with a <code>script</code> element and still works
+ * when opened from disk:
+ *
+ * <pre>
+ * javancssListingPage({"table":"functions","sort":"ncss","page":0,"pages":2,"total":1500,
+ *     "rows":[["org.foo.Bar.baz()",12,3,1],...]});
+ * </pre>
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssListingWriter {
+    /**
+     * The directory of the pages, relative to the html report.
+     */
+    public static final String DIRECTORY = "javancss-listing";
+
+    /**
+     * The script showing the pages in the html report, in {@link #DIRECTORY}.
+     */
+    public static final String SCRIPT = "listing.js";
+
+    private static final String CALLBACK = "javancssListingPage";
+
+    private static final String FUNCTIONS = "functions";
+
+    private static final String OBJECTS = "objects";
+
+    private static final String BY_NAME = "name";
+
+    private NcssListingWriter() {
+        // utility class
+    }
+
+    /**
+     * Writes the pages and the script showing them, replacing the pages of an earlier report.
+     *
+     * @param directory the directory of the html report.
+     * @param metrics the metrics.
+     * @param pageSize the number of rows per page.
+     * @throws IOException if the pages can't be written.
+     */
+    public static void write(File directory, NcssMetrics metrics, int pageSize) throws IOException {
+        File listing = new File(directory, DIRECTORY);
+        if (!listing.isDirectory() && !listing.mkdirs()) {
+            throw new IOException("Can't create " + listing);
+        }
+        File[] old = listing.listFiles();
+        if (old != null) {
+            for (File file : old) {
+                Files.delete(file.toPath());
+            }
+        }
+        try (InputStream script = NcssListingWriter.class.getResourceAsStream("/javancss-listing.js")) {
+            Files.copy(script, new File(listing, SCRIPT).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        int rowsPerPage = Math.max(1, pageSize);
+        NcssFunctionRows functions = metrics.getFunctions();
+        int[] functionColumns = {NcssFunctionRows.NCSS, NcssFunctionRows.CCN, NcssFunctionRows.JAVADOCS};
+        writePages(
+                listing,
+                FUNCTIONS,
+                "ncss",
+                functions,
+                functions.sort(NcssFunctionRows.NCSS),
+                functionColumns,
+                rowsPerPage);
+        writePages(
+                listing,
+                FUNCTIONS,
+                "ccn",
+                functions,
+                functions.sort(NcssFunctionRows.CCN),
+                functionColumns,
+                rowsPerPage);
+        writePages(listing, FUNCTIONS, BY_NAME, functions, functions.sortByName(), functionColumns, rowsPerPage);
+        NcssObjectRows objects = metrics.getObjects();
+        int[] objectColumns = {
+            NcssObjectRows.NCSS, NcssObjectRows.FUNCTIONS, NcssObjectRows.CLASSES, NcssObjectRows.JAVADOCS
+        };
+        writePages(listing, OBJECTS, "ncss", objects, objects.sort(NcssObjectRows.NCSS), objectColumns, rowsPerPage);
+        writePages(
+                listing,
+                OBJECTS,
+                "functions",
+                objects,
+                objects.sort(NcssObjectRows.FUNCTIONS),
+                objectColumns,
+                rowsPerPage);
+        writePages(listing, OBJECTS, BY_NAME, objects, objects.sortByName(), objectColumns, rowsPerPage);
+    }
+
+    /**
+     * Gets the file name of a page
+     * @param table <code>functions</code> or <code>objects</code>
+     * @param sort the sort of the table
+     * @param page the number of the page, from 0
+     * @return String
+     */
+    public static String pageName(String table, String sort, int page) {
+        return table + '-' + sort + '-' + page + ".js";
+    }
+
+    private static void writePages(
+            File listing, String table, String sort, NcssRows<?> rows, int[] order, int[] columns, int pageSize)
+            throws IOException {
+        // an empty table still gets an empty first page
+        int pages = Math.max(1, (order.length + pageSize - 1) / pageSize);
+        for (int page = 0; page < pages; page++) {
+            File file = new File(listing, pageName(table, sort, page));
+            try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                out.write(CALLBACK + "({\"table\":\"" + table + "\",\"sort\":\"" + sort + "\",\"page\":" + page
+                        + ",\"pages\":" + pages + ",\"total\":" + order.length + ",\"rows\":[");
+                int end = Math.min(order.length, (page + 1) * pageSize);
+                for (int i = page * pageSize; i < end; i++) {
+                    int row = order[i];
+                    out.write((i > page * pageSize) ? ",\n[" : "\n[");
+                    writeString(out, rows.getName(row));
+                    for (int column : columns) {
+                        out.write(',');
+                        out.write(Integer.toString(rows.getValue(column, row)));
+                    }
+                    out.write(']');
+                }
+                out.write("]});\n");
+            }
+        }
+    }
+
+    /* package */ static void writeString(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20 || c == 0x2028 || c == 0x2029 || c == '<') {
+                // also keeps the script element and the line terminators of older javascript engines safe
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
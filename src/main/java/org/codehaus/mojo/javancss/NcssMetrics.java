@@ -0,0 +1,147 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The immutable result of a JavaNCSS analysis: the metrics of each package, object and function, their totals, the
+ * source files which could not be parsed and, when several source roots were analyzed together, the metrics of each
+ * root. The objects and functions are stored column by column, see {@link NcssRows}. Their distributions are computed
+ * on first use, see {@link NcssDistributions}.
+ *
+ * @version $Id$
+ */
+public final class NcssMetrics {
+    private final List<NcssPackage> packages;
+
+    private final NcssObjectRows objects;
+
+    private final NcssFunctionRows functions;
+
+    private final NcssTotals totals;
+
+    private final List<NcssFailure> failures;
+
+    private final List<NcssRoot> roots;
+
+    // computed on first use, or merged from the batches of a streamed analysis
+    private volatile NcssDistributions distributions;
+
+    /* package */ NcssMetrics(
+            List<NcssPackage> packages,
+            List<NcssObject> objects,
+            List<NcssFunction> functions,
+            NcssTotals totals,
+            List<NcssFailure> failures,
+            List<NcssRoot> roots) {
+        this(packages, objects, functions, totals, failures, roots, null);
+    }
+
+    /* package */ NcssMetrics(
+            List<NcssPackage> packages,
+            List<NcssObject> objects,
+            List<NcssFunction> functions,
+            NcssTotals totals,
+            List<NcssFailure> failures,
+            List<NcssRoot> roots,
+            NcssDistributions distributions) {
+        this.packages = Collections.unmodifiableList(packages);
+        this.objects = NcssObjectRows.of(objects);
+        this.functions = NcssFunctionRows.of(functions);
+        this.totals = totals;
+        this.failures = Collections.unmodifiableList(failures);
+        this.roots = Collections.unmodifiableList(roots);
+        this.distributions = distributions;
+    }
+
+    /**
+     * Copies these metrics with the metrics of each source root.
+     *
+     * @param roots the metrics of the source roots.
+     * @return the copy.
+     */
+    /* package */ NcssMetrics withRoots(List<NcssRoot> roots) {
+        return new NcssMetrics(packages, objects, functions, totals, failures, roots, distributions);
+    }
+
+    /**
+     * Gets the package metrics, sorted by package name
+     * @return List
+     */
+    public List<NcssPackage> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Gets the object metrics, in the order the sources were analyzed
+     * @return NcssObjectRows
+     */
+    public NcssObjectRows getObjects() {
+        return objects;
+    }
+
+    /**
+     * Gets the function metrics, in the order the sources were analyzed
+     * @return NcssFunctionRows
+     */
+    public NcssFunctionRows getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Gets the totals
+     * @return NcssTotals
+     */
+    public NcssTotals getTotals() {
+        return totals;
+    }
+
+    /**
+     * Gets the source files JavaNCSS could not parse, which are missing from the metrics
+     * @return List
+     */
+    public List<NcssFailure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Gets the metrics of each source root, empty unless several roots were analyzed together
+     * @return List
+     */
+    public List<NcssRoot> getRoots() {
+        return roots;
+    }
+
+    /**
+     * Gets the distributions of the function and object metrics, per package and in total
+     * @return NcssDistributions
+     */
+    public NcssDistributions getDistributions() {
+        NcssDistributions result = distributions;
+        if (result == null) {
+            // computing them twice concurrently gives the same result
+            result = NcssDistributions.of(this);
+            distributions = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,152 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects metrics into an immutable {@link NcssMetrics}. Packages added more than once, e.g. because their sources
+ * were analyzed in several chunks, are merged.
+ *
+ * @version $Id$
+ */
+public class NcssMetricsBuilder {
+    private final Map<String, NcssPackage> packages = new TreeMap<>();
+
+    private final NcssObjectRows objects = new NcssObjectRows();
+
+    private final NcssFunctionRows functions = new NcssFunctionRows();
+
+    private final List<NcssFailure> failures = new ArrayList<>();
+
+    private final List<NcssRoot> roots = new ArrayList<>();
+
+    /**
+     * Adds the metrics of a package, merging them with the metrics already added for the same package.
+     *
+     * @param metric the package metrics.
+     * @return this builder.
+     */
+    public NcssMetricsBuilder addPackage(NcssPackage metric) {
+        NcssPackage merged = packages.get(metric.getName());
+        packages.put(metric.getName(), (merged == null) ? metric : merged.add(metric));
+        return this;
+    }
+
+    /**
+     * Adds the metrics of an object.
+     *
+     * @param metric the object metrics.
+     * @return this builder.
+     */
+    public NcssMetricsBuilder addObject(NcssObject metric) {
+        objects.append(metric);
+        return this;
+    }
+
+    /**
+     * Adds the metrics of a function.
+     *
+     * @param metric the function metrics.
+     * @return this builder.
+     */
+    public NcssMetricsBuilder addFunction(NcssFunction metric) {
+        functions.append(metric);
+        return this;
+    }
+
+    /**
+     * Adds a source file which could not be parsed.
+     *
+     * @param failure the failure.
+     * @return this builder.
+     */
+    public NcssMetricsBuilder addFailure(NcssFailure failure) {
+        failures.add(failure);
+        return this;
+    }
+
+    /**
+     * Adds the metrics of a source root. They are not added to the packages: the packages of an analysis already
+     * combine the packages of all its roots.
+     *
+     * @param root the metrics of the root.
+     * @return this builder.
+     */
+    public NcssMetricsBuilder addRoot(NcssRoot root) {
+        roots.add(root);
+        return this;
+    }
+
+    /**
+     * Adds all metrics of another analysis.
+     *
+     * @param metrics the metrics to add.
+     * @return this builder.
+     */
+    public NcssMetricsBuilder addAll(NcssMetrics metrics) {
+        for (NcssPackage metric : metrics.getPackages()) {
+            addPackage(metric);
+        }
+        objects.appendAll(metrics.getObjects());
+        functions.appendAll(metrics.getFunctions());
+        failures.addAll(metrics.getFailures());
+        roots.addAll(metrics.getRoots());
+        return this;
+    }
+
+    /**
+     * Builds the metrics and computes their totals.
+     *
+     * @return the metrics.
+     */
+    public NcssMetrics build() {
+        NcssPackage packageTotal = new NcssPackage(null, 0, 0, 0, 0, 0, 0, 0);
+        for (NcssPackage metric : packages.values()) {
+            packageTotal = packageTotal.add(metric);
+        }
+        NcssObject objectTotal = new NcssObject(
+                null,
+                objects.sum(NcssObjectRows.NCSS),
+                objects.sum(NcssObjectRows.FUNCTIONS),
+                objects.sum(NcssObjectRows.CLASSES),
+                objects.sum(NcssObjectRows.JAVADOCS),
+                objects.sum(NcssObjectRows.JAVADOC_LINES),
+                objects.sum(NcssObjectRows.SINGLE_COMMENT_LINES),
+                objects.sum(NcssObjectRows.MULTI_COMMENT_LINES));
+        NcssFunction functionTotal = new NcssFunction(
+                null,
+                functions.sum(NcssFunctionRows.NCSS),
+                functions.sum(NcssFunctionRows.CCN),
+                functions.sum(NcssFunctionRows.JAVADOCS));
+        NcssTotals totals = new NcssTotals(
+                packages.size(), packageTotal, objects.size(), objectTotal, functions.size(), functionTotal);
+        return new NcssMetrics(
+                new ArrayList<>(packages.values()),
+                objects.copy(),
+                functions.copy(),
+                totals,
+                new ArrayList<>(failures),
+                new ArrayList<>(roots));
+    }
+}
@@ -0,0 +1,38 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * Receives the metrics of an analysis batch by batch, see {@link NcssAnalyzer#analyze(java.util.List,
+ * NcssMetricsHandler)}.
+ *
+ * @version $Id$
+ */
+public interface NcssMetricsHandler {
+    /**
+     * Handles the metrics of one batch. The batch is released once this method returns.
+     *
+     * @param batch the metrics of the batch.
+     * @throws IOException if the metrics can't be stored.
+     */
+    void handle(NcssMetrics batch) throws IOException;
+}
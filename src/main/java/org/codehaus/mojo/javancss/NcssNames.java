@@ -0,0 +1,263 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A symbol table of qualified names, stored as a tree of their dot separated segments: a name is the id of its last
+ * segment, whose parents are the enclosing class and packages. The segments are shared, so the package and class
+ * prefixes repeated by thousands of methods are stored once. The parameters of a method, which may contain dots
+ * too, stay in the segment of the method.
+ * <p>
+ * A parent always has a smaller id than its children, so that metrics can be rolled up to the enclosing classes and
+ * packages in a single pass over the ids, see {@link #rollup(int[], int[], int)}.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssNames {
+    /**
+     * The id of the root of the tree, which is the parent of the first segments but not a name itself.
+     */
+    public static final int ROOT = 0;
+
+    private static final int NO_NAME = -1;
+
+    private int[] parents;
+
+    private int[] segments;
+
+    private int size;
+
+    private String[] segmentTable;
+
+    private int segmentCount;
+
+    // the lookup tables, only built once a name is added
+    private Map<String, Integer> segmentIds;
+
+    private int[] slots;
+
+    /**
+     * Creates an empty symbol table.
+     */
+    public NcssNames() {
+        parents = new int[] {NO_NAME};
+        segments = new int[] {NO_NAME};
+        size = 1;
+        segmentTable = new String[0];
+    }
+
+    /**
+     * Copies a symbol table, trimmed to its size.
+     */
+    /* package */ NcssNames(NcssNames names) {
+        size = names.size;
+        parents = Arrays.copyOf(names.parents, size);
+        segments = Arrays.copyOf(names.segments, size);
+        segmentCount = names.segmentCount;
+        segmentTable = Arrays.copyOf(names.segmentTable, segmentCount);
+    }
+
+    /**
+     * Gets the number of ids, including the root
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a name, unless it is already known.
+     *
+     * @param name the qualified name, may be <code>null</code>.
+     * @return the id of the name, or <code>-1</code> for <code>null</code>.
+     */
+    public int add(String name) {
+        if (name == null) {
+            return NO_NAME;
+        }
+        int end = name.indexOf('(');
+        if (end < 0) {
+            end = name.length();
+        }
+        int id = ROOT;
+        int start = 0;
+        int dot = name.indexOf('.');
+        while (dot >= 0 && dot < end) {
+            id = child(id, name.substring(start, dot));
+            start = dot + 1;
+            dot = name.indexOf('.', start);
+        }
+        return child(id, name.substring(start));
+    }
+
+    /**
+     * Gets the qualified name of an id.
+     *
+     * @param id the id.
+     * @return the name, or <code>null</code> for <code>-1</code>.
+     */
+    public String get(int id) {
+        if (id == NO_NAME) {
+            return null;
+        }
+        int length = -1;
+        for (int node = id; node != ROOT; node = parents[node]) {
+            length += segmentTable[segments[node]].length() + 1;
+        }
+        char[] chars = new char[length];
+        int end = length;
+        for (int node = id; node != ROOT; node = parents[node]) {
+            String segment = segmentTable[segments[node]];
+            end -= segment.length();
+            segment.getChars(0, segment.length(), chars, end);
+            if (end > 0) {
+                chars[--end] = '.';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Gets the id of the parent of an id
+     * @param id the id
+     * @return int
+     */
+    public int getParent(int id) {
+        return parents[id];
+    }
+
+    /**
+     * Gets the last segment of the name of an id
+     * @param id the id
+     * @return String
+     */
+    public String getSegment(int id) {
+        return segmentTable[segments[id]];
+    }
+
+    /**
+     * Rolls metrics up the tree: the total of an id is its own value plus the totals of its children, so that the
+     * total of a class includes its methods and the total of a package its classes.
+     *
+     * @param ids the ids of the rows.
+     * @param values the values of the rows.
+     * @param count the number of rows.
+     * @return the totals, indexed by id.
+     */
+    public long[] rollup(int[] ids, int[] values, int count) {
+        long[] totals = new long[size];
+        for (int i = 0; i < count; i++) {
+            if (ids[i] != NO_NAME) {
+                totals[ids[i]] += values[i];
+            }
+        }
+        for (int id = size - 1; id > ROOT; id--) {
+            totals[parents[id]] += totals[id];
+        }
+        return totals;
+    }
+
+    /**
+     * Adds the name of an id of another table.
+     *
+     * @param names the other table.
+     * @param id the id in the other table.
+     * @param ids the ids already translated from the other table, <code>-1</code> if not yet.
+     * @return the id in this table.
+     */
+    /* package */ int add(NcssNames names, int id, int[] ids) {
+        if (id == NO_NAME || id == ROOT) {
+            return id;
+        }
+        if (ids[id] < 0) {
+            ids[id] = child(add(names, names.parents[id], ids), names.segmentTable[names.segments[id]]);
+        }
+        return ids[id];
+    }
+
+    private int child(int parent, String segment) {
+        if (slots == null) {
+            index();
+        }
+        Integer segmentId = segmentIds.get(segment);
+        if (segmentId == null) {
+            if (segmentCount == segmentTable.length) {
+                segmentTable = Arrays.copyOf(segmentTable, Math.max(16, segmentCount * 2));
+            }
+            segmentId = segmentCount;
+            segmentTable[segmentCount++] = segment;
+            segmentIds.put(segment, segmentId);
+        }
+        int slot = find(parent, segmentId);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+        if (size == parents.length) {
+            parents = Arrays.copyOf(parents, size * 2);
+            segments = Arrays.copyOf(segments, size * 2);
+        }
+        parents[size] = parent;
+        segments[size] = segmentId;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return size - 1;
+    }
+
+    // the slot holding the id + 1 of the child, or the empty slot where it goes
+    private int find(int parent, int segment) {
+        int mask = slots.length - 1;
+        int hash = (parent * 31 + segment) * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (parents[id] == parent && segments[id] == segment) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void index() {
+        segmentIds = new HashMap<>();
+        for (int i = 0; i < segmentCount; i++) {
+            segmentIds.put(segmentTable[i], i);
+        }
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity *= 2;
+        }
+        rehash(capacity);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = ROOT + 1; id < size; id++) {
+            slots[find(parents[id], segments[id])] = id + 1;
+        }
+    }
+}
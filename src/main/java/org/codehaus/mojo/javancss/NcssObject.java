@@ -0,0 +1,188 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Objects;
+
+/**
+ * The metrics of one class, interface, enum or annotation type.
+ *
+ * @version $Id$
+ */
+public final class NcssObject {
+    private final String name;
+
+    private final int ncss;
+
+    private final int functions;
+
+    private final int classes;
+
+    private final int javadocs;
+
+    private final int javadocLines;
+
+    private final int singleCommentLines;
+
+    private final int multiCommentLines;
+
+    /**
+     * Creates the metrics of an object.
+     *
+     * @param name the fully qualified object name.
+     * @param ncss the number of non commenting source statements.
+     * @param functions the number of functions.
+     * @param classes the number of inner classes.
+     * @param javadocs the number of javadoc comments.
+     * @param javadocLines the number of javadoc lines.
+     * @param singleCommentLines the number of single line comments.
+     * @param multiCommentLines the number of multi line comment lines.
+     */
+    public NcssObject(
+            String name,
+            int ncss,
+            int functions,
+            int classes,
+            int javadocs,
+            int javadocLines,
+            int singleCommentLines,
+            int multiCommentLines) {
+        this.name = name;
+        this.ncss = ncss;
+        this.functions = functions;
+        this.classes = classes;
+        this.javadocs = javadocs;
+        this.javadocLines = javadocLines;
+        this.singleCommentLines = singleCommentLines;
+        this.multiCommentLines = multiCommentLines;
+    }
+
+    /**
+     * Sums the metrics of two objects, e.g. to compute totals.
+     *
+     * @param other the metrics to add.
+     * @return the summed metrics, named after this object.
+     */
+    public NcssObject add(NcssObject other) {
+        return new NcssObject(
+                name,
+                ncss + other.ncss,
+                functions + other.functions,
+                classes + other.classes,
+                javadocs + other.javadocs,
+                javadocLines + other.javadocLines,
+                singleCommentLines + other.singleCommentLines,
+                multiCommentLines + other.multiCommentLines);
+    }
+
+    /**
+     * Gets the object name
+     * @return String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of non commenting source statements
+     * @return int
+     */
+    public int getNcss() {
+        return ncss;
+    }
+
+    /**
+     * Gets the number of functions
+     * @return int
+     */
+    public int getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Gets the number of inner classes
+     * @return int
+     */
+    public int getClasses() {
+        return classes;
+    }
+
+    /**
+     * Gets the number of javadoc comments
+     * @return int
+     */
+    public int getJavadocs() {
+        return javadocs;
+    }
+
+    /**
+     * Gets the number of javadoc lines
+     * @return int
+     */
+    public int getJavadocLines() {
+        return javadocLines;
+    }
+
+    /**
+     * Gets the number of single line comments
+     * @return int
+     */
+    public int getSingleCommentLines() {
+        return singleCommentLines;
+    }
+
+    /**
+     * Gets the number of multi line comment lines
+     * @return int
+     */
+    public int getMultiCommentLines() {
+        return multiCommentLines;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NcssObject)) {
+            return false;
+        }
+        NcssObject other = (NcssObject) obj;
+        return Objects.equals(name, other.name)
+                && ncss == other.ncss
+                && functions == other.functions
+                && classes == other.classes
+                && javadocs == other.javadocs
+                && javadocLines == other.javadocLines
+                && singleCommentLines == other.singleCommentLines
+                && multiCommentLines == other.multiCommentLines;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(
+                name, ncss, functions, classes, javadocs, javadocLines, singleCommentLines, multiCommentLines);
+    }
+
+    @Override
+    public String toString() {
+        return name + " [ncss=" + ncss + ", functions=" + functions + ", classes=" + classes + "]";
+    }
+}
@@ -0,0 +1,133 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+/**
+ * The object rows of an analysis, stored column by column.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssObjectRows extends NcssRows<NcssObject> {
+    /**
+     * The column of the non commenting source statements.
+     */
+    public static final int NCSS = 0;
+
+    /**
+     * The column of the functions.
+     */
+    public static final int FUNCTIONS = 1;
+
+    /**
+     * The column of the inner classes.
+     */
+    public static final int CLASSES = 2;
+
+    /**
+     * The column of the javadoc comments.
+     */
+    public static final int JAVADOCS = 3;
+
+    /**
+     * The column of the javadoc lines.
+     */
+    public static final int JAVADOC_LINES = 4;
+
+    /**
+     * The column of the single line comments.
+     */
+    public static final int SINGLE_COMMENT_LINES = 5;
+
+    /**
+     * The column of the multi line comment lines.
+     */
+    public static final int MULTI_COMMENT_LINES = 6;
+
+    /**
+     * The names of the columns, as in the raw report.
+     */
+    /* package */ static final String[] METRICS = {
+        "ncss",
+        "functions",
+        "classes",
+        "javadocs",
+        "javadocs_lines",
+        "single_comment_lines",
+        "implementation_comment_lines"
+    };
+
+    private static final int COLUMNS = METRICS.length;
+
+    /* package */ NcssObjectRows() {
+        super(COLUMNS);
+    }
+
+    private NcssObjectRows(NcssObjectRows rows) {
+        super(rows);
+    }
+
+    /**
+     * Stores a list of objects column by column, unless it already is.
+     *
+     * @param objects the objects.
+     * @return the rows.
+     */
+    /* package */ static NcssObjectRows of(List<NcssObject> objects) {
+        if (objects instanceof NcssObjectRows) {
+            return (NcssObjectRows) objects;
+        }
+        NcssObjectRows rows = new NcssObjectRows();
+        for (NcssObject metric : objects) {
+            rows.append(metric);
+        }
+        return rows;
+    }
+
+    /* package */ void append(NcssObject metric) {
+        int index = append(metric.getName());
+        set(NCSS, index, metric.getNcss());
+        set(FUNCTIONS, index, metric.getFunctions());
+        set(CLASSES, index, metric.getClasses());
+        set(JAVADOCS, index, metric.getJavadocs());
+        set(JAVADOC_LINES, index, metric.getJavadocLines());
+        set(SINGLE_COMMENT_LINES, index, metric.getSingleCommentLines());
+        set(MULTI_COMMENT_LINES, index, metric.getMultiCommentLines());
+    }
+
+    /* package */ NcssObjectRows copy() {
+        return new NcssObjectRows(this);
+    }
+
+    @Override
+    /* package */ NcssObject row(int index) {
+        return new NcssObject(
+                getName(index),
+                getValue(NCSS, index),
+                getValue(FUNCTIONS, index),
+                getValue(CLASSES, index),
+                getValue(JAVADOCS, index),
+                getValue(JAVADOC_LINES, index),
+                getValue(SINGLE_COMMENT_LINES, index),
+                getValue(MULTI_COMMENT_LINES, index));
+    }
+}
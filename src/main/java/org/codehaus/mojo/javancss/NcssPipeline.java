@@ -0,0 +1,153 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the batches of an analysis over to a handler running on a thread of its own, through a bounded queue: the
+ * next batch is analyzed while the previous one is written, and no more than <code>capacity</code> batches wait in
+ * memory. A failure of the handler is thrown by the next call to {@link #handle(NcssMetrics)} or by
+ * {@link #close()}, which waits for the queued batches to be handled.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public class NcssPipeline implements NcssMetricsHandler, Closeable {
+    // marks the end of the batches
+    private static final NcssMetrics END = new NcssMetricsBuilder().build();
+
+    private static final long POLL_MILLIS = 100;
+
+    private final BlockingQueue<NcssMetrics> queue;
+
+    private final ExecutorService executor;
+
+    private final Future<Void> consumer;
+
+    private boolean closed;
+
+    /**
+     * Starts the thread handling the batches.
+     *
+     * @param handler the handler of the batches.
+     * @param capacity the number of batches which may wait for the handler.
+     */
+    public NcssPipeline(final NcssMetricsHandler handler, int capacity) {
+        queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        executor = Executors.newSingleThreadExecutor();
+        consumer = executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException, InterruptedException {
+                for (NcssMetrics batch = queue.take(); batch != END; batch = queue.take()) {
+                    handler.handle(batch);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Queues a batch, waiting while the queue is full.
+     *
+     * @param batch the metrics of the batch.
+     * @throws IOException if the handler failed on an earlier batch.
+     */
+    @Override
+    public void handle(NcssMetrics batch) throws IOException {
+        put(batch);
+    }
+
+    /**
+     * Waits for the queued batches to be handled and stops the thread.
+     *
+     * @throws IOException if the handler failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            put(END);
+            await(consumer);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void put(NcssMetrics batch) throws IOException {
+        try {
+            // the handler may fail, and never take the batch
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (consumer.isDone()) {
+                    executor.shutdown();
+                    await(consumer);
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queuing JavaNCSS metrics");
+        }
+        if (consumer.isDone()) {
+            executor.shutdown();
+            await(consumer);
+        }
+    }
+
+    /**
+     * Waits for a task, and throws its failure.
+     *
+     * @param task the task.
+     * @throws IOException if the task failed with an <code>IOException</code> or was interrupted.
+     */
+    /* package */ static void await(Future<?> task) throws IOException {
+        try {
+            task.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for JavaNCSS metrics to be handled");
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            // the handler thread was interrupted
+            throw new InterruptedIOException("Interrupted while handling JavaNCSS metrics");
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A "top N" table of the report: the objects or the functions with the largest values of one metric. A ranking is
+ * written <code>object:&lt;metric&gt;</code> or <code>function:&lt;metric&gt;</code>, the metric being named like in
+ * the raw report, e.g. <code>object:ncss</code> or <code>function:ccn</code>.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public final class NcssRanking {
+    private static final String OBJECT = "object";
+
+    private static final String FUNCTION = "function";
+
+    /**
+     * The rankings of the report unless configured: objects by NCSS and by functions, functions by NCSS.
+     */
+    public static final List<NcssRanking> DEFAULTS = Collections.unmodifiableList(Arrays.asList(
+            new NcssRanking(false, NcssObjectRows.NCSS),
+            new NcssRanking(false, NcssObjectRows.FUNCTIONS),
+            new NcssRanking(true, NcssFunctionRows.NCSS)));
+
+    private final boolean function;
+
+    private final int column;
+
+    private NcssRanking(boolean function, int column) {
+        this.function = function;
+        this.column = column;
+    }
+
+    /**
+     * Parses a ranking.
+     *
+     * @param spec the ranking, e.g. <code>function:ccn</code>.
+     * @return the ranking.
+     * @throws IllegalArgumentException if the ranking is not recognized.
+     */
+    public static NcssRanking parse(String spec) {
+        String trimmed = spec.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon > 0) {
+            String kind = trimmed.substring(0, colon).trim();
+            String metric = trimmed.substring(colon + 1).trim();
+            if (OBJECT.equals(kind)) {
+                int column = Arrays.asList(NcssObjectRows.METRICS).indexOf(metric);
+                if (column >= 0) {
+                    return new NcssRanking(false, column);
+                }
+            } else if (FUNCTION.equals(kind)) {
+                int column = Arrays.asList(NcssFunctionRows.METRICS).indexOf(metric);
+                if (column >= 0) {
+                    return new NcssRanking(true, column);
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown JavaNCSS ranking '" + spec + "', expected object:<metric> with "
+                + Arrays.toString(NcssObjectRows.METRICS) + " or function:<metric> with "
+                + Arrays.toString(NcssFunctionRows.METRICS));
+    }
+
+    /**
+     * Parses the configured rankings.
+     *
+     * @param specs the rankings, may be <code>null</code>.
+     * @return the rankings, or {@link #DEFAULTS} if none is configured.
+     * @throws IllegalArgumentException if a ranking is not recognized.
+     */
+    public static List<NcssRanking> parse(String[] specs) {
+        if (specs == null || specs.length == 0) {
+            return DEFAULTS;
+        }
+        List<NcssRanking> rankings = new ArrayList<>();
+        for (String spec : specs) {
+            NcssRanking ranking = parse(spec);
+            if (!rankings.contains(ranking)) {
+                rankings.add(ranking);
+            }
+        }
+        return Collections.unmodifiableList(rankings);
+    }
+
+    /**
+     * Gets whether the functions are ranked, rather than the objects
+     * @return boolean
+     */
+    public boolean isFunction() {
+        return function;
+    }
+
+    /**
+     * Gets the ranked column, see {@link NcssObjectRows} and {@link NcssFunctionRows}
+     * @return int
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Gets the ranked metric, named like in the raw report
+     * @return String
+     */
+    public String getMetric() {
+        return function ? NcssFunctionRows.METRICS[column] : NcssObjectRows.METRICS[column];
+    }
+
+    /**
+     * Gets the columns of the rankings of either the objects or the functions.
+     *
+     * @param rankings the rankings.
+     * @param function whether to get the function rankings, rather than the object rankings.
+     * @return the columns, in the order of the rankings.
+     */
+    /* package */ static int[] columns(List<NcssRanking> rankings, boolean function) {
+        int[] columns = new int[rankings.size()];
+        int count = 0;
+        for (NcssRanking ranking : rankings) {
+            if (ranking.function == function) {
+                columns[count++] = ranking.column;
+            }
+        }
+        return Arrays.copyOf(columns, count);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof NcssRanking)) {
+            return false;
+        }
+        NcssRanking other = (NcssRanking) obj;
+        return function == other.function && column == other.column;
+    }
+
+    @Override
+    public int hashCode() {
+        return (function ? 31 : 0) + column;
+    }
+
+    @Override
+    public String toString() {
+        return (function ? FUNCTION : OBJECT) + ':' + getMetric();
+    }
+}
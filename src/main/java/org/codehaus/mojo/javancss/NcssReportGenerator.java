@@ -18,15 +18,22 @@ package org.codehaus.mojo.javancss;
  * specific language governing permissions and limitations
  * under the License.
  */
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 import org.apache.maven.doxia.sink.Sink;
 import org.apache.maven.plugin.logging.Log;
-import org.dom4j.Document;
-import org.dom4j.Node;
 
 /**
  * Generates the javaNcss maven report.
@@ -36,10 +43,26 @@ import org.dom4j.Node;
  */
 public class NcssReportGenerator extends AbstractNcssReportGenerator {
 
+    private static final Comparator<NcssPackage> PACKAGE_BY_NCSS = new Comparator<NcssPackage>() {
+        @Override
+        public int compare(NcssPackage a, NcssPackage b) {
+            return Integer.compare(b.getNcss(), a.getNcss());
+        }
+    };
+
+    // below this many objects and functions, the sections are ranked on the calling thread
+    private static final int PARALLEL_ROWS = 10000;
+
+    // same format as the averages of the JavaNCSS raw report
+    private final DecimalFormat decimalFormat =
+            new DecimalFormat("#,##0.00", DecimalFormatSymbols.getInstance(Locale.US));
+
     private String xrefLocation;
 
     private int lineThreshold;
 
+    private String listingLocation;
+
     /**
      * build a new NcssReportGenerator.
      *
@@ -53,14 +76,35 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         this.xrefLocation = xrefLocation;
     }
 
+    /**
+     * Sets the location of the full listing written by {@link NcssListingWriter}, relative to the report.
+     *
+     * @param listingLocation the location, <code>null</code> for no full listing.
+     */
+    public void setListingLocation(String listingLocation) {
+        this.listingLocation = listingLocation;
+    }
+
+    /**
+     * Generates the JavaNcss reports with the default rankings.
+     *
+     * @param metrics the javaNcss metrics.
+     * @param lineThreshold the maximum number of lines to keep in major reports.
+     */
+    public void doReport(NcssMetrics metrics, int lineThreshold) {
+        doReport(metrics, lineThreshold, NcssRanking.DEFAULTS);
+    }
+
     /**
      * Generates the JavaNcss reports.
      *
-     * @param document the javaNcss raw report as an XML document.
+     * @param metrics the javaNcss metrics.
      * @param lineThreshold the maximum number of lines to keep in major reports.
+     * @param rankings the "top N" tables of objects and functions.
      */
-    public void doReport(Document document, int lineThreshold) {
+    public void doReport(NcssMetrics metrics, int lineThreshold, List<NcssRanking> rankings) {
         this.lineThreshold = lineThreshold;
+        Sections sections = Sections.compute(metrics, rankings, lineThreshold, PARALLEL_ROWS);
         // HEADER
         getSink().head();
         getSink().title();
@@ -72,20 +116,38 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         doIntro(true);
         // packages
         startSection("report.javancss.package.link", "report.javancss.package.title");
-        doMainPackageAnalysis(document);
-        doTotalPackageAnalysis(document);
+        doMainPackageAnalysis(sections.packages);
+        doTotalPackageAnalysis(metrics);
+        if (!metrics.getRoots().isEmpty()) {
+            doRootAnalysis(metrics);
+        }
         endSection();
         // Objects
         startSection("report.javancss.object.link", "report.javancss.object.title");
-        doTopObjectNcss(document);
-        doTopObjectFunctions(document);
-        doObjectAverage(document);
+        doTopObjects(metrics, rankings, sections.objects);
+        doObjectAverage(metrics);
         endSection();
         // Functions
         startSection("report.javancss.function.link", "report.javancss.function.title");
-        doFunctionAnalysis(document);
-        doFunctionAverage(document);
+        doTopFunctions(metrics, rankings, sections.functions);
+        doFunctionAverage(metrics);
+        endSection();
+        // Distributions
+        startSection("report.javancss.distribution.link", "report.javancss.distribution.title");
+        doDistributions(sections.distributions);
         endSection();
+        // Full listing
+        if (listingLocation != null) {
+            startSection("report.javancss.listing.link", "report.javancss.listing.title");
+            doListing();
+            endSection();
+        }
+        // Parse failures
+        if (!metrics.getFailures().isEmpty()) {
+            startSection("report.javancss.failure.link", "report.javancss.failure.title");
+            doFailures(metrics);
+            endSection();
+        }
         // Explanation
         startSection("report.javancss.explanation.link", "report.javancss.explanation.title");
         doExplanation();
@@ -137,7 +199,7 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         }
     }
 
-    private void doMainPackageAnalysis(Document document) {
+    private void doMainPackageAnalysis(List<NcssPackage> packages) {
         subtitleHelper(getString("report.javancss.package.text"));
 
         // Start table with proper grid
@@ -165,31 +227,15 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().tableRow_();
 
         // Data rows
-        List<Node> list = document.selectNodes("//javancss/packages/package");
-        Collections.<Node>sort(list, new NumericNodeComparator("ncss"));
-        for (Node node : list) {
+        for (NcssPackage metric : packages) {
             getSink().tableRow();
 
             // Each cell in proper cell tags
             getSink().tableCell();
-            getSink().text(node.valueOf("name"));
+            getSink().text(metric.getName());
             getSink().tableCell_();
 
-            String[] fields = {
-                "classes",
-                "functions",
-                "ncss",
-                "javadocs",
-                "javadoc_lines",
-                "single_comment_lines",
-                "multi_comment_lines"
-            };
-
-            for (String field : fields) {
-                getSink().tableCell();
-                getSink().text(node.valueOf(field));
-                getSink().tableCell_();
-            }
+            packageCells(metric);
 
             getSink().tableRow_();
         }
@@ -199,7 +245,7 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().table_();
     }
 
-    private void doTotalPackageAnalysis(Document document) {
+    private void doTotalPackageAnalysis(NcssMetrics metrics) {
         getSink().table();
         getSink().tableRows(null, true);
 
@@ -223,42 +269,48 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().tableRow_();
 
         // Data row
-        Node node = document.selectSingleNode("//javancss/packages/total");
         getSink().tableRow();
-
-        String[] fields = {
-            "classes", "functions", "ncss", "javadocs", "javadoc_lines", "single_comment_lines", "multi_comment_lines"
-        };
-
-        for (String field : fields) {
-            getSink().tableCell();
-            getSink().text(node.valueOf(field));
-            getSink().tableCell_();
-        }
-
+        packageCells(metrics.getTotals().getPackageTotal());
         getSink().tableRow_();
         getSink().tableRows_();
         getSink().table_();
     }
 
-    private void doTopObjectNcss(Document document) {
-        subtitleHelper(getString("report.javancss.top") + " " + lineThreshold + " "
-                + getString("report.javancss.object.byncss"));
-        List<Node> nodeList = document.selectNodes("//javancss/objects/object");
-        Collections.<Node>sort(nodeList, new NumericNodeComparator("ncss"));
-        doTopObjectGeneric(nodeList);
+    private void doRootAnalysis(NcssMetrics metrics) {
+        subtitleHelper(getString("report.javancss.root.text"));
+        startTable();
+        createTableHeader(
+                "report.javancss.header.root",
+                "report.javancss.header.classe",
+                "report.javancss.header.function",
+                "report.javancss.header.ncss",
+                "report.javancss.header.javadoc",
+                "report.javancss.header.javadoc_line",
+                "report.javancss.header.single_comment",
+                "report.javancss.header.multi_comment");
+        for (NcssRoot root : metrics.getRoots()) {
+            getSink().tableRow();
+            tableCellHelper(root.getDirectory());
+            packageCells(root.getTotal());
+            getSink().tableRow_();
+        }
+        endTable();
     }
 
-    private void doTopObjectFunctions(Document document) {
-        subtitleHelper(getString("report.javancss.top") + " " + lineThreshold + " "
-                + getString("report.javancss.object.byfunction"));
-        List<Node> nodeList = document.selectNodes("//javancss/objects/object");
-        Collections.<Node>sort(nodeList, new NumericNodeComparator("functions"));
-        doTopObjectGeneric(nodeList);
+    private void doTopObjects(NcssMetrics metrics, List<NcssRanking> rankings, int[][] ranked) {
+        NcssObjectRows objects = metrics.getObjects();
+        int i = 0;
+        for (NcssRanking ranking : rankings) {
+            if (!ranking.isFunction()) {
+                subtitleHelper(getString("report.javancss.top") + " " + lineThreshold + " "
+                        + getString("report.javancss.object.by." + ranking.getMetric()));
+                doTopObjectGeneric(objects, ranked[i++]);
+            }
+        }
     }
 
-    // generic method called by doTopObjectFunctions & doTopObjectNCss
-    private void doTopObjectGeneric(List<Node> nodeList) {
+    // generic method called by doTopObjects for each ranking
+    private void doTopObjectGeneric(NcssObjectRows objects, int[] rows) {
         getSink().table();
         getSink().tableRows(null, true);
 
@@ -280,24 +332,20 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().tableRow_();
 
         // Data rows
-        Iterator<Node> nodeIterator = nodeList.iterator();
-        int i = 0;
-        while (nodeIterator.hasNext() && (i++ < lineThreshold)) {
-            Node node = nodeIterator.next();
+        for (int index : rows) {
+            NcssObject metric = objects.get(index);
             getSink().tableRow();
 
             // Object name cell with link
             getSink().tableCell();
-            jxrLink(node.valueOf("name"));
+            jxrLink(metric.getName());
             getSink().tableCell_();
 
             // Other cells
-            String[] fields = {"ncss", "functions", "classes", "javadocs"};
-            for (String field : fields) {
-                getSink().tableCell();
-                getSink().text(node.valueOf(field));
-                getSink().tableCell_();
-            }
+            tableCellHelper(String.valueOf(metric.getNcss()));
+            tableCellHelper(String.valueOf(metric.getFunctions()));
+            tableCellHelper(String.valueOf(metric.getClasses()));
+            tableCellHelper(String.valueOf(metric.getJavadocs()));
 
             getSink().tableRow_();
         }
@@ -306,7 +354,7 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().table_();
     }
 
-    private void doObjectAverage(Document document) {
+    private void doObjectAverage(NcssMetrics metrics) {
         subtitleHelper(getString("report.javancss.averages"));
         getSink().table();
         getSink().tableRows(null, true);
@@ -329,40 +377,36 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().tableRow_();
 
         // Data row
-        Node node = document.selectSingleNode("//javancss/objects/averages");
-        String totalNcss = document.selectSingleNode("//javancss/objects/ncss").getText();
+        NcssTotals totals = metrics.getTotals();
+        NcssObject total = totals.getObjectTotal();
+        int count = totals.getObjectCount();
         getSink().tableRow();
 
         // Data cells
-        getSink().tableCell();
-        getSink().text(node.valueOf("ncss"));
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(totalNcss);
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(node.valueOf("classes"));
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(node.valueOf("functions"));
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(node.valueOf("javadocs"));
-        getSink().tableCell_();
+        averageCell(total.getNcss(), count);
+        tableCellHelper(decimalFormat.format(totals.getNcss()));
+        averageCell(total.getClasses(), count);
+        averageCell(total.getFunctions(), count);
+        averageCell(total.getJavadocs(), count);
 
         getSink().tableRow_();
         getSink().tableRows_();
         getSink().table_();
     }
 
-    private void doFunctionAnalysis(Document document) {
-        subtitleHelper(getString("report.javancss.top") + " " + lineThreshold + " "
-                + getString("report.javancss.function.byncss"));
+    private void doTopFunctions(NcssMetrics metrics, List<NcssRanking> rankings, int[][] ranked) {
+        NcssFunctionRows functions = metrics.getFunctions();
+        int i = 0;
+        for (NcssRanking ranking : rankings) {
+            if (ranking.isFunction()) {
+                subtitleHelper(getString("report.javancss.top") + " " + lineThreshold + " "
+                        + getString("report.javancss.function.by." + ranking.getMetric()));
+                doTopFunctionGeneric(functions, ranked[i++]);
+            }
+        }
+    }
 
+    private void doTopFunctionGeneric(NcssFunctionRows functions, int[] rows) {
         getSink().table();
         getSink().tableRows(null, true);
 
@@ -383,26 +427,19 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().tableRow_();
 
         // Data rows
-        List<Node> list = document.selectNodes("//javancss/functions/function");
-        Collections.<Node>sort(list, new NumericNodeComparator("ncss"));
-        Iterator<Node> nodeIterator = list.iterator();
-        int i = 0;
-        while (nodeIterator.hasNext() && (i++ < lineThreshold)) {
-            Node node = nodeIterator.next();
+        for (int index : rows) {
+            NcssFunction metric = functions.get(index);
             getSink().tableRow();
 
             // Function name cell with link
             getSink().tableCell();
-            jxrFunctionLink(node.valueOf("name"));
+            jxrFunctionLink(metric.getName());
             getSink().tableCell_();
 
             // Other cells
-            String[] fields = {"ncss", "ccn", "javadocs"};
-            for (String field : fields) {
-                getSink().tableCell();
-                getSink().text(node.valueOf(field));
-                getSink().tableCell_();
-            }
+            tableCellHelper(String.valueOf(metric.getNcss()));
+            tableCellHelper(String.valueOf(metric.getCcn()));
+            tableCellHelper(String.valueOf(metric.getJavadocs()));
 
             getSink().tableRow_();
         }
@@ -411,7 +448,91 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().table_();
     }
 
-    private void doFunctionAverage(Document document) {
+    // the rows are loaded page by page by the script of the listing
+    private void doListing() {
+        paragraphHelper(getString("report.javancss.listing.text"));
+        getSink()
+                .rawText("<div id=\"javancss-listing\" data-base=\"" + attribute(listingLocation)
+                        + "\" data-functions=\""
+                        + attribute(headers(
+                                "report.javancss.header.function",
+                                "report.javancss.header.ncss",
+                                "report.javancss.header.ccn",
+                                "report.javancss.header.javadoc"))
+                        + "\" data-objects=\""
+                        + attribute(headers(
+                                "report.javancss.header.object",
+                                "report.javancss.header.ncss",
+                                "report.javancss.header.function",
+                                "report.javancss.header.classe",
+                                "report.javancss.header.javadoc"))
+                        + "\" data-previous=\"" + attribute(getString("report.javancss.listing.previous"))
+                        + "\" data-next=\"" + attribute(getString("report.javancss.listing.next"))
+                        + "\" data-page=\"" + attribute(getString("report.javancss.listing.page")) + "\"></div>"
+                        + "<script src=\"" + attribute(listingLocation + "/" + NcssListingWriter.SCRIPT)
+                        + "\"></script>");
+    }
+
+    private String headers(String... keys) {
+        StringBuilder headers = new StringBuilder();
+        for (String key : keys) {
+            if (headers.length() > 0) {
+                headers.append('|');
+            }
+            headers.append(getString(key));
+        }
+        return headers.toString();
+    }
+
+    private static String attribute(String value) {
+        return value.replace("&", "&amp;")
+                .replace("\"", "&quot;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;");
+    }
+
+    private void doDistributions(NcssDistributions distributions) {
+        paragraphHelper(getString("report.javancss.distribution.text"));
+
+        subtitleHelper(getString("report.javancss.distribution.function"));
+        startTable();
+        createDistributionHeader(
+                new String[] {"report.javancss.header.package", "report.javancss.header.function"},
+                "report.javancss.header.ccn",
+                "report.javancss.header.ncss");
+        for (NcssDistribution distribution : distributions.getPackages()) {
+            functionDistributionRow(distribution.getName(), distribution);
+        }
+        functionDistributionRow(getString("report.javancss.header.totals"), distributions.getTotal());
+        endTable();
+
+        subtitleHelper(getString("report.javancss.distribution.object"));
+        startTable();
+        createDistributionHeader(
+                new String[] {"report.javancss.header.package", "report.javancss.header.classe"},
+                "report.javancss.header.ncss");
+        for (NcssDistribution distribution : distributions.getPackages()) {
+            objectDistributionRow(distribution.getName(), distribution);
+        }
+        objectDistributionRow(getString("report.javancss.header.totals"), distributions.getTotal());
+        endTable();
+    }
+
+    private void functionDistributionRow(String name, NcssDistribution distribution) {
+        getSink().tableRow();
+        tableCellHelper(name);
+        functionDistributionCells(distribution);
+        getSink().tableRow_();
+    }
+
+    private void objectDistributionRow(String name, NcssDistribution distribution) {
+        getSink().tableRow();
+        tableCellHelper(name);
+        objectDistributionCells(distribution);
+        getSink().tableRow_();
+    }
+
+    private void doFunctionAverage(NcssMetrics metrics) {
         subtitleHelper(getString("report.javancss.averages"));
         getSink().table();
         getSink().tableRows(null, true);
@@ -433,32 +554,48 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         getSink().tableRow_();
 
         // Data row
-        Node node = document.selectSingleNode("//javancss/functions/function_averages");
-        String totalNcss =
-                document.selectSingleNode("//javancss/functions/ncss").getText();
+        NcssTotals totals = metrics.getTotals();
+        NcssFunction total = totals.getFunctionTotal();
+        int count = totals.getFunctionCount();
         getSink().tableRow();
 
-        getSink().tableCell();
-        getSink().text(totalNcss);
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(node.valueOf("ncss"));
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(node.valueOf("ccn"));
-        getSink().tableCell_();
-
-        getSink().tableCell();
-        getSink().text(node.valueOf("javadocs"));
-        getSink().tableCell_();
+        tableCellHelper(decimalFormat.format(totals.getNcss()));
+        averageCell(total.getNcss(), count);
+        averageCell(total.getCcn(), count);
+        averageCell(total.getJavadocs(), count);
 
         getSink().tableRow_();
         getSink().tableRows_();
         getSink().table_();
     }
 
+    private void packageCells(NcssPackage metric) {
+        tableCellHelper(String.valueOf(metric.getClasses()));
+        tableCellHelper(String.valueOf(metric.getFunctions()));
+        tableCellHelper(String.valueOf(metric.getNcss()));
+        tableCellHelper(String.valueOf(metric.getJavadocs()));
+        tableCellHelper(String.valueOf(metric.getJavadocLines()));
+        tableCellHelper(String.valueOf(metric.getSingleCommentLines()));
+        tableCellHelper(String.valueOf(metric.getMultiCommentLines()));
+    }
+
+    private void averageCell(long sum, int count) {
+        tableCellHelper(decimalFormat.format(NcssTotals.average(sum, count)));
+    }
+
+    private void doFailures(NcssMetrics metrics) {
+        paragraphHelper(getString("report.javancss.failure.text"));
+        startTable();
+        createTableHeader("report.javancss.header.file", "report.javancss.header.message");
+        for (NcssFailure failure : metrics.getFailures()) {
+            getSink().tableRow();
+            tableCellHelper(failure.getFile());
+            codeCellHelper(failure.getMessage());
+            getSink().tableRow_();
+        }
+        endTable();
+    }
+
     private void doExplanation() {
         subtitleHelper(getString("report.javancss.explanation.ncss.title"));
         paragraphHelper(getString("report.javancss.explanation.ncss.paragraph1"));
@@ -641,4 +778,95 @@ public class NcssReportGenerator extends AbstractNcssReportGenerator {
         paragraphHelper(getString("report.javancss.explanation.ccn.paragraph4"));
         paragraphHelper(getString("report.javancss.explanation.ccn.paragraph5"));
     }
+
+    /**
+     * The row models of the report sections: the packages sorted by NCSS, the object and function rows of each ranking
+     * and the distributions. They are computed concurrently, before anything is written to the sink, which is then fed
+     * in document order on the calling thread.
+     */
+    /* package */ static final class Sections {
+        /* package */ final List<NcssPackage> packages;
+
+        /* package */ final int[][] objects;
+
+        /* package */ final int[][] functions;
+
+        /* package */ final NcssDistributions distributions;
+
+        private Sections(
+                List<NcssPackage> packages, int[][] objects, int[][] functions, NcssDistributions distributions) {
+            this.packages = packages;
+            this.objects = objects;
+            this.functions = functions;
+            this.distributions = distributions;
+        }
+
+        /**
+         * Computes the row models of the sections.
+         *
+         * @param metrics the javaNcss metrics.
+         * @param rankings the "top N" tables of objects and functions.
+         * @param limit the maximum number of rows of each ranking.
+         * @param parallelRows the number of objects and functions from which the rankings are computed concurrently.
+         * @return the row models.
+         */
+        /* package */ static Sections compute(
+                final NcssMetrics metrics, final List<NcssRanking> rankings, final int limit, int parallelRows) {
+            // each task ranks its rows by all the rankings of its table in one pass
+            FutureTask<int[][]> objects = new FutureTask<int[][]>(new Callable<int[][]>() {
+                @Override
+                public int[][] call() {
+                    return metrics.getObjects().top(NcssRanking.columns(rankings, false), limit);
+                }
+            });
+            FutureTask<int[][]> functions = new FutureTask<int[][]>(new Callable<int[][]>() {
+                @Override
+                public int[][] call() {
+                    return metrics.getFunctions().top(NcssRanking.columns(rankings, true), limit);
+                }
+            });
+            ExecutorService executor = null;
+            if (metrics.getObjects().size() + metrics.getFunctions().size() >= parallelRows) {
+                executor = Executors.newSingleThreadExecutor();
+                executor.execute(objects);
+            }
+            try {
+                List<NcssPackage> packages = new ArrayList<>(metrics.getPackages());
+                Collections.sort(packages, PACKAGE_BY_NCSS);
+                NcssDistributions distributions = metrics.getDistributions();
+                functions.run();
+                // does nothing if the executor already took it
+                objects.run();
+                return new Sections(packages, get(objects), get(functions), distributions);
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
+        }
+
+        private static int[][] get(FutureTask<int[][]> task) {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    try {
+                        return task.get();
+                    } catch (InterruptedException ie) {
+                        // the task is already running, so finish the report and keep the interrupt for the caller
+                        interrupted = true;
+                    } catch (ExecutionException ee) {
+                        Throwable cause = ee.getCause();
+                        if (cause instanceof Error) {
+                            throw (Error) cause;
+                        }
+                        throw (RuntimeException) cause;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
 }
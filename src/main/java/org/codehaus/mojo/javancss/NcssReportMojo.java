@@ -20,12 +20,16 @@ package org.codehaus.mojo.javancss;
  */
 import java.io.File;
 import java.io.IOException;
-import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.maven.model.ReportPlugin;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -33,13 +37,8 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.reporting.AbstractMavenReport;
 import org.apache.maven.reporting.MavenReportException;
-import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.PathTool;
 import org.codehaus.plexus.util.StringUtils;
-import org.codehaus.plexus.util.xml.XmlStreamReader;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.io.SAXReader;
 
 /**
  * Generates a JavaNCSS report based on this module's source code.
@@ -51,6 +50,10 @@ import org.dom4j.io.SAXReader;
 public class NcssReportMojo extends AbstractMavenReport {
     private static final String OUTPUT_NAME = "javancss";
 
+    private static final String CACHE_FILE_NAME = "javancss-cache.bin";
+
+    private static final String FAILURE_FILE_NAME = "javancss-parse-failures.bin";
+
     /**
      * Specifies the directory where the XML report will be generated.
      */
@@ -70,16 +73,19 @@ public class NcssReportMojo extends AbstractMavenReport {
     private int lineThreshold;
 
     /**
-     * Specified the name of the temporary file generated by JavaNCSS prior report generation.
+     * The "top N" tables of objects and functions in the report, each written <code>object:&lt;metric&gt;</code> or
+     * <code>function:&lt;metric&gt;</code> with a metric named like in the raw report, e.g. <code>function:ccn</code>.
+     * All rankings are computed in a single pass over the objects and one over the functions. Defaults to
+     * <code>object:ncss</code>, <code>object:functions</code> and <code>function:ncss</code>.
      */
-    @Parameter(defaultValue = "javancss-raw-report.xml")
-    private String tempFileName;
+    @Parameter(property = "ncss.rankings")
+    private String[] rankings;
 
     /**
-     * The projects in the reactor for aggregation report.
+     * Specified the name of the temporary file generated by JavaNCSS prior report generation.
      */
-    @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
-    private List<MavenProject> reactorProjects;
+    @Parameter(defaultValue = "javancss-raw-report.xml")
+    private String tempFileName;
 
     /**
      * Link the violation line numbers to the source xref. Defaults to true and will link automatically if jxr plugin is
@@ -108,6 +114,133 @@ public class NcssReportMojo extends AbstractMavenReport {
     @Parameter
     private String[] excludes;
 
+    /**
+     * Analyze all compile source roots of the project, like the sources generated by other plugins, instead of the
+     * source directory only. When there is more than one root, the roots are scanned and analyzed at the same time in
+     * one pass, and each root gets its own section in the raw report and in the report, next to the combined metrics.
+     */
+    @Parameter(property = "ncss.compileSourceRoots", defaultValue = "false")
+    private boolean compileSourceRoots;
+
+    /**
+     * Analyze the test source roots of the project as well.
+     */
+    @Parameter(property = "ncss.testSourceRoots", defaultValue = "false")
+    private boolean testSourceRoots;
+
+    /**
+     * Additional source roots to analyze, like generated sources which aren't added to the compile source roots.
+     */
+    @Parameter
+    private File[] additionalSourceRoots;
+
+    /**
+     * Number of worker threads used to analyze the sources. With more than one thread, the sources are split into
+     * chunks of similar size which are analyzed in parallel and merged into a single raw report. When Maven runs on
+     * Java 21 or later, the chunks are read on virtual threads and this is the number of chunks parsed at a time.
+     */
+    @Parameter(property = "ncss.threads", defaultValue = "1")
+    private int threads;
+
+    /**
+     * Keep the metrics of each source file in a cache next to the raw report, and only analyze new or changed files
+     * on the next execution.
+     */
+    @Parameter(property = "ncss.incremental", defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Number of source files analyzed per batch, 0 to analyze all files at once. In batch mode the metrics of each
+     * batch are streamed into the raw report and released before the next batch starts, so that the memory needed
+     * depends on the batch size rather than on the size of the source tree, unless <code>fullListing</code> is set.
+     */
+    @Parameter(property = "ncss.batchSize", defaultValue = "0")
+    private int batchSize;
+
+    /**
+     * Don't fail on sources JavaNCSS can't parse: isolate them by splitting the analyzed files in halves, leave them
+     * out of the metrics and list them in the report. The failing files are remembered next to the raw report and
+     * skipped until they change.
+     */
+    @Parameter(property = "ncss.isolateParseFailures", defaultValue = "false")
+    private boolean isolateParseFailures;
+
+    /**
+     * Time in seconds JavaNCSS may spend per source file, 0 for no limit. A file which takes longer, like a huge
+     * generated file, is abandoned, left out of the metrics and listed in the report as timed out.
+     */
+    @Parameter(property = "ncss.fileTimeout", defaultValue = "0")
+    private int fileTimeout;
+
+    /**
+     * Number of sources parsed at a time by all modules of a multi-module build together, 0 to give each module
+     * <code>threads</code> workers of its own. When set, the modules share one pool of warmed JavaNCSS workers for the
+     * whole build, so that a parallel build (<code>-T</code>) doesn't run <code>threads</code> parses per module. The
+     * value of the first analyzed module applies to the whole build.
+     */
+    @Parameter(property = "ncss.reactorThreads", defaultValue = "0")
+    private int reactorThreads;
+
+    /**
+     * Hand the analysis over to a JavaNCSS daemon shared by the builds of the current user, so that small modules
+     * don't pay for the warm-up of JavaNCSS on each build. The first build starts the daemon in the background. The
+     * daemon analyzes the modules and builds connecting to it at the same time; <code>reactorThreads</code> then caps
+     * the parses of all builds using the same value together.
+     */
+    @Parameter(property = "ncss.daemon", defaultValue = "false")
+    private boolean daemon;
+
+    /**
+     * Time in minutes after which an unused daemon exits.
+     */
+    @Parameter(property = "ncss.daemonIdleTimeout", defaultValue = "30")
+    private int daemonIdleTimeout;
+
+    /**
+     * Directory holding the state file, the start lock and the log of the daemon.
+     */
+    @Parameter(property = "ncss.daemonDirectory", defaultValue = "${user.home}/.m2/javancss-daemon")
+    private File daemonDirectory;
+
+    /**
+     * Write the raw XML report into <code>tempFileName</code>. The HTML report doesn't need it, but the check goal and
+     * the aggregate report of a parent project read it.
+     */
+    @Parameter(property = "ncss.writeRawReport", defaultValue = "true")
+    private boolean writeRawReport;
+
+    /**
+     * Write the raw XML report gzip-compressed, into <code>tempFileName</code> with a <code>.gz</code> suffix. The
+     * check goal and the aggregate report read either form.
+     *
+     * @since 2.2
+     */
+    @Parameter(property = "ncss.compressRawReport", defaultValue = "false")
+    private boolean compressRawReport;
+
+    /**
+     * List all objects and functions in the report, sorted by NCSS, by CCN or methods and by name. The tables are
+     * written as data pages next to the report, which loads them one page at a time. They are sorted over the whole
+     * module: in batch mode, all objects and functions are read back from the raw report once the batches are done, so
+     * that the listing needs as much memory as an analysis without batches.
+     */
+    @Parameter(property = "ncss.fullListing", defaultValue = "false")
+    private boolean fullListing;
+
+    /**
+     * Number of rows per page of the full listing.
+     */
+    @Parameter(property = "ncss.listingPageSize", defaultValue = "500")
+    private int listingPageSize;
+
+    /**
+     * Formats the metrics are exported in for other tools, into xmlOutputDirectory: <code>jsonl</code> writes
+     * javancss-metrics.jsonl, <code>csv</code> writes one javancss-&lt;table&gt;.csv file per table. The objects and
+     * functions are streamed as they are analyzed.
+     */
+    @Parameter(property = "ncss.exportFormats")
+    private String[] exportFormats;
+
     /**
      * Skip the report.
      *
@@ -116,6 +249,9 @@ public class NcssReportMojo extends AbstractMavenReport {
     @Parameter(property = "ncss.skip", defaultValue = "false")
     private boolean skip;
 
+    // the sources of each source root of this execution, scanned on first use
+    private Map<File, List<SourceScanner.Source>> sources;
+
     /**
      * Executes the report
      * @param locale language
@@ -245,49 +381,87 @@ public class NcssReportMojo extends AbstractMavenReport {
             // no child modules
             return false;
         }
-        if (sourceDirectory != null && sourceDirectory.exists()) {
-            // only non-source projects can aggregate
-            String[] sources = scanForSources();
-            return !((sources != null) && (sources.length > 0));
-        }
-        return true;
+        // only non-source projects can aggregate
+        return !hasSources();
     }
 
     private boolean canGenerateSingleReport() {
-        if (sourceDirectory == null || !sourceDirectory.exists()) {
-            return false;
+        // we check if any *.java files are existing in the source roots.
+        return hasSources();
+    }
+
+    private boolean hasSources() {
+        for (List<SourceScanner.Source> rootSources : scanSourceRoots().values()) {
+            if (!rootSources.isEmpty()) {
+                return true;
+            }
         }
-        // now that we know we have a valid existing source directory
-        // we check if any *.java files are existing.
-        String[] sources = scanForSources();
-        return (sources != null) && (sources.length > 0);
+        return false;
     }
 
     /**
-     * gets a list of all files in the source directory.
+     * gets a list of all files in each source root. The roots are only walked once per execution.
      *
-     * @return the list of all files in the source directory;
+     * @return the list of all files in each existing source root;
      */
-    private String[] scanForSources() {
-        String[] defaultIncludes = {"**\\*.java"};
-        DirectoryScanner ds = new DirectoryScanner();
-        if (includes == null) {
-            ds.setIncludes(defaultIncludes);
-        } else {
-            ds.setIncludes(includes);
+    private Map<File, List<SourceScanner.Source>> scanSourceRoots() {
+        if (sources == null) {
+            List<File> roots = getSourceRoots();
+            List<SourceScanner> scanners = new ArrayList<>(roots.size());
+            for (File root : roots) {
+                getLog().debug("Scanning base directory " + root);
+                scanners.add(new SourceScanner(root, includes, excludes));
+            }
+            sources = new LinkedHashMap<>();
+            try {
+                List<List<SourceScanner.Source>> scanned = SourceScanner.scanAll(scanners);
+                for (int i = 0; i < roots.size(); i++) {
+                    sources.put(roots.get(i), scanned.get(i));
+                }
+            } catch (IOException ioe) {
+                getLog().warn("Can't scan " + roots + ": " + ioe.getMessage());
+                sources.clear();
+            }
         }
-        if (excludes != null) {
-            ds.setExcludes(excludes);
+        return sources;
+    }
+
+    /**
+     * Lists the existing source roots to analyze, without duplicates.
+     */
+    private List<File> getSourceRoots() {
+        List<String> paths = new ArrayList<>();
+        if (compileSourceRoots) {
+            @SuppressWarnings("unchecked")
+            List<String> compile = project.getCompileSourceRoots();
+            paths.addAll(compile);
+        } else if (sourceDirectory != null) {
+            paths.add(sourceDirectory.getPath());
+        }
+        if (testSourceRoots) {
+            @SuppressWarnings("unchecked")
+            List<String> test = project.getTestCompileSourceRoots();
+            paths.addAll(test);
+        }
+        if (additionalSourceRoots != null) {
+            for (File root : additionalSourceRoots) {
+                paths.add(root.getPath());
+            }
         }
-        ds.setBasedir(sourceDirectory);
-        getLog().debug("Scanning base directory " + sourceDirectory);
-        ds.scan();
-        int maxFiles = ds.getIncludedFiles().length;
-        String[] result = new String[maxFiles];
-        for (int i = 0; i < maxFiles; i++) {
-            result[i] = sourceDirectory + File.separator + ds.getIncludedFiles()[i];
+        return SourceScanner.existingRoots(paths);
+    }
+
+    /**
+     * Gets the name of a source root in the reports: its path relative to the project, if it's inside the project.
+     */
+    private String getRootName(File root) {
+        File basedir = project.getBasedir();
+        if (basedir != null
+                && root.toPath().startsWith(basedir.getAbsoluteFile().toPath())) {
+            String name = PathTool.getRelativeFilePath(basedir.getAbsolutePath(), root.getPath());
+            return name.replace(File.separatorChar, '/');
         }
-        return result;
+        return root.getPath();
     }
 
     private void generateAggregateReport(Locale locale) throws MavenReportException {
@@ -310,9 +484,10 @@ public class NcssReportMojo extends AbstractMavenReport {
         getLog().debug("relative: " + relative);
         List<ModuleReport> reports = new ArrayList<>();
         for (MavenProject child : reactorProjects) {
-            File xmlReport = new File(child.getBasedir() + File.separator + relative, tempFileName);
+            File xmlReport =
+                    NcssXmlReader.locate(new File(child.getBasedir() + File.separator + relative, tempFileName));
             if (xmlReport.exists()) {
-                reports.add(new ModuleReport(child, loadDocument(xmlReport)));
+                reports.add(new ModuleReport(child, loadMetrics(xmlReport)));
             } else {
                 getLog().debug("xml file not found: " + xmlReport);
             }
@@ -325,11 +500,15 @@ public class NcssReportMojo extends AbstractMavenReport {
         reportGenerator.doReport(locale, reports, lineThreshold);
     }
 
-    private boolean isIncludeExcludeUsed() {
-        return ((excludes != null) || (includes != null));
-    }
-
     private void generateSingleReport(Locale locale) throws MavenReportException {
+        final List<NcssRanking> rankingList;
+        List<String> exports;
+        try {
+            rankingList = NcssRanking.parse(rankings);
+            exports = NcssExporter.checkFormats((exportFormats == null) ? null : Arrays.asList(exportFormats));
+        } catch (IllegalArgumentException iae) {
+            throw new MavenReportException(iae.getMessage(), iae);
+        }
         getLog().info("Running JavaNCSS " + NcssExecuter.getJavaNCSSVersion());
         if (getLog().isDebugEnabled()) {
             getLog().debug("Calling NcssExecuter with src: " + sourceDirectory);
@@ -337,52 +516,140 @@ public class NcssReportMojo extends AbstractMavenReport {
             getLog().debug("                     includes: " + Arrays.toString(includes));
             getLog().debug("                     excludes: " + Arrays.toString(excludes));
             getLog().debug("                     encoding: " + getInputEncoding());
+            getLog().debug("                      threads: " + threads);
+            getLog().debug("               reactorThreads: " + reactorThreads);
+            getLog().debug("                  incremental: " + incremental);
+            getLog().debug("               writeRawReport: " + writeRawReport);
+            getLog().debug("            compressRawReport: " + compressRawReport);
+            getLog().debug("                    batchSize: " + batchSize);
+            getLog().debug("         isolateParseFailures: " + isolateParseFailures);
+            getLog().debug("                  fileTimeout: " + fileTimeout);
+            getLog().debug("                       daemon: " + daemon);
         }
 
-        // run javaNCss and produce an temp xml file
-        NcssExecuter ncssExecuter;
-        if (isIncludeExcludeUsed()) {
-            ncssExecuter = new NcssExecuter(scanForSources(), buildOutputFileName());
-        } else {
-            ncssExecuter = new NcssExecuter(sourceDirectory, buildOutputFileName());
+        // run javaNCss, and export the metrics into a temp xml file if asked to
+        String outputFileName = null;
+        if (writeRawReport) {
+            String plainFileName = buildOutputFileName();
+            String compressedFileName = plainFileName + NcssXmlWriter.GZIP_EXTENSION;
+            outputFileName = compressRawReport ? compressedFileName : plainFileName;
+            try {
+                // the report of the other form is stale, and readers would pick the most recent one
+                Files.deleteIfExists(Paths.get(compressRawReport ? plainFileName : compressedFileName));
+            } catch (IOException ioe) {
+                throw new MavenReportException("Can't delete the previous JavaNCSS report", ioe);
+            }
         }
+        Map<String, String[]> roots = new LinkedHashMap<>();
+        int fileCount = 0;
+        long totalSize = 0;
+        for (Map.Entry<File, List<SourceScanner.Source>> root :
+                scanSourceRoots().entrySet()) {
+            List<SourceScanner.Source> rootSources = root.getValue();
+            if (rootSources.isEmpty()) {
+                continue;
+            }
+            String[] fileList = new String[rootSources.size()];
+            for (int i = 0; i < fileList.length; i++) {
+                fileList[i] = rootSources.get(i).getFile().getPath();
+                totalSize += rootSources.get(i).getSize();
+            }
+            fileCount += fileList.length;
+            roots.put(getRootName(root.getKey()), fileList);
+        }
+        getLog().debug("Analyzing " + fileCount + " files, " + totalSize + " bytes in " + roots.keySet());
+        NcssExecuter ncssExecuter = new NcssExecuter(roots, outputFileName);
         ncssExecuter.setEncoding(getInputEncoding()); // in case of null value, JavaNCSS uses platform encoding, as
         // expected
-
-        ncssExecuter.execute();
-        if (!isTempReportGenerated()) {
-            throw new MavenReportException("Can't process temp ncss xml file.");
+        ncssExecuter.setThreads(threads);
+        ncssExecuter.setBatchSize(batchSize);
+        ncssExecuter.setLineThreshold(lineThreshold);
+        ncssExecuter.setRankings(rankingList);
+        if (!exports.isEmpty()) {
+            ncssExecuter.setExportFormats(exports);
+            ncssExecuter.setExportDirectory(xmlOutputDirectory);
         }
-        // parse the freshly generated file and write the report
-        NcssReportGenerator reportGenerator =
+        if (incremental) {
+            ncssExecuter.setCacheFile(new File(xmlOutputDirectory, CACHE_FILE_NAME));
+        }
+        if (isolateParseFailures) {
+            ncssExecuter.setIsolateParseFailures(true);
+            ncssExecuter.setFailureFile(new File(xmlOutputDirectory, FAILURE_FILE_NAME));
+        }
+        ncssExecuter.setFileTimeout(TimeUnit.SECONDS.toMillis(fileTimeout));
+        if (reactorThreads > 0 && repoSession != null) {
+            ncssExecuter.setWorkers(
+                    NcssAnalysisService.forSession(repoSession, reactorThreads).getWorkers());
+        }
+        NcssDaemonClient daemonClient = null;
+        if (daemon) {
+            daemonClient =
+                    new NcssDaemonClient(daemonDirectory, TimeUnit.MINUTES.toMillis(Math.max(1, daemonIdleTimeout)));
+            if (reactorThreads > 0 && repoSession != null) {
+                daemonClient.setReactorThreads(reactorThreads);
+            }
+            ncssExecuter.setDaemon(daemonClient);
+        }
+
+        // write the report straight from the metrics, while the raw report is written
+        final NcssReportGenerator reportGenerator =
                 new NcssReportGenerator(getSink(), getBundle(locale), getLog(), constructXRefLocation());
-        reportGenerator.doReport(loadDocument(), lineThreshold);
+        // analyzed in batches, only the raw report keeps all rows
+        boolean listing = fullListing && (batchSize <= 0 || outputFileName != null);
+        if (listing) {
+            reportGenerator.setListingLocation(NcssListingWriter.DIRECTORY);
+        } else if (fullListing) {
+            getLog().warn("No full listing: the sources are analyzed in batches and the raw report is not written");
+        }
+        NcssMetrics metrics = ncssExecuter.execute(new NcssMetricsHandler() {
+            @Override
+            public void handle(NcssMetrics report) {
+                reportGenerator.doReport(report, lineThreshold, rankingList);
+            }
+        });
+        if (daemonClient != null) {
+            if (daemonClient.isUsed()) {
+                getLog().debug("Analyzed by the JavaNCSS daemon in " + daemonDirectory);
+            } else {
+                getLog().warn("JavaNCSS daemon unavailable, see " + daemonDirectory + ": analyzed in the build");
+            }
+        }
+        for (NcssFailure failure : metrics.getFailures()) {
+            getLog().warn("JavaNCSS failed on " + failure.getFile() + ", left out of the report: "
+                    + failure.getMessage());
+        }
+        if (listing) {
+            // the listing is sorted over the whole module, which takes all its rows back into memory
+            NcssMetrics all = (batchSize > 0) ? loadMetrics(new File(outputFileName)) : metrics;
+            try {
+                NcssListingWriter.write(getReportOutputDirectory(), all, listingPageSize);
+            } catch (IOException ioe) {
+                throw new MavenReportException("Can't write the JavaNCSS full listing", ioe);
+            }
+        }
+        if (batchSize <= 0 && repoSession != null) {
+            // the check goal forking this report takes them from there, batches only keep the top rows
+            NcssResultRegistry.forSession(repoSession)
+                    .publish(project.getId(), new File(buildOutputFileName()), metrics);
+        }
     }
 
     /**
-     * Load the xml file generated by javancss.
+     * Load the xml file generated by javancss, from its columnar sidecar if it has a current one.
      */
-    private Document loadDocument(File file) throws MavenReportException {
+    private NcssMetrics loadMetrics(File file) throws MavenReportException {
         try {
-            SAXReader saxReader = new SAXReader();
-            try (Reader reader = new XmlStreamReader(file)) {
-                return saxReader.read(reader);
+            NcssColumnarReader columns = NcssColumnarReader.open(file);
+            if (columns != null) {
+                return columns.readMetrics();
             }
-        } catch (IOException | DocumentException e) {
+        } catch (IOException e) {
+            getLog().debug("Can't read the columnar report of " + file + ", reading the xml: " + e);
+        }
+        try {
+            return NcssXmlReader.read(file);
+        } catch (IOException e) {
             throw new MavenReportException("Error reading XML file: " + file.getPath(), e);
         }
     }
-
-    private Document loadDocument() throws MavenReportException {
-        return loadDocument(new File(buildOutputFileName()));
-    }
-
-    /**
-     * Check that the expected temporary file generated by JavaNCSS exists.
-     *
-     * @return <code>true</code> if the temporary report exists, <code>false</code> otherwise.
-     */
-    private boolean isTempReportGenerated() {
-        return new File(buildOutputFileName()).exists();
-    }
 }
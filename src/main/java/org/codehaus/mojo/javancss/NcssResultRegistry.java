@@ -0,0 +1,88 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * The metrics analyzed by the report goal during a build session, handed over to the check goal which forked it, so
+ * that the check doesn't read the raw report back from disk.<br>
+ * The metrics are keyed by project and raw report, and only softly referenced: the check falls back to the raw report
+ * when the report goal didn't publish them, or when they were reclaimed.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public class NcssResultRegistry {
+    private final ConcurrentMap<String, SoftReference<NcssMetrics>> results = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the registry of a build session, creating it on first use.
+     *
+     * @param session the repository session of the build.
+     * @return the registry.
+     */
+    public static NcssResultRegistry forSession(RepositorySystemSession session) {
+        SessionData data = session.getData();
+        Object registry = data.get(NcssResultRegistry.class);
+        if (registry == null) {
+            NcssResultRegistry candidate = new NcssResultRegistry();
+            if (data.set(NcssResultRegistry.class, null, candidate)) {
+                return candidate;
+            }
+            // another module created it meanwhile
+            registry = data.get(NcssResultRegistry.class);
+        }
+        return (NcssResultRegistry) registry;
+    }
+
+    /**
+     * Publishes the complete metrics of a project.
+     *
+     * @param projectId the id of the project.
+     * @param report the raw report the metrics are written to.
+     * @param metrics the metrics.
+     */
+    public void publish(String projectId, File report, NcssMetrics metrics) {
+        results.put(key(projectId, report), new SoftReference<>(metrics));
+    }
+
+    /**
+     * Takes the metrics published for a project out of the registry.
+     *
+     * @param projectId the id of the project.
+     * @param report the raw report the metrics were written to.
+     * @return the metrics, or <code>null</code> if none were published or they were reclaimed.
+     */
+    public NcssMetrics consume(String projectId, File report) {
+        SoftReference<NcssMetrics> result = results.remove(key(projectId, report));
+        return (result == null) ? null : result.get();
+    }
+
+    private static String key(String projectId, File report) {
+        return projectId + '|' + report.getAbsolutePath();
+    }
+}
@@ -0,0 +1,77 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The package metrics of one source root, when several roots are analyzed together. The metrics of the analysis are
+ * the combined metrics of all its roots.
+ *
+ * @version $Id$
+ */
+public final class NcssRoot {
+    private final String directory;
+
+    private final List<NcssPackage> packages;
+
+    private final NcssPackage total;
+
+    /**
+     * Creates the metrics of a source root.
+     *
+     * @param directory the source root.
+     * @param packages the package metrics of the sources below the root, sorted by package name.
+     */
+    public NcssRoot(String directory, List<NcssPackage> packages) {
+        this.directory = directory;
+        this.packages = Collections.unmodifiableList(packages);
+        NcssPackage sum = new NcssPackage(null, 0, 0, 0, 0, 0, 0, 0);
+        for (NcssPackage metric : packages) {
+            sum = sum.add(metric);
+        }
+        this.total = sum;
+    }
+
+    /**
+     * Gets the source root
+     * @return String
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the package metrics, sorted by package name
+     * @return List
+     */
+    public List<NcssPackage> getPackages() {
+        return packages;
+    }
+
+    /**
+     * Gets the sum of the package metrics
+     * @return NcssPackage
+     */
+    public NcssPackage getTotal() {
+        return total;
+    }
+}
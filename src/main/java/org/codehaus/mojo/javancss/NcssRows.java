@@ -0,0 +1,376 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of metric rows stored column by column: the ids of the row names in a {@link NcssNames} symbol table
+ * and one <code>int</code> array per metric. Rankings and limit checks run over the columns without creating a row
+ * object; {@link #get(int)} creates the row it returns.
+ *
+ * @param <T> the type of the rows.
+ * @version $Id$
+ * @since 2.2
+ */
+public abstract class NcssRows<T> extends AbstractList<T> implements RandomAccess {
+    private static final int[] NO_ROWS = new int[0];
+
+    private final NcssNames names;
+
+    private int[] nameIds;
+
+    private final int[][] columns;
+
+    private int size;
+
+    /* package */ NcssRows(int columnCount) {
+        names = new NcssNames();
+        nameIds = new int[0];
+        columns = new int[columnCount][0];
+    }
+
+    /* package */ NcssRows(NcssRows<T> rows) {
+        size = rows.size;
+        names = new NcssNames(rows.names);
+        nameIds = Arrays.copyOf(rows.nameIds, size);
+        columns = new int[rows.columns.length][];
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = Arrays.copyOf(rows.columns[column], size);
+        }
+    }
+
+    /**
+     * Creates the row at an index.
+     *
+     * @param index the index of the row.
+     * @return the row.
+     */
+    /* package */ abstract T row(int index);
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return row(index);
+    }
+
+    /**
+     * Gets the name of a row
+     * @param index the index of the row
+     * @return String
+     */
+    public String getName(int index) {
+        return names.get(nameIds[index]);
+    }
+
+    /**
+     * Gets the id of the name of a row
+     * @param index the index of the row
+     * @return int
+     */
+    public int getNameId(int index) {
+        return nameIds[index];
+    }
+
+    /**
+     * Gets the symbol table of the row names
+     * @return NcssNames
+     */
+    public NcssNames getNames() {
+        return names;
+    }
+
+    /**
+     * Gets a metric of a row
+     * @param column the metric column
+     * @param index the index of the row
+     * @return int
+     */
+    public int getValue(int column, int index) {
+        return columns[column][index];
+    }
+
+    /**
+     * Sums a metric over all rows.
+     *
+     * @param column the metric column.
+     * @return the sum.
+     */
+    public int sum(int column) {
+        int[] values = columns[column];
+        int sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Rolls a metric up to the enclosing classes and packages of the rows.
+     *
+     * @param column the metric column.
+     * @return the totals, indexed by name id.
+     * @see NcssNames#rollup(int[], int[], int)
+     */
+    public long[] rollup(int column) {
+        return names.rollup(nameIds, columns[column], size);
+    }
+
+    /**
+     * Ranks the rows with the largest values of a metric. Rows with equal values keep their order.
+     *
+     * @param column the metric column.
+     * @param limit the maximum number of rows.
+     * @return the indexes of the rows, largest value first.
+     */
+    public int[] top(int column, int limit) {
+        return top(new int[] {column}, limit)[0];
+    }
+
+    /**
+     * Ranks the rows by several metrics at once, in a single pass over the rows keeping a bounded heap per metric.
+     * Rows with equal values keep their order.
+     *
+     * @param columns the metric columns.
+     * @param limit the maximum number of rows per ranking.
+     * @return for each column, the indexes of the rows, largest value first.
+     */
+    public int[][] top(int[] columns, int limit) {
+        int count = Math.min(Math.max(0, limit), size);
+        int[][] ranked = new int[columns.length][];
+        if (count == 0) {
+            Arrays.fill(ranked, NO_ROWS);
+            return ranked;
+        }
+        int[][] values = new int[columns.length][];
+        // a heap of the best rows so far per column, the worst of them at the root
+        int[][] heaps = new int[columns.length][count];
+        for (int c = 0; c < columns.length; c++) {
+            values[c] = this.columns[columns[c]];
+        }
+        for (int row = 0; row < count; row++) {
+            for (int c = 0; c < columns.length; c++) {
+                heaps[c][row] = row;
+                siftUp(values[c], heaps[c], row);
+            }
+        }
+        for (int row = count; row < size; row++) {
+            for (int c = 0; c < columns.length; c++) {
+                int[] heap = heaps[c];
+                if (worse(values[c], heap[0], row)) {
+                    heap[0] = row;
+                    siftDown(values[c], heap, count);
+                }
+            }
+        }
+        for (int c = 0; c < columns.length; c++) {
+            int[] heap = heaps[c];
+            ranked[c] = new int[count];
+            for (int i = count - 1, heapSize = count; i >= 0; i--) {
+                ranked[c][i] = heap[0];
+                heap[0] = heap[--heapSize];
+                siftDown(values[c], heap, heapSize);
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * Sorts all rows by a metric, largest value first, in linear time: a stable counting sort on each 16 bits of the
+     * values, skipping the bits all values share, so that small values are sorted in a single pass. Rows with equal
+     * values keep their order.
+     *
+     * @param column the metric column.
+     * @return the indexes of the rows, largest value first.
+     */
+    public int[] sort(int column) {
+        int[] values = columns[column];
+        int[] order = new int[size];
+        // sorting the flipped bits ascending sorts the values descending
+        int[] keys = new int[size];
+        for (int row = 0; row < size; row++) {
+            order[row] = row;
+            keys[row] = ~(values[row] ^ Integer.MIN_VALUE);
+        }
+        int[] sorted = new int[size];
+        int[] counts = new int[(1 << 16) + 1];
+        for (int shift = 0; shift < 32; shift += 16) {
+            if (sameDigit(keys, shift)) {
+                continue;
+            }
+            Arrays.fill(counts, 0);
+            for (int row : order) {
+                counts[((keys[row] >>> shift) & 0xFFFF) + 1]++;
+            }
+            for (int digit = 1; digit < counts.length; digit++) {
+                counts[digit] += counts[digit - 1];
+            }
+            for (int row : order) {
+                sorted[counts[(keys[row] >>> shift) & 0xFFFF]++] = row;
+            }
+            int[] swap = order;
+            order = sorted;
+            sorted = swap;
+        }
+        return order;
+    }
+
+    private boolean sameDigit(int[] keys, int shift) {
+        for (int row = 1; row < size; row++) {
+            if (((keys[row] ^ keys[0]) >>> shift & 0xFFFF) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts all rows by name. Rows with equal names keep their order.
+     *
+     * @return the indexes of the rows, in the order of their names.
+     */
+    public int[] sortByName() {
+        final String[] sortNames = new String[size];
+        Integer[] order = new Integer[size];
+        for (int row = 0; row < size; row++) {
+            sortNames[row] = String.valueOf(getName(row));
+            order[row] = row;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return sortNames[a].compareTo(sortNames[b]);
+            }
+        });
+        int[] sorted = new int[size];
+        for (int row = 0; row < size; row++) {
+            sorted[row] = order[row];
+        }
+        return sorted;
+    }
+
+    /**
+     * Finds the rows with a metric over a limit.
+     *
+     * @param column the metric column.
+     * @param limit the largest value allowed.
+     * @return the indexes of the rows with a greater value, in order.
+     */
+    public int[] exceeding(int column, int limit) {
+        int[] values = columns[column];
+        int[] rows = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (values[row] > limit) {
+                rows[count++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    // a row ranks below another with a lower value, or with the same value but later
+    private static boolean worse(int[] values, int a, int b) {
+        return values[a] < values[b] || (values[a] == values[b] && a > b);
+    }
+
+    private static void siftUp(int[] values, int[] heap, int index) {
+        int row = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!worse(values, row, heap[parent])) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = row;
+    }
+
+    private static void siftDown(int[] values, int[] heap, int heapSize) {
+        if (heapSize == 0) {
+            return;
+        }
+        int row = heap[0];
+        int index = 0;
+        int half = heapSize >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < heapSize && worse(values, heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!worse(values, heap[child], row)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = row;
+    }
+
+    /**
+     * Appends a row, whose metrics are then set with {@link #set(int, int, int)}.
+     *
+     * @return the index of the new row.
+     */
+    /* package */ int append(String name) {
+        if (size == nameIds.length) {
+            grow(size + 1);
+        }
+        nameIds[size] = names.add(name);
+        return size++;
+    }
+
+    /* package */ void set(int column, int index, int value) {
+        columns[column][index] = value;
+    }
+
+    /* package */ void appendAll(NcssRows<T> rows) {
+        if (size + rows.size > nameIds.length) {
+            grow(size + rows.size);
+        }
+        int[] translated = new int[rows.names.size()];
+        Arrays.fill(translated, -1);
+        for (int i = 0; i < rows.size; i++) {
+            nameIds[size + i] = names.add(rows.names, rows.nameIds[i], translated);
+        }
+        for (int column = 0; column < columns.length; column++) {
+            System.arraycopy(rows.columns[column], 0, columns[column], size, rows.size);
+        }
+        size += rows.size;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(minCapacity, Math.max(16, nameIds.length + (nameIds.length >> 1)));
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        for (int column = 0; column < columns.length; column++) {
+            columns[column] = Arrays.copyOf(columns[column], capacity);
+        }
+    }
+}
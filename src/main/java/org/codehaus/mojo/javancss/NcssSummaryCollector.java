@@ -0,0 +1,178 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * Collects what the report shows out of a stream of batches, in memory bounded by the number of rows the report
+ * displays: all packages, the totals, the distributions and the parse failures, but only the objects and functions
+ * ranked by the {@link NcssRanking}s of the report. Rows with equal values are kept in the order they were analyzed,
+ * so that the report ranks them the same way as with the complete metrics.
+ *
+ * @version $Id$
+ */
+public class NcssSummaryCollector implements NcssMetricsHandler {
+    private static final Comparator<Ranked<?>> WORST_FIRST = new Comparator<Ranked<?>>() {
+        @Override
+        public int compare(Ranked<?> a, Ranked<?> b) {
+            int result = Integer.compare(a.value, b.value);
+            return (result != 0) ? result : Long.compare(b.sequence, a.sequence);
+        }
+    };
+
+    private final int rowLimit;
+
+    private final Map<String, NcssPackage> packages = new TreeMap<>();
+
+    private final int[] objectColumns;
+
+    private final List<PriorityQueue<Ranked<NcssObject>>> objectRankings = new ArrayList<>();
+
+    private final int[] functionColumns;
+
+    private final List<PriorityQueue<Ranked<NcssFunction>>> functionRankings = new ArrayList<>();
+
+    private final List<NcssFailure> failures = new ArrayList<>();
+
+    private final NcssDistributions distributions = new NcssDistributions();
+
+    private int objectCount;
+
+    private NcssObject objectTotal = new NcssObject(null, 0, 0, 0, 0, 0, 0, 0);
+
+    private int functionCount;
+
+    private NcssFunction functionTotal = new NcssFunction(null, 0, 0, 0);
+
+    /**
+     * Creates a collector keeping the rows of the default rankings.
+     *
+     * @param rowLimit the number of objects and functions kept per ranking.
+     */
+    public NcssSummaryCollector(int rowLimit) {
+        this(rowLimit, NcssRanking.DEFAULTS);
+    }
+
+    /**
+     * Creates a collector.
+     *
+     * @param rowLimit the number of objects and functions kept per ranking.
+     * @param rankings the rankings of the report.
+     */
+    public NcssSummaryCollector(int rowLimit, List<NcssRanking> rankings) {
+        this.rowLimit = Math.max(0, rowLimit);
+        objectColumns = NcssRanking.columns(rankings, false);
+        for (int i = 0; i < objectColumns.length; i++) {
+            objectRankings.add(new PriorityQueue<Ranked<NcssObject>>(11, WORST_FIRST));
+        }
+        functionColumns = NcssRanking.columns(rankings, true);
+        for (int i = 0; i < functionColumns.length; i++) {
+            functionRankings.add(new PriorityQueue<Ranked<NcssFunction>>(11, WORST_FIRST));
+        }
+    }
+
+    @Override
+    public void handle(NcssMetrics batch) {
+        for (NcssPackage metric : batch.getPackages()) {
+            NcssPackage merged = packages.get(metric.getName());
+            packages.put(metric.getName(), (merged == null) ? metric : merged.add(metric));
+        }
+        // only the largest rows of the batch can make it into the rankings
+        NcssObjectRows objects = batch.getObjects();
+        offer(objectRankings, objectCount, objects, objectColumns);
+        objectCount += objects.size();
+        objectTotal = objectTotal.add(batch.getTotals().getObjectTotal());
+        NcssFunctionRows functions = batch.getFunctions();
+        offer(functionRankings, functionCount, functions, functionColumns);
+        functionCount += functions.size();
+        functionTotal = functionTotal.add(batch.getTotals().getFunctionTotal());
+        failures.addAll(batch.getFailures());
+        distributions.addAll(batch.getDistributions());
+    }
+
+    private <T> void offer(List<PriorityQueue<Ranked<T>>> queues, long base, NcssRows<T> rows, int[] columns) {
+        int[][] ranked = rows.top(columns, rowLimit);
+        for (int c = 0; c < columns.length; c++) {
+            PriorityQueue<Ranked<T>> queue = queues.get(c);
+            for (int index : ranked[c]) {
+                queue.add(new Ranked<>(base + index, rows.getValue(columns[c], index), rows.get(index)));
+                if (queue.size() > rowLimit) {
+                    queue.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the collected metrics: all packages, the totals and the distributions of every batch, but only the kept
+     * objects and functions, in the order they were analyzed.
+     *
+     * @return the metrics.
+     */
+    public NcssMetrics getMetrics() {
+        NcssPackage packageTotal = new NcssPackage(null, 0, 0, 0, 0, 0, 0, 0);
+        for (NcssPackage metric : packages.values()) {
+            packageTotal = packageTotal.add(metric);
+        }
+        NcssTotals totals =
+                new NcssTotals(packages.size(), packageTotal, objectCount, objectTotal, functionCount, functionTotal);
+
+        Map<Long, NcssObject> objects = new TreeMap<>();
+        for (PriorityQueue<Ranked<NcssObject>> queue : objectRankings) {
+            for (Ranked<NcssObject> row : queue) {
+                objects.put(row.sequence, row.row);
+            }
+        }
+        Map<Long, NcssFunction> functions = new TreeMap<>();
+        for (PriorityQueue<Ranked<NcssFunction>> queue : functionRankings) {
+            for (Ranked<NcssFunction> row : queue) {
+                functions.put(row.sequence, row.row);
+            }
+        }
+        return new NcssMetrics(
+                new ArrayList<>(packages.values()),
+                new ArrayList<>(objects.values()),
+                new ArrayList<>(functions.values()),
+                totals,
+                new ArrayList<>(failures),
+                new ArrayList<NcssRoot>(),
+                distributions.copy());
+    }
+
+    private static final class Ranked<T> {
+        private final long sequence;
+
+        private final int value;
+
+        private final T row;
+
+        private Ranked(long sequence, int value, T row) {
+            this.sequence = sequence;
+            this.value = value;
+            this.row = row;
+        }
+    }
+}
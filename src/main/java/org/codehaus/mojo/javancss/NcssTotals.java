@@ -0,0 +1,135 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * The totals of an analysis: the number of packages, objects and functions and the sum of their metrics. Averages are
+ * derived from these sums.
+ *
+ * @version $Id$
+ */
+public final class NcssTotals {
+    private final int packageCount;
+
+    private final NcssPackage packageTotal;
+
+    private final int objectCount;
+
+    private final NcssObject objectTotal;
+
+    private final int functionCount;
+
+    private final NcssFunction functionTotal;
+
+    /**
+     * Creates the totals of an analysis.
+     *
+     * @param packageCount the number of packages.
+     * @param packageTotal the sum of the package metrics.
+     * @param objectCount the number of objects.
+     * @param objectTotal the sum of the object metrics.
+     * @param functionCount the number of functions.
+     * @param functionTotal the sum of the function metrics.
+     */
+    public NcssTotals(
+            int packageCount,
+            NcssPackage packageTotal,
+            int objectCount,
+            NcssObject objectTotal,
+            int functionCount,
+            NcssFunction functionTotal) {
+        this.packageCount = packageCount;
+        this.packageTotal = packageTotal;
+        this.objectCount = objectCount;
+        this.objectTotal = objectTotal;
+        this.functionCount = functionCount;
+        this.functionTotal = functionTotal;
+    }
+
+    /**
+     * Gets the number of packages
+     * @return int
+     */
+    public int getPackageCount() {
+        return packageCount;
+    }
+
+    /**
+     * Gets the sum of the package metrics
+     * @return NcssPackage
+     */
+    public NcssPackage getPackageTotal() {
+        return packageTotal;
+    }
+
+    /**
+     * Gets the number of objects
+     * @return int
+     */
+    public int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Gets the sum of the object metrics
+     * @return NcssObject
+     */
+    public NcssObject getObjectTotal() {
+        return objectTotal;
+    }
+
+    /**
+     * Gets the number of functions
+     * @return int
+     */
+    public int getFunctionCount() {
+        return functionCount;
+    }
+
+    /**
+     * Gets the sum of the function metrics
+     * @return NcssFunction
+     */
+    public NcssFunction getFunctionTotal() {
+        return functionTotal;
+    }
+
+    /**
+     * Gets the non commenting source statements of the whole program
+     * @return int
+     */
+    public int getNcss() {
+        return packageTotal.getNcss();
+    }
+
+    /**
+     * Computes an average the way JavaNCSS does: rounded to two decimals, zero when there is nothing to divide by.
+     *
+     * @param sum the sum of a metric.
+     * @param count the number of items summed.
+     * @return the average.
+     */
+    public static double average(long sum, long count) {
+        if (count == 0) {
+            return 0;
+        }
+        return Math.round(sum * 100.0 / count) / 100.0;
+    }
+}
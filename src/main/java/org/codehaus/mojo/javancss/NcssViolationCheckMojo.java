@@ -20,21 +20,17 @@ package org.codehaus.mojo.javancss;
  */
 
 import java.io.File;
-import java.util.HashSet;
+import java.io.IOException;
 import java.util.List;
-import java.util.Set;
 
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Node;
-import org.dom4j.io.SAXReader;
+import org.apache.maven.project.MavenProject;
 
 /**
  * Check the build if for any Method with a ccn greater than a limit in the source code. Fails the build if told so.
@@ -44,7 +40,7 @@ import org.dom4j.io.SAXReader;
  */
 @Mojo(name = "check", defaultPhase = LifecyclePhase.VERIFY)
 @Execute(goal = "report")
-public class NcssViolationCheckMojo extends AbstractMojo {
+public class NcssViolationCheckMojo extends AbstractNcssCheckMojo {
     /**
      * Specifies the location of the source files to be used.
      */
@@ -58,12 +54,6 @@ public class NcssViolationCheckMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project.build.directory}", readonly = true, required = true)
     private File xmlOutputDirectory;
 
-    /**
-     * Whether to fail the build if the validation check fails.
-     */
-    @Parameter(defaultValue = "true")
-    private boolean failOnViolation;
-
     /**
      * Name of the file holding the xml file generated by JavaNCSS
      */
@@ -72,25 +62,16 @@ public class NcssViolationCheckMojo extends AbstractMojo {
     private String tempFileName;
 
     /**
-     * CCN Limit, any code with a ccn greater than this number will generate a violation
-     */
-    @Parameter(defaultValue = "10")
-    private int ccnLimit;
-
-    /**
-     * ncss Limit, any code with a ncss greater than this number will generate a violation
+     * The project, whose metrics the forked report goal may have published.
      */
-    @Parameter(defaultValue = "100")
-    private int ncssLimit;
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
 
     /**
-     * Skip entire check.
-     *
-     * @since 2.1
+     * The build session, holding the metrics published by the report goal.
      */
-    // FIXME : same variable, same value in NCSSReportMojo...
-    @Parameter(property = "ncss.skip", defaultValue = "false")
-    private boolean skip;
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
 
     /**
      * Executes the report
@@ -99,52 +80,38 @@ public class NcssViolationCheckMojo extends AbstractMojo {
      */
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
-        if (skip || (sourceDirectory == null) || !sourceDirectory.exists()) {
+        if (isSkip() || (sourceDirectory == null) || !sourceDirectory.exists()) {
             return;
         }
-        Set<String> ccnViolation = new HashSet<>();
-        Set<String> ncssViolation = new HashSet<>();
-        List<Node> methodList = loadDocument().selectNodes("//javancss/functions/function");
-        // Count ccn & ncss violations
-        for (Node node : methodList) {
-            // count ccn violation
-            int ccn = Integer.parseInt(node.valueOf("ccn"));
-            if (ccn > ccnLimit) {
-                ccnViolation.add(node.valueOf("name"));
-            }
-            // count ncss violation
-            int ncss = Integer.parseInt(node.valueOf("ncss"));
-            if (ncss > ncssLimit) {
-                ncssViolation.add(node.valueOf("name"));
-            }
-        }
-        // crappy....
-        reportViolation("ccn", ccnViolation, ccnLimit);
-        reportViolation("ncss", ncssViolation, ncssLimit);
+        checkLimits(loadFunctions());
     }
 
-    private Document loadDocument() throws MojoFailureException {
+    private List<NcssFunction> loadFunctions() throws MojoFailureException {
         // FIXME: Building of File is strangely equivalent to method buildOutputFileName of NcssReportGenerator class...
         File ncssXmlFile = new File(xmlOutputDirectory, tempFileName);
-        try {
-            return new SAXReader().read(ncssXmlFile);
-        } catch (DocumentException de) {
-            throw new MojoFailureException("Can't read javancss xml output file : " + ncssXmlFile);
-        }
-    }
-
-    private void reportViolation(String statName, Set<String> violationSet, int limit) throws MojoFailureException {
-        getLog().debug(statName + " Violation = " + violationSet.size());
-        if (!violationSet.isEmpty()) {
-            String violationString =
-                    "Your code has " + violationSet.size() + " method(s) with a " + statName + " greater than " + limit;
-            getLog().warn(violationString);
-            for (String violation : violationSet) {
-                getLog().warn("    " + violation);
+        if (session != null && session.getRepositorySession() != null) {
+            // the report goal forked by this check has just analyzed the sources
+            NcssMetrics metrics = NcssResultRegistry.forSession(session.getRepositorySession())
+                    .consume(project.getId(), ncssXmlFile);
+            if (metrics != null) {
+                getLog().debug("Checking the metrics of the report goal");
+                return metrics.getFunctions();
             }
-            if (failOnViolation) {
-                throw new MojoFailureException(violationString);
+        }
+        ncssXmlFile = NcssXmlReader.locate(ncssXmlFile);
+        try {
+            // the columnar sidecar gives the functions without parsing the xml
+            NcssColumnarReader columns = NcssColumnarReader.open(ncssXmlFile);
+            if (columns != null) {
+                return columns.readFunctions();
             }
+        } catch (IOException ioe) {
+            getLog().debug("Can't read the columnar report of " + ncssXmlFile + ", reading the xml: " + ioe);
+        }
+        try {
+            return NcssXmlReader.read(ncssXmlFile).getFunctions();
+        } catch (IOException ioe) {
+            throw new MojoFailureException("Can't read javancss xml output file : " + ncssXmlFile);
         }
     }
 }
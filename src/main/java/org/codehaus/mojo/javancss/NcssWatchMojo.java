@@ -0,0 +1,265 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.module.xhtml5.Xhtml5SinkFactory;
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * Watch the java sources while they are edited: each change re-analyzes the touched sources only, logs the methods
+ * exceeding the CCN and NCSS limits, and rewrites the raw XML and the HTML report when the metrics changed. Runs until
+ * interrupted, and never fails the build on a violation.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+@Mojo(name = "watch")
+public class NcssWatchMojo extends AbstractNcssCheckMojo {
+    private static final String OUTPUT_NAME = "javancss";
+
+    /**
+     * The Maven project.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * Specifies the location of the source files to be used.
+     */
+    @Parameter(defaultValue = "${project.build.sourceDirectory}", readonly = true, required = true)
+    private File sourceDirectory;
+
+    /**
+     * List of ant-style patterns used to specify the java sources that should be included when running JavaNCSS. If
+     * this is not specified, all .java files in the project source directories are included.
+     */
+    @Parameter
+    private String[] includes;
+
+    /**
+     * List of ant-style patterns used to specify the java sources that should be excluded when running JavaNCSS. If
+     * this is not specified, no files in the project source directories are excluded.
+     */
+    @Parameter
+    private String[] excludes;
+
+    /**
+     * Watch all compile source roots of the project, like the sources generated by other plugins, instead of the
+     * source directory only.
+     */
+    @Parameter(property = "ncss.compileSourceRoots", defaultValue = "false")
+    private boolean compileSourceRoots;
+
+    /**
+     * Watch the test source roots of the project as well.
+     */
+    @Parameter(property = "ncss.testSourceRoots", defaultValue = "false")
+    private boolean testSourceRoots;
+
+    /**
+     * Additional source roots to watch, like generated sources which aren't added to the compile source roots.
+     */
+    @Parameter
+    private File[] additionalSourceRoots;
+
+    /**
+     * Specifies the encoding of the source files.
+     */
+    @Parameter(property = "encoding", defaultValue = "${project.build.sourceEncoding}")
+    private String encoding;
+
+    /**
+     * Number of worker threads used to analyze the sources. They are kept warm between changes.
+     */
+    @Parameter(property = "ncss.threads", defaultValue = "1")
+    private int threads;
+
+    /**
+     * Time in seconds JavaNCSS may spend per source file, 0 for no limit. A source which takes longer is left out of
+     * the metrics until it changes again.
+     */
+    @Parameter(property = "ncss.fileTimeout", defaultValue = "0")
+    private int fileTimeout;
+
+    /**
+     * Quiet time ending a series of changes, in milliseconds: the sources saved within it are analyzed together.
+     */
+    @Parameter(property = "ncss.watchDebounce", defaultValue = "300")
+    private int debounce;
+
+    /**
+     * Specifies the directory where the XML report will be generated.
+     */
+    // FIXME : same variable, same value in NCSSReportMojo...
+    @Parameter(defaultValue = "${project.build.directory}", readonly = true, required = true)
+    private File xmlOutputDirectory;
+
+    /**
+     * Name of the file holding the xml file generated by JavaNCSS
+     */
+    // FIXME : same variable, same value in NCSSReportMojo...
+    @Parameter(defaultValue = "javancss-raw-report.xml")
+    private String tempFileName;
+
+    /**
+     * Specifies the directory where the HTML report will be generated.
+     */
+    @Parameter(defaultValue = "${project.reporting.outputDirectory}", required = true)
+    private File outputDirectory;
+
+    /**
+     * Specifies the maximum number of lines to take into account into the reports.
+     */
+    @Parameter(defaultValue = "30")
+    private int lineThreshold;
+
+    /**
+     * The "top N" tables of objects and functions in the report, each written <code>object:&lt;metric&gt;</code> or
+     * <code>function:&lt;metric&gt;</code> with a metric named like in the raw report, e.g. <code>function:ccn</code>.
+     * All rankings are computed in a single pass over the objects and one over the functions. Defaults to
+     * <code>object:ncss</code>, <code>object:functions</code> and <code>function:ncss</code>.
+     */
+    @Parameter(property = "ncss.rankings")
+    private String[] rankings;
+
+    private List<NcssRanking> rankingList;
+
+    /**
+     * Watches the sources until interrupted
+     * @throws MojoExecutionException if the sources can't be watched or the reports can't be written
+     * @throws MojoFailureException never: violations are only logged
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (isSkip()) {
+            return;
+        }
+        List<File> roots = getSourceRoots();
+        if (roots.isEmpty()) {
+            return;
+        }
+        try {
+            rankingList = NcssRanking.parse(rankings);
+        } catch (IllegalArgumentException iae) {
+            throw new MojoExecutionException(iae.getMessage(), iae);
+        }
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setEncoding(encoding);
+        analyzer.setThreads(threads);
+        analyzer.setFileTimeout(TimeUnit.SECONDS.toMillis(fileTimeout));
+        // a source being edited often doesn't parse: report it, and keep watching
+        analyzer.setIsolateParseFailures(true);
+        analyzer.setKeepWorkers(true);
+        try (NcssWatcher watcher = new NcssWatcher(roots, includes, excludes, analyzer)) {
+            long start = System.nanoTime();
+            watcher.analyzeAll();
+            NcssMetrics metrics = watcher.getMetrics();
+            writeReports(metrics);
+            getLog().info("Analyzed " + metrics.getTotals().getObjectCount() + " class(es) with JavaNCSS "
+                    + NcssAnalyzer.getJavaNCSSVersion() + " in " + millis(start) + " ms, watching " + roots
+                    + " for changes");
+            checkMetrics(metrics);
+
+            watcher.start();
+            while (true) {
+                Set<File> changed = watcher.awaitChanges(debounce);
+                start = System.nanoTime();
+                if (watcher.update(changed)) {
+                    writeReports(watcher.getMetrics());
+                    getLog().info("Re-analyzed " + changed.size() + " changed source(s) in " + millis(start) + " ms");
+                } else {
+                    getLog().debug("Metrics unchanged by " + changed);
+                }
+                checkMetrics(watcher.getMetrics(changed));
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ioe) {
+            throw new MojoExecutionException("Can't watch " + roots, ioe);
+        } catch (MavenReportException mre) {
+            throw new MojoExecutionException(mre.getMessage(), mre);
+        } finally {
+            analyzer.close();
+        }
+    }
+
+    /**
+     * Lists the existing source roots to watch, without duplicates.
+     */
+    private List<File> getSourceRoots() {
+        List<String> paths = new ArrayList<>();
+        if (compileSourceRoots) {
+            @SuppressWarnings("unchecked")
+            List<String> compile = project.getCompileSourceRoots();
+            paths.addAll(compile);
+        } else if (sourceDirectory != null) {
+            paths.add(sourceDirectory.getPath());
+        }
+        if (testSourceRoots) {
+            @SuppressWarnings("unchecked")
+            List<String> test = project.getTestCompileSourceRoots();
+            paths.addAll(test);
+        }
+        if (additionalSourceRoots != null) {
+            for (File root : additionalSourceRoots) {
+                paths.add(root.getPath());
+            }
+        }
+        return SourceScanner.existingRoots(paths);
+    }
+
+    private void checkMetrics(NcssMetrics metrics) {
+        warnLimits(metrics.getFunctions());
+        for (NcssFailure failure : metrics.getFailures()) {
+            getLog().warn("JavaNCSS failed on " + failure.getFile() + ": " + failure.getMessage());
+        }
+    }
+
+    private void writeReports(NcssMetrics metrics) throws IOException {
+        xmlOutputDirectory.mkdirs();
+        File report = new File(xmlOutputDirectory, tempFileName);
+        NcssXmlWriter.write(report, metrics);
+        NcssColumnarWriter.write(report, metrics);
+        outputDirectory.mkdirs();
+        Sink sink = new Xhtml5SinkFactory().createSink(outputDirectory, OUTPUT_NAME + ".html", "UTF-8");
+        ResourceBundle bundle =
+                ResourceBundle.getBundle("javancss-report", Locale.getDefault(), NcssWatchMojo.class.getClassLoader());
+        new NcssReportGenerator(sink, bundle, getLog(), null).doReport(metrics, lineThreshold, rankingList);
+    }
+
+    private static long millis(long start) {
+        return (System.nanoTime() - start) / 1000000L;
+    }
+}
@@ -0,0 +1,303 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * Keeps the metrics of the java sources of some source roots up to date while they are edited.<br>
+ * The metrics of each file are held in memory, so that a change only re-analyzes the files it touched. The source
+ * roots are watched with a {@link WatchService}, and the changes are collected until the roots have been quiet for a
+ * while, so that saving several files at once gives a single update.
+ *
+ * @version $Id$
+ * @since 2.2
+ */
+public class NcssWatcher implements Closeable {
+    private final List<Path> roots = new ArrayList<>();
+
+    // the scanners of the roots, in the same order
+    private final List<SourceScanner> scanners = new ArrayList<>();
+
+    private final NcssAnalyzer analyzer;
+
+    // the metrics of each source file, sorted by path
+    private final Map<File, NcssMetrics> files = new TreeMap<>();
+
+    private NcssMetrics metrics = new NcssMetricsBuilder().build();
+
+    private WatchService watchService;
+
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+
+    /**
+     * Creates a watcher.
+     *
+     * @param roots the source roots.
+     * @param includes the ant-style patterns of the sources to include, <code>null</code> for all java sources.
+     * @param excludes the ant-style patterns of the sources to exclude, <code>null</code> for none.
+     * @param analyzer the analyzer running JavaNCSS, which should keep its workers between analyses.
+     */
+    public NcssWatcher(List<File> roots, String[] includes, String[] excludes, NcssAnalyzer analyzer) {
+        for (File root : roots) {
+            Path path = root.getAbsoluteFile().toPath().normalize();
+            this.roots.add(path);
+            this.scanners.add(new SourceScanner(path.toFile(), includes, excludes));
+        }
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * Gets the metrics of all the watched sources
+     * @return NcssMetrics
+     */
+    public synchronized NcssMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the metrics of some of the watched sources
+     * @param sources the source files
+     * @return NcssMetrics
+     */
+    public synchronized NcssMetrics getMetrics(Collection<File> sources) {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (File source : sources) {
+            NcssMetrics metric = files.get(source);
+            if (metric != null) {
+                builder.addAll(metric);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Analyzes all the sources of the roots, replacing the metrics held so far.
+     *
+     * @throws IOException if the roots can't be scanned.
+     * @throws MavenReportException if JavaNCSS fails on a source and parse failures are not isolated.
+     */
+    public synchronized void analyzeAll() throws IOException, MavenReportException {
+        List<File> sources = scan();
+        files.clear();
+        files.putAll(analyzer.analyzeEach(sources));
+        metrics = combine();
+    }
+
+    /**
+     * Re-analyzes changed sources and drops the deleted ones.
+     *
+     * @param changed the changed source files, existing or deleted.
+     * @return <code>true</code> if the metrics changed.
+     * @throws MavenReportException if JavaNCSS fails on a source and parse failures are not isolated.
+     */
+    public synchronized boolean update(Collection<File> changed) throws MavenReportException {
+        boolean updated = false;
+        List<File> existing = new ArrayList<>(changed.size());
+        for (File file : changed) {
+            if (file.isFile()) {
+                existing.add(file);
+            } else if (files.remove(file) != null) {
+                updated = true;
+            }
+        }
+        for (Map.Entry<File, NcssMetrics> entry : analyzer.analyzeEach(existing).entrySet()) {
+            NcssMetrics previous = files.put(entry.getKey(), entry.getValue());
+            if (previous == null || !same(previous, entry.getValue())) {
+                updated = true;
+            }
+        }
+        if (updated) {
+            metrics = combine();
+        }
+        return updated;
+    }
+
+    /**
+     * Starts watching the directories of the source roots.
+     *
+     * @throws IOException if the directories can't be watched.
+     */
+    public void start() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                register(root, null);
+            }
+        }
+    }
+
+    /**
+     * Waits for sources to change: blocks until a change event comes, then collects the events until none came for
+     * the debounce delay.
+     *
+     * @param debounce the quiet time ending a series of changes, in milliseconds.
+     * @return the changed source files, existing or deleted, matching the include and exclude patterns.
+     * @throws IOException if a new directory can't be watched or the roots can't be scanned.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public Set<File> awaitChanges(long debounce) throws IOException, InterruptedException {
+        Set<File> changed = new TreeSet<>();
+        while (changed.isEmpty()) {
+            WatchKey key = watchService.take();
+            while (key != null) {
+                collect(key, changed);
+                key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Stops watching the source roots.
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void collect(WatchKey key, Set<File> changed) throws IOException {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost: check everything
+                changed.addAll(scan());
+                addKnown(null, changed);
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // a new or moved directory: its sources are new too
+                register(path, changed);
+            } else {
+                changed.addAll(select(path));
+                // a deleted directory takes its sources along
+                addKnown(path, changed);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+            addKnown(directory, changed);
+        }
+    }
+
+    private synchronized void addKnown(Path directory, Set<File> changed) {
+        for (File file : files.keySet()) {
+            if (directory == null || file.toPath().startsWith(directory)) {
+                changed.add(file);
+            }
+        }
+    }
+
+    // watches a directory and its subdirectories, and adds the sources found to the changes if given
+    private void register(Path directory, final Set<File> changed) throws IOException {
+        Files.walkFileTree(
+                directory, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                        WatchKey key = dir.register(
+                                watchService,
+                                StandardWatchEventKinds.ENTRY_CREATE,
+                                StandardWatchEventKinds.ENTRY_MODIFY,
+                                StandardWatchEventKinds.ENTRY_DELETE);
+                        directories.put(key, dir);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        if (changed != null) {
+                            changed.addAll(select(file));
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+    }
+
+    // the file, if it lies in a root and matches the patterns
+    private List<File> select(Path path) {
+        for (int i = 0; i < roots.size(); i++) {
+            Path root = roots.get(i);
+            if (path.startsWith(root) && !path.equals(root)) {
+                String relative = root.relativize(path).toString().replace(File.separatorChar, '/');
+                return scanners.get(i).select(Collections.singletonList(relative));
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private List<File> scan() throws IOException {
+        List<File> sources = new ArrayList<>();
+        for (List<SourceScanner.Source> scanned : SourceScanner.scanAll(scanners)) {
+            for (SourceScanner.Source source : scanned) {
+                sources.add(source.getFile());
+            }
+        }
+        return sources;
+    }
+
+    private NcssMetrics combine() {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (NcssMetrics metric : files.values()) {
+            builder.addAll(metric);
+        }
+        return builder.build();
+    }
+
+    private static boolean same(NcssMetrics a, NcssMetrics b) {
+        return a.getPackages().equals(b.getPackages())
+                && a.getObjects().equals(b.getObjects())
+                && a.getFunctions().equals(b.getFunctions())
+                && a.getFailures().equals(b.getFailures());
+    }
+}
@@ -0,0 +1,486 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.reporting.MavenReportException;
+
+/**
+ * The worker threads running JavaNCSS and their isolated JavaNCSS instances, created on first use.<br>
+ * Workers may be kept across analyses and shared by analyzers running at the same time: the number of sources parsed
+ * at a time never exceeds the size of the workers, whatever the number of analyzers using them.
+ *
+ * @version $Id$
+ */
+public class NcssWorkers {
+    /* package */ static final String TIMED_OUT = "Timed out";
+
+    private static final long IDLE_SECONDS = 60;
+
+    private static final long WATCH_TICK = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final int size;
+
+    // bounds the CPU-bound parse step, whatever the number of threads running the tasks
+    private final Semaphore parsePermits;
+
+    // no more class loaders than parse permits: each one loads a full copy of JavaNCSS
+    private final Queue<IsolatedJavancss> analyzers = new ConcurrentLinkedQueue<>();
+
+    private ExecutorService pool;
+
+    // the platform threads parsing for the tasks when these run on virtual threads, null otherwise
+    private ThreadPoolExecutor parsePool;
+
+    // the threads added to the pool in place of the threads of abandoned tasks
+    private int extraThreads;
+
+    /**
+     * Creates workers.
+     *
+     * @param size the number of sources parsed at a time.
+     */
+    public NcssWorkers(int size) {
+        this.size = Math.max(1, size);
+        this.parsePermits = new Semaphore(this.size);
+    }
+
+    /**
+     * Gets the number of sources parsed at a time
+     * @return int
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Runs JavaNCSS on each chunk. When a file timeout is set, the files of a chunk are parsed one at a time, and a
+     * file which runs longer than the timeout is abandoned: the result then holds the metrics of the files before it, a
+     * {@link TimeoutException} as its last error and the index of the file, and the files after it are left to the
+     * caller.
+     *
+     * @param chunks the files to analyze, one JavaNCSS run per chunk.
+     * @param encoding the encoding of the files, <code>null</code> for the platform encoding.
+     * @param fileTimeout the time budget per file in milliseconds, 0 for none.
+     * @return the results, in the order of the chunks.
+     * @throws MavenReportException if JavaNCSS can't be run.
+     */
+    public List<IsolatedJavancss.Result> analyze(List<List<File>> chunks, String encoding, long fileTimeout)
+            throws MavenReportException {
+        List<IsolatedJavancss.Result> results = new ArrayList<>(chunks.size());
+        if (chunks.isEmpty()) {
+            return results;
+        }
+        ExecutorService executor = getPool();
+        List<Task> tasks = new ArrayList<>(chunks.size());
+        List<Future<IsolatedJavancss.Result>> futures = new ArrayList<>(chunks.size());
+        try {
+            for (List<File> chunk : chunks) {
+                Task task = new Task(chunk, encoding, fileTimeout);
+                tasks.add(task);
+                futures.add(executor.submit(task));
+            }
+            if (fileTimeout == 0) {
+                for (Future<IsolatedJavancss.Result> future : futures) {
+                    results.add(future.get());
+                }
+            } else {
+                results.addAll(watch(tasks, futures, TimeUnit.MILLISECONDS.toNanos(fileTimeout)));
+            }
+            return results;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new MavenReportException(
+                    "Interrupted while executing JavaNCSS " + NcssAnalyzer.getJavaNCSSVersion(), ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            Exception e = (cause instanceof Exception) ? (Exception) cause : new Exception(cause);
+            throw new MavenReportException(
+                    "Unexpected error while executing JavaNCSS " + NcssAnalyzer.getJavaNCSSVersion(), e);
+        } finally {
+            for (Future<IsolatedJavancss.Result> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Waits for the tasks, watching the parse time of the current file of every running task at once, so that a file
+     * over budget is abandoned as soon as it passes its budget, whatever the tasks before it. The parse time is the
+     * CPU time of the worker thread when the JVM measures it, so that a file isn't charged for the CPU taken by other
+     * threads, like abandoned tasks still running; otherwise it is the time since the parse of the file started.
+     *
+     * @return the results, in the order of the tasks.
+     */
+    private List<IsolatedJavancss.Result> watch(
+            List<Task> tasks, List<Future<IsolatedJavancss.Result>> futures, long budget)
+            throws InterruptedException, ExecutionException {
+        IsolatedJavancss.Result[] results = new IsolatedJavancss.Result[tasks.size()];
+        // a task starting its file while the others are waited for is checked within a tick
+        long tick = Math.min(budget, WATCH_TICK);
+        int remaining = tasks.size();
+        while (remaining > 0) {
+            long wait = tick;
+            Future<IsolatedJavancss.Result> next = null;
+            for (int i = 0; i < tasks.size(); i++) {
+                if (results[i] != null) {
+                    continue;
+                }
+                Task task = tasks.get(i);
+                Future<IsolatedJavancss.Result> future = futures.get(i);
+                if (future.isDone()) {
+                    results[i] = future.get();
+                    remaining--;
+                    continue;
+                }
+                // a task still waiting for a parse permit is not charged
+                if (task.started != 0) {
+                    long left = budget - task.elapsed();
+                    if (left <= 0) {
+                        results[i] = abandon(task, future, budget);
+                        if (results[i] != null) {
+                            remaining--;
+                            continue;
+                        }
+                        // the file ended in the meantime
+                        left = tick;
+                    }
+                    wait = Math.min(wait, left);
+                }
+                if (next == null) {
+                    next = future;
+                }
+            }
+            if (next != null) {
+                try {
+                    next.get(wait, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException te) {
+                    // check the budgets again
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Gives up a task whose current file is over budget. JavaNCSS can't be interrupted, so the task keeps running on a
+     * daemon thread with its own copy of JavaNCSS until the file ends, but it hands back its parse permit and the pool
+     * gets a replacement thread, given back once the file ends.
+     *
+     * @return the result of the task, or <code>null</code> if its file ended before it could be abandoned.
+     */
+    private IsolatedJavancss.Result abandon(Task task, Future<IsolatedJavancss.Result> future, long budget) {
+        IsolatedJavancss.Result result;
+        synchronized (task) {
+            if (task.done || task.elapsed() < budget) {
+                return null;
+            }
+            task.abandoned = true;
+            String message = TIMED_OUT + " after " + task.fileTimeout + " ms";
+            result = new IsolatedJavancss.Result(
+                    task.parsed.build(), new TimeoutException(message), message, task.current);
+        }
+        future.cancel(true);
+        task.releasePermit();
+        growPool(task);
+        return result;
+    }
+
+    // one more parsing thread while an abandoned task runs, up to as many extra threads as parse permits
+    private synchronized void growPool(Task task) {
+        ExecutorService parsing = (parsePool != null) ? parsePool : pool;
+        if (parsing instanceof ThreadPoolExecutor && extraThreads < size) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) parsing;
+            extraThreads++;
+            task.grewPool = true;
+            executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+            executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+        }
+    }
+
+    // called by an abandoned task once its file ended
+    private synchronized void shrinkPool(Task task) {
+        ExecutorService parsing = (parsePool != null) ? parsePool : pool;
+        if (task.grewPool && parsing instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor executor = (ThreadPoolExecutor) parsing;
+            extraThreads--;
+            task.grewPool = false;
+            executor.setCorePoolSize(executor.getCorePoolSize() - 1);
+            executor.setMaximumPoolSize(executor.getMaximumPoolSize() - 1);
+        }
+    }
+
+    private synchronized ExecutorService getPool() {
+        if (pool == null) {
+            pool = WorkerExecutors.newExecutor(size);
+            if (WorkerExecutors.isVirtual()) {
+                // a CPU-bound parse never unmounts: abandoned ones would pin the carriers of all virtual threads
+                parsePool = newPlatformExecutor(size, "javancss-parser-");
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Stops the worker threads. The workers can't be used anymore.
+     */
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+        if (parsePool != null) {
+            parsePool.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates a pool of daemon platform threads whose idle threads die, so that workers shared by a whole build don't
+     * hold threads between modules.
+     *
+     * @param size the number of threads.
+     * @param name the prefix of the thread names.
+     * @return the pool.
+     */
+    /* package */ static ThreadPoolExecutor newPlatformExecutor(int size, String name) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                size, size, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), daemonThreads(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Creates daemon threads, so that a stuck analysis never keeps Maven from exiting.
+     *
+     * @param name the prefix of the thread names.
+     * @return the thread factory.
+     */
+    /* package */ static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * The analysis of one chunk.
+     */
+    private final class Task implements Callable<IsolatedJavancss.Result> {
+        private final List<File> chunk;
+
+        private final String encoding;
+
+        private final long fileTimeout;
+
+        private final AtomicBoolean holdsPermit = new AtomicBoolean();
+
+        // the metrics of the files parsed so far, when they are parsed one at a time; guarded by the task
+        private final NcssMetricsBuilder parsed = new NcssMetricsBuilder();
+
+        // the index of the file being parsed; guarded by the task
+        private int current;
+
+        // the time and the CPU time of the worker thread when the current file started
+        private volatile long started;
+
+        // -1 if the CPU time isn't measured
+        private volatile long startedCpu = -1;
+
+        private volatile long threadId;
+
+        // guarded by the task
+        private boolean done;
+
+        private volatile boolean abandoned;
+
+        // guarded by the workers
+        private boolean grewPool;
+
+        private Task(List<File> chunk, String encoding, long fileTimeout) {
+            this.chunk = chunk;
+            this.encoding = encoding;
+            this.fileTimeout = fileTimeout;
+        }
+
+        @Override
+        public IsolatedJavancss.Result call() throws Exception {
+            if (parsePool == null) {
+                parsePermits.acquire();
+                holdsPermit.set(true);
+                return parse();
+            }
+            readAhead(chunk);
+            parsePermits.acquire();
+            holdsPermit.set(true);
+            Future<IsolatedJavancss.Result> parse;
+            try {
+                parse = parsePool.submit(new Callable<IsolatedJavancss.Result>() {
+                    @Override
+                    public IsolatedJavancss.Result call() throws Exception {
+                        return parse();
+                    }
+                });
+            } catch (RejectedExecutionException ree) {
+                releasePermit();
+                throw ree;
+            }
+            // an abandoned task stops waiting here, its parse goes on in the parse pool
+            try {
+                return parse.get();
+            } catch (ExecutionException ee) {
+                Throwable cause = ee.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw (cause instanceof Exception) ? (Exception) cause : ee;
+            }
+        }
+
+        /**
+         * Parses the chunk on the current thread, then hands back the parse permit.
+         */
+        private IsolatedJavancss.Result parse() throws Exception {
+            try {
+                IsolatedJavancss analyzer = analyzers.poll();
+                if (analyzer == null) {
+                    analyzer = new IsolatedJavancss();
+                    if (fileTimeout > 0) {
+                        analyzer.warmUp();
+                    }
+                }
+                threadId = Thread.currentThread().getId();
+                try {
+                    return (fileTimeout == 0) ? analyzer.analyze(chunk, encoding) : analyzeEach(analyzer);
+                } finally {
+                    // an abandoned analyzer may be left in any state
+                    if (!abandoned) {
+                        analyzers.add(analyzer);
+                    }
+                }
+            } finally {
+                releasePermit();
+                if (abandoned) {
+                    shrinkPool(this);
+                }
+            }
+        }
+
+        /**
+         * Parses the files one at a time, so that each one is watched against the timeout. Stops at the first file
+         * JavaNCSS fails on, or once the task is abandoned.
+         */
+        private IsolatedJavancss.Result analyzeEach(IsolatedJavancss analyzer) throws ReflectiveOperationException {
+            for (int i = 0; i < chunk.size(); i++) {
+                synchronized (this) {
+                    if (abandoned) {
+                        return null;
+                    }
+                    current = i;
+                    startedCpu = cpuTime(threadId);
+                    started = System.nanoTime();
+                }
+                IsolatedJavancss.Result result = analyzer.analyze(chunk.subList(i, i + 1), encoding);
+                synchronized (this) {
+                    if (abandoned) {
+                        return null;
+                    }
+                    if (result.getLastError() != null) {
+                        done = true;
+                        return new IsolatedJavancss.Result(
+                                parsed.build(), result.getLastError(), result.getLastErrorMessage(), i);
+                    }
+                    parsed.addAll(result.getMetrics());
+                }
+            }
+            synchronized (this) {
+                done = true;
+                return new IsolatedJavancss.Result(parsed.build(), null, null);
+            }
+        }
+
+        /**
+         * Gets the time spent parsing so far.
+         */
+        private long elapsed() {
+            long cpu = (startedCpu < 0) ? -1 : cpuTime(threadId);
+            // -1 as well once the thread ended, the result is then about to be available
+            return (cpu < 0) ? System.nanoTime() - started : cpu - startedCpu;
+        }
+
+        private void releasePermit() {
+            if (holdsPermit.compareAndSet(true, false)) {
+                parsePermits.release();
+            }
+        }
+    }
+
+    private static long cpuTime(long threadId) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        // the parse always runs on a platform thread, virtual threads are not measured
+        return threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled()
+                ? threads.getThreadCpuTime(threadId)
+                : -1;
+    }
+
+    /**
+     * Reads the sources once while waiting for a parse permit, so that the parse finds them in the file system cache
+     * instead of blocking on a slow file system. Unreadable files are left for JavaNCSS to report.
+     */
+    private static void readAhead(List<File> files) {
+        byte[] buffer = new byte[8192];
+        for (File file : files) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                while (in.read(buffer) != -1) {
+                    // only warm the cache
+                }
+            } catch (IOException ioe) {
+                // JavaNCSS reports it
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.codehaus.plexus.util.xml.XmlStreamReader;
+
+/**
+ * Reads a raw report written by JavaNCSS or by {@link NcssXmlWriter} back into {@link NcssMetrics}, e.g. the reports
+ * of the child modules of an aggregate report.<br>
+ * The report is streamed with StAX in a single pass, and the values are parsed straight into the metrics, so that a
+ * large report never needs a document tree in memory.
+ *
+ * @version $Id$
+ */
+public final class NcssXmlReader {
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final String[] NAME = {"name"};
+
+    private static final String[] PACKAGE_VALUES = {
+        "classes", "functions", "ncss", "javadocs", "javadoc_lines", "single_comment_lines", "multi_comment_lines"
+    };
+
+    private static final String[] OBJECT_VALUES = NcssObjectRows.METRICS;
+
+    private static final String[] FUNCTION_VALUES = NcssFunctionRows.METRICS;
+
+    private static final String[] FAILURE_TEXTS = {"file", "message"};
+
+    private static final String[] NO_VALUES = {};
+
+    private NcssXmlReader() {
+        // utility class
+    }
+
+    /**
+     * Reads a raw report.
+     *
+     * @param file the raw report.
+     * @return the metrics of the report.
+     * @throws IOException if the file can't be read or isn't a raw report.
+     */
+    public static NcssMetrics read(File file) throws IOException {
+        try (Reader reader = new XmlStreamReader(open(file))) {
+            return read(reader);
+        } catch (XMLStreamException xse) {
+            throw new IOException("Error reading XML file: " + file.getPath(), xse);
+        } catch (NumberFormatException nfe) {
+            throw new IOException("Invalid number in XML file: " + file.getPath(), nfe);
+        }
+    }
+
+    /**
+     * Finds a raw report, plain or gzip-compressed.
+     *
+     * @param report the plain raw report.
+     * @return the plain report, or the compressed one next to it if it is the only or the most recent one.
+     */
+    public static File locate(File report) {
+        File compressed = new File(report.getPath() + NcssXmlWriter.GZIP_EXTENSION);
+        if (compressed.isFile() && (!report.isFile() || compressed.lastModified() > report.lastModified())) {
+            return compressed;
+        }
+        return report;
+    }
+
+    // recognizes a gzip-compressed report by its magic bytes, whatever its name
+    private static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), BUFFER_SIZE);
+        try {
+            in.mark(2);
+            int magic = in.read() | (in.read() << 8);
+            in.reset();
+            return (magic == GZIPInputStream.GZIP_MAGIC) ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+        } catch (IOException ioe) {
+            in.close();
+            throw ioe;
+        }
+    }
+
+    private static NcssMetrics read(Reader reader) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        XMLStreamReader xml = factory.createXMLStreamReader(reader);
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        try {
+            if (xml.nextTag() != XMLStreamConstants.START_ELEMENT || !"javancss".equals(xml.getLocalName())) {
+                return builder.build();
+            }
+            while (nextElement(xml)) {
+                String section = xml.getLocalName();
+                if ("packages".equals(section)) {
+                    while (nextChild(xml, "package")) {
+                        builder.addPackage(toPackage(readRecord(xml, NAME, PACKAGE_VALUES)));
+                    }
+                } else if ("objects".equals(section)) {
+                    while (nextChild(xml, "object")) {
+                        builder.addObject(toObject(readRecord(xml, NAME, OBJECT_VALUES)));
+                    }
+                } else if ("functions".equals(section)) {
+                    while (nextChild(xml, "function")) {
+                        builder.addFunction(toFunction(readRecord(xml, NAME, FUNCTION_VALUES)));
+                    }
+                } else if ("roots".equals(section)) {
+                    while (nextChild(xml, "root")) {
+                        builder.addRoot(readRoot(xml));
+                    }
+                } else if ("failures".equals(section)) {
+                    while (nextChild(xml, "failure")) {
+                        Record record = readRecord(xml, FAILURE_TEXTS, NO_VALUES);
+                        builder.addFailure(new NcssFailure(record.texts[0], record.texts[1]));
+                    }
+                } else {
+                    skip(xml);
+                }
+            }
+        } finally {
+            xml.close();
+        }
+        return builder.build();
+    }
+
+    private static NcssRoot readRoot(XMLStreamReader xml) throws XMLStreamException {
+        String directory = "";
+        List<NcssPackage> packages = new ArrayList<>();
+        while (nextElement(xml)) {
+            if ("directory".equals(xml.getLocalName())) {
+                directory = xml.getElementText();
+            } else if ("package".equals(xml.getLocalName())) {
+                packages.add(toPackage(readRecord(xml, NAME, PACKAGE_VALUES)));
+            } else {
+                skip(xml);
+            }
+        }
+        return new NcssRoot(directory, packages);
+    }
+
+    private static NcssPackage toPackage(Record record) {
+        int[] values = record.values;
+        return new NcssPackage(
+                record.texts[0], values[0], values[1], values[2], values[3], values[4], values[5], values[6]);
+    }
+
+    private static NcssObject toObject(Record record) {
+        int[] values = record.values;
+        return new NcssObject(
+                record.texts[0], values[0], values[1], values[2], values[3], values[4], values[5], values[6]);
+    }
+
+    private static NcssFunction toFunction(Record record) {
+        int[] values = record.values;
+        return new NcssFunction(record.texts[0], values[0], values[1], values[2]);
+    }
+
+    /**
+     * Reads the child elements of the current element, up to its end, keeping the text of the given text elements and
+     * the numbers of the given value elements. Missing elements give an empty text and 0.
+     */
+    private static Record readRecord(XMLStreamReader xml, String[] texts, String[] values) throws XMLStreamException {
+        Record record = new Record(texts.length, values.length);
+        while (nextElement(xml)) {
+            String name = xml.getLocalName();
+            int index = indexOf(values, name);
+            if (index >= 0) {
+                record.values[index] = parseInt(xml.getElementText());
+                continue;
+            }
+            index = indexOf(texts, name);
+            if (index >= 0) {
+                record.texts[index] = xml.getElementText();
+            } else {
+                skip(xml);
+            }
+        }
+        return record;
+    }
+
+    /**
+     * Moves to the next child element of the current element, skipping the other children.
+     *
+     * @return <code>false</code> once the end of the current element is reached.
+     */
+    private static boolean nextChild(XMLStreamReader xml, String name) throws XMLStreamException {
+        while (nextElement(xml)) {
+            if (name.equals(xml.getLocalName())) {
+                return true;
+            }
+            skip(xml);
+        }
+        return false;
+    }
+
+    /**
+     * Moves to the next child element of the current element, skipping text and comments.
+     *
+     * @return <code>false</code> once the end of the current element is reached.
+     */
+    private static boolean nextElement(XMLStreamReader xml) throws XMLStreamException {
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // skips the current element, up to its end
+    private static void skip(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseInt(String text) {
+        String value = text.trim();
+        return value.isEmpty() ? 0 : Integer.parseInt(value);
+    }
+
+    // the texts and numbers of one package, object, function or failure element
+    private static final class Record {
+        private final String[] texts;
+
+        private final int[] values;
+
+        private Record(int texts, int values) {
+            this.texts = new String[texts];
+            Arrays.fill(this.texts, "");
+            this.values = new int[values];
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Streams the object and function rows of each batch into temporary files, so that a raw report can be written
+ * without keeping all rows in memory. The packages and the totals, which come first in the report, are only known
+ * once the last batch is done: {@link #write(File, NcssMetrics)} then assembles the report around the spooled rows.
+ *
+ * @version $Id$
+ */
+public class NcssXmlSpool implements NcssMetricsHandler, Closeable {
+    private final File objectsFile;
+
+    private final File functionsFile;
+
+    private final Writer objectsOut;
+
+    private final Writer functionsOut;
+
+    private final NcssXmlWriter objects;
+
+    private final NcssXmlWriter functions;
+
+    /**
+     * Creates a spool.
+     *
+     * @param directory the directory of the temporary files.
+     * @throws IOException if the temporary files can't be created.
+     */
+    public NcssXmlSpool(File directory) throws IOException {
+        Files.createDirectories(directory.toPath());
+        objectsFile = Files.createTempFile(directory.toPath(), "javancss-objects", ".xml")
+                .toFile();
+        functionsFile = Files.createTempFile(directory.toPath(), "javancss-functions", ".xml")
+                .toFile();
+        objectsOut = newWriter(objectsFile);
+        functionsOut = newWriter(functionsFile);
+        objects = new NcssXmlWriter(objectsOut);
+        functions = new NcssXmlWriter(functionsOut);
+    }
+
+    private static Writer newWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void handle(NcssMetrics batch) throws IOException {
+        for (NcssObject metric : batch.getObjects()) {
+            objects.writeObject(metric);
+        }
+        for (NcssFunction metric : batch.getFunctions()) {
+            functions.writeFunction(metric);
+        }
+    }
+
+    /**
+     * Writes the raw report.
+     *
+     * @param file the file to write.
+     * @param summary the packages, totals, distributions, roots and failures of all batches.
+     * @throws IOException if the report can't be written.
+     */
+    public void write(File file, NcssMetrics summary) throws IOException {
+        objectsOut.close();
+        functionsOut.close();
+        try (Writer out = NcssXmlWriter.newWriter(file)) {
+            NcssXmlWriter writer = new NcssXmlWriter(out);
+            writer.startDocument();
+            writer.writePackages(summary.getPackages(), summary.getTotals());
+            writer.startObjects();
+            copy(objectsFile, out);
+            writer.endObjects(summary.getTotals());
+            writer.startFunctions();
+            copy(functionsFile, out);
+            writer.endFunctions(summary.getTotals());
+            writer.writeDistributions(summary.getDistributions());
+            writer.writeRoots(summary.getRoots());
+            writer.writeFailures(summary.getFailures());
+            writer.endDocument();
+        }
+    }
+
+    private static void copy(File file, Writer out) throws IOException {
+        char[] buffer = new char[8192];
+        try (Reader in = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Deletes the temporary files.
+     *
+     * @throws IOException if a temporary file can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            objectsOut.close();
+            functionsOut.close();
+        } finally {
+            Files.deleteIfExists(objectsFile.toPath());
+            Files.deleteIfExists(functionsFile.toPath());
+        }
+    }
+}
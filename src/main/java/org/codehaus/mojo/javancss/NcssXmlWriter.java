@@ -0,0 +1,435 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes JavaNCSS metrics using the same XML layout as the JavaNCSS <code>-xml</code> output, so that results
+ * merged by the plugin can be read like a report produced by JavaNCSS itself.
+ *
+ * @version $Id$
+ */
+public class NcssXmlWriter {
+    /**
+     * The suffix of a gzip-compressed raw report.
+     */
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private static final String INDENT = "      ";
+
+    // the packages of a root and the percentiles of a distribution are one level deeper
+    private static final String NESTED_INDENT = INDENT + "  ";
+
+    private final Writer writer;
+
+    private final DecimalFormat numberFormat =
+            new DecimalFormat("#,##0.00", DecimalFormatSymbols.getInstance(Locale.US));
+
+    /**
+     * Creates a writer on top of the given output.
+     *
+     * @param writer the output to write the XML to.
+     */
+    public NcssXmlWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes a complete raw report into a file.
+     *
+     * @param file the file to write.
+     * @param metrics the metrics.
+     * @throws IOException if the file can't be written.
+     */
+    public static void write(File file, NcssMetrics metrics) throws IOException {
+        try (Writer out = newWriter(file)) {
+            new NcssXmlWriter(out).write(metrics);
+        }
+    }
+
+    /**
+     * Opens a raw report file for writing. A file named <code>*.gz</code> is gzip-compressed while it is written.
+     *
+     * @param file the file to write.
+     * @return the UTF-8 writer of the file.
+     * @throws IOException if the file can't be opened.
+     */
+    public static Writer newWriter(File file) throws IOException {
+        OutputStream out = Files.newOutputStream(file.toPath());
+        if (file.getName().endsWith(GZIP_EXTENSION)) {
+            try {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            } catch (IOException ioe) {
+                out.close();
+                throw ioe;
+            }
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Writes a complete raw report.
+     *
+     * @param metrics the metrics.
+     * @throws IOException if the output can't be written.
+     */
+    public void write(NcssMetrics metrics) throws IOException {
+        startDocument();
+        writePackages(metrics.getPackages(), metrics.getTotals());
+        startObjects();
+        for (NcssObject metric : metrics.getObjects()) {
+            writeObject(metric);
+        }
+        endObjects(metrics.getTotals());
+        startFunctions();
+        for (NcssFunction metric : metrics.getFunctions()) {
+            writeFunction(metric);
+        }
+        endFunctions(metrics.getTotals());
+        writeDistributions(metrics.getDistributions());
+        writeRoots(metrics.getRoots());
+        writeFailures(metrics.getFailures());
+        endDocument();
+    }
+
+    /**
+     * Writes the XML declaration, the root element and the time stamp.
+     *
+     * @throws IOException if the output can't be written.
+     */
+    public void startDocument() throws IOException {
+        Date now = new Date();
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<javancss>\n");
+        writer.write("  <date>" + new SimpleDateFormat("yyyy-MM-dd").format(now) + "</date>\n");
+        writer.write("  <time>" + new SimpleDateFormat("HH:mm:ss").format(now) + "</time>\n");
+    }
+
+    /**
+     * Closes the root element.
+     *
+     * @throws IOException if the output can't be written.
+     */
+    public void endDocument() throws IOException {
+        writer.write("</javancss>\n");
+    }
+
+    /**
+     * Writes the packages section.
+     *
+     * @param packages the package metrics.
+     * @param totals the totals of the analysis.
+     * @throws IOException if the output can't be written.
+     */
+    public void writePackages(List<NcssPackage> packages, NcssTotals totals) throws IOException {
+        writer.write("  <packages>\n");
+        for (NcssPackage metric : packages) {
+            writer.write("    <package>\n");
+            element("name", metric.getName());
+            writePackageValues(metric, INDENT);
+            writer.write("    </package>\n");
+        }
+        NcssPackage total = totals.getPackageTotal();
+        writer.write("    <total>\n");
+        writePackageValues(total, INDENT);
+        writer.write("    </total>\n");
+
+        int count = totals.getPackageCount();
+        int classes = total.getClasses();
+        int functions = total.getFunctions();
+        writer.write("    <table>\n");
+        writer.write("      <tr><td>Packages</td><td>Classes</td><td>Functions</td><td>NCSS</td>"
+                + "<td>Javadocs</td><td>per</td></tr>\n");
+        writer.write("      <tr>" + cell(count) + cell(classes) + cell(functions) + cell(total.getNcss())
+                + cell(total.getJavadocs()) + "<td>Project</td></tr>\n");
+        writer.write("      <tr><td></td>" + average(classes, count) + average(functions, count)
+                + average(total.getNcss(), count) + average(total.getJavadocs(), count) + "<td>Package</td></tr>\n");
+        writer.write("      <tr><td></td><td></td>" + average(functions, classes) + average(total.getNcss(), classes)
+                + average(total.getJavadocs(), classes) + "<td>Class</td></tr>\n");
+        writer.write("      <tr><td></td><td></td><td></td>" + average(total.getNcss(), functions)
+                + average(total.getJavadocs(), functions) + "<td>Function</td></tr>\n");
+        writer.write("    </table>\n");
+        writer.write("  </packages>\n");
+    }
+
+    private void writePackageValues(NcssPackage metric, String indent) throws IOException {
+        element(indent, "classes", String.valueOf(metric.getClasses()));
+        element(indent, "functions", String.valueOf(metric.getFunctions()));
+        element(indent, "ncss", String.valueOf(metric.getNcss()));
+        element(indent, "javadocs", String.valueOf(metric.getJavadocs()));
+        element(indent, "javadoc_lines", String.valueOf(metric.getJavadocLines()));
+        element(indent, "single_comment_lines", String.valueOf(metric.getSingleCommentLines()));
+        element(indent, "multi_comment_lines", String.valueOf(metric.getMultiCommentLines()));
+    }
+
+    /**
+     * Opens the objects section.
+     *
+     * @throws IOException if the output can't be written.
+     */
+    public void startObjects() throws IOException {
+        writer.write("\n  <objects>\n");
+    }
+
+    /**
+     * Writes the metrics of one object.
+     *
+     * @param metric the object metrics.
+     * @throws IOException if the output can't be written.
+     */
+    public void writeObject(NcssObject metric) throws IOException {
+        writer.write("    <object>\n");
+        element("name", metric.getName());
+        element("ncss", metric.getNcss());
+        element("functions", metric.getFunctions());
+        element("classes", metric.getClasses());
+        element("javadocs", metric.getJavadocs());
+        element("javadocs_lines", metric.getJavadocLines());
+        element("single_comment_lines", metric.getSingleCommentLines());
+        element("implementation_comment_lines", metric.getMultiCommentLines());
+        writer.write("    </object>\n");
+    }
+
+    /**
+     * Writes the object averages and closes the objects section.
+     *
+     * @param totals the totals of the analysis.
+     * @throws IOException if the output can't be written.
+     */
+    public void endObjects(NcssTotals totals) throws IOException {
+        NcssObject total = totals.getObjectTotal();
+        int count = totals.getObjectCount();
+        writer.write("    <averages>\n");
+        averageElement("ncss", total.getNcss(), count);
+        averageElement("functions", total.getFunctions(), count);
+        averageElement("classes", total.getClasses(), count);
+        averageElement("javadocs", total.getJavadocs(), count);
+        averageElement("javadocs_lines", total.getJavadocLines(), count);
+        averageElement("single_comment_lines", total.getSingleCommentLines(), count);
+        averageElement("implementation_comment_lines", total.getMultiCommentLines(), count);
+        writer.write("    </averages>\n");
+        writer.write("    <ncss>" + numberFormat.format(totals.getNcss()) + "</ncss>\n");
+        writer.write("  </objects>\n");
+    }
+
+    /**
+     * Opens the functions section.
+     *
+     * @throws IOException if the output can't be written.
+     */
+    public void startFunctions() throws IOException {
+        writer.write("\n  <functions>\n");
+    }
+
+    /**
+     * Writes the metrics of one function.
+     *
+     * @param metric the function metrics.
+     * @throws IOException if the output can't be written.
+     */
+    public void writeFunction(NcssFunction metric) throws IOException {
+        writer.write("    <function>\n");
+        element("name", metric.getName());
+        element("ncss", metric.getNcss());
+        element("ccn", metric.getCcn());
+        element("javadocs", metric.getJavadocs());
+        writer.write("    </function>\n");
+    }
+
+    /**
+     * Writes the function averages and closes the functions section.
+     *
+     * @param totals the totals of the analysis.
+     * @throws IOException if the output can't be written.
+     */
+    public void endFunctions(NcssTotals totals) throws IOException {
+        NcssFunction total = totals.getFunctionTotal();
+        int count = totals.getFunctionCount();
+        writer.write("    <function_averages>\n");
+        averageElement("ncss", total.getNcss(), count);
+        averageElement("ccn", total.getCcn(), count);
+        averageElement("javadocs", total.getJavadocs(), count);
+        writer.write("    </function_averages>\n");
+        writer.write("    <ncss>" + numberFormat.format(totals.getNcss()) + "</ncss>\n");
+        writer.write("  </functions>\n");
+    }
+
+    /**
+     * Writes the percentiles of the function and object metrics, per package and in total. JavaNCSS itself never
+     * writes this section.
+     *
+     * @param distributions the distributions.
+     * @throws IOException if the output can't be written.
+     */
+    public void writeDistributions(NcssDistributions distributions) throws IOException {
+        writer.write("\n  <distributions>\n");
+        for (NcssDistribution distribution : distributions.getPackages()) {
+            writer.write("    <package>\n");
+            element("name", distribution.getName());
+            writeDistributionValues(distribution);
+            writer.write("    </package>\n");
+        }
+        writer.write("    <total>\n");
+        writeDistributionValues(distributions.getTotal());
+        writer.write("    </total>\n");
+        writer.write("  </distributions>\n");
+    }
+
+    private void writeDistributionValues(NcssDistribution distribution) throws IOException {
+        writeHistogram("function_ncss", distribution.getFunctionNcss());
+        writeHistogram("function_ccn", distribution.getFunctionCcn());
+        writeHistogram("object_ncss", distribution.getObjectNcss());
+    }
+
+    private void writeHistogram(String name, NcssHistogram histogram) throws IOException {
+        writer.write(INDENT + "<" + name + ">\n");
+        element(NESTED_INDENT, "count", String.valueOf(histogram.getCount()));
+        for (int percent : NcssHistogram.PERCENTILES) {
+            element(NESTED_INDENT, "p" + percent, String.valueOf(histogram.getPercentile(percent)));
+        }
+        element(NESTED_INDENT, "max", String.valueOf(histogram.getMax()));
+        writer.write(INDENT + "</" + name + ">\n");
+    }
+
+    /**
+     * Writes the package metrics of each source root, if several roots were analyzed together. JavaNCSS itself never
+     * writes this section.
+     *
+     * @param roots the metrics of the roots.
+     * @throws IOException if the output can't be written.
+     */
+    public void writeRoots(List<NcssRoot> roots) throws IOException {
+        if (roots.isEmpty()) {
+            return;
+        }
+        writer.write("\n  <roots>\n");
+        for (NcssRoot root : roots) {
+            writer.write("    <root>\n");
+            element("directory", root.getDirectory());
+            for (NcssPackage metric : root.getPackages()) {
+                writer.write("      <package>\n");
+                element(NESTED_INDENT, "name", metric.getName());
+                writePackageValues(metric, NESTED_INDENT);
+                writer.write("      </package>\n");
+            }
+            writer.write("      <total>\n");
+            writePackageValues(root.getTotal(), NESTED_INDENT);
+            writer.write("      </total>\n");
+            writer.write("    </root>\n");
+        }
+        writer.write("  </roots>\n");
+    }
+
+    /**
+     * Writes the source files which could not be parsed, if there are any. JavaNCSS itself never writes this section.
+     *
+     * @param failures the failures.
+     * @throws IOException if the output can't be written.
+     */
+    public void writeFailures(List<NcssFailure> failures) throws IOException {
+        if (failures.isEmpty()) {
+            return;
+        }
+        writer.write("\n  <failures>\n");
+        for (NcssFailure failure : failures) {
+            writer.write("    <failure>\n");
+            element("file", failure.getFile());
+            element("message", failure.getMessage());
+            writer.write("    </failure>\n");
+        }
+        writer.write("  </failures>\n");
+    }
+
+    private void averageElement(String name, long sum, long count) throws IOException {
+        element(name, numberFormat.format(NcssTotals.average(sum, count)));
+    }
+
+    private void element(String name, int value) throws IOException {
+        element(name, String.valueOf(value));
+    }
+
+    private void element(String name, String value) throws IOException {
+        element(INDENT, name, value);
+    }
+
+    private void element(String indent, String name, String value) throws IOException {
+        writer.write(indent + "<" + name + ">" + escape(value) + "</" + name + ">\n");
+    }
+
+    private String cell(long value) {
+        return "<td>" + numberFormat.format(value) + "</td>";
+    }
+
+    private String average(long sum, long count) {
+        return "<td>" + numberFormat.format(NcssTotals.average(sum, count)) + "</td>";
+    }
+
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String replacement;
+            switch (c) {
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                default:
+                    replacement = null;
+            }
+            if (replacement != null && sb == null) {
+                sb = new StringBuilder(text.length() + 8).append(text, 0, i);
+            }
+            if (sb != null) {
+                if (replacement == null) {
+                    sb.append(c);
+                } else {
+                    sb.append(replacement);
+                }
+            }
+        }
+        return (sb == null) ? text : sb.toString();
+    }
+}
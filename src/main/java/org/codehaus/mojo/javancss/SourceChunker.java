@@ -0,0 +1,112 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Splits a list of source files into chunks of roughly equal cost.<br>
+ * The size of a file is used as its cost: files are handed out largest first, each one to the chunk with the
+ * lowest cost so far, and the chunks are returned most expensive first so that the longest work starts first.
+ *
+ * @version $Id$
+ */
+public final class SourceChunker {
+
+    private SourceChunker() {
+        // utility class
+    }
+
+    /**
+     * Splits the files into at most <code>chunkCount</code> cost-balanced chunks.
+     *
+     * @param files the files to split.
+     * @param chunkCount the maximum number of chunks to produce.
+     * @return the non-empty chunks, most expensive first.
+     */
+    public static List<List<File>> split(List<File> files, int chunkCount) {
+        int count = Math.max(1, Math.min(chunkCount, files.size()));
+
+        // File.length() hits the file system, so query each file only once
+        final long[] sizes = new long[files.size()];
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = files.get(i).length();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(sizes[b], sizes[a]);
+            }
+        });
+
+        PriorityQueue<Chunk> queue = new PriorityQueue<>(count, new Comparator<Chunk>() {
+            @Override
+            public int compare(Chunk a, Chunk b) {
+                int result = Long.compare(a.cost, b.cost);
+                return (result != 0) ? result : Integer.compare(a.index, b.index);
+            }
+        });
+        for (int i = 0; i < count; i++) {
+            queue.add(new Chunk(i));
+        }
+        for (Integer i : order) {
+            Chunk cheapest = queue.poll();
+            cheapest.files.add(files.get(i));
+            cheapest.cost += sizes[i];
+            queue.add(cheapest);
+        }
+
+        List<Chunk> chunks = new ArrayList<>(queue);
+        Collections.sort(chunks, new Comparator<Chunk>() {
+            @Override
+            public int compare(Chunk a, Chunk b) {
+                int result = Long.compare(b.cost, a.cost);
+                return (result != 0) ? result : Integer.compare(a.index, b.index);
+            }
+        });
+        List<List<File>> result = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            if (!chunk.files.isEmpty()) {
+                result.add(chunk.files);
+            }
+        }
+        return result;
+    }
+
+    private static final class Chunk {
+        private final int index;
+
+        private final List<File> files = new ArrayList<>();
+
+        private long cost;
+
+        private Chunk(int index) {
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+/**
+ * Lists the source files below a directory which match Ant-style include and exclude patterns.<br>
+ * The tree is walked once, each top level subdirectory on a thread of its own, and the result is kept: an instance
+ * scans the file system only on its first call to {@link #scan()}. Directories matching an exclude pattern ending with
+ * <code>**</code> are not walked at all.
+ *
+ * @version $Id$
+ */
+public class SourceScanner {
+    private static final String[] DEFAULT_INCLUDES = {"**/*.java"};
+
+    private static final String REGEX_PREFIX = "%regex[";
+
+    private static final String ANT_PREFIX = "%ant[";
+
+    private final Path basedir;
+
+    private final List<PathMatcher> includes;
+
+    private final List<PathMatcher> excludes;
+
+    // the excludes ending with **, matched against directories
+    private final List<PathMatcher> excludedDirectories;
+
+    private List<Source> sources;
+
+    /**
+     * Creates a scanner.
+     *
+     * @param basedir the directory to scan.
+     * @param includes the patterns of the files to list, <code>null</code> for all java files.
+     * @param excludes the patterns of the files to leave out, may be <code>null</code>.
+     */
+    public SourceScanner(File basedir, String[] includes, String[] excludes) {
+        this.basedir = basedir.toPath();
+        this.includes = new ArrayList<>();
+        this.excludes = new ArrayList<>();
+        this.excludedDirectories = new ArrayList<>();
+        for (String include : (includes != null) ? includes : DEFAULT_INCLUDES) {
+            this.includes.add(matcher(include));
+        }
+        if (excludes != null) {
+            for (String exclude : excludes) {
+                this.excludes.add(matcher(exclude));
+                String normalized = normalize(exclude);
+                if (normalized.endsWith("/**") && !normalized.startsWith(REGEX_PREFIX)) {
+                    excludedDirectories.add(matcher(normalized.substring(0, normalized.length() - 3)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the matching files, walking the directory on the first call only.
+     *
+     * @return the matching files, sorted by path.
+     * @throws IOException if the directory can't be walked.
+     */
+    public synchronized List<Source> scan() throws IOException {
+        if (sources == null) {
+            sources = Collections.unmodifiableList(walk());
+        }
+        return sources;
+    }
+
+    /**
+     * Keeps the existing directories of a list of source roots, without duplicates.
+     *
+     * @param paths the paths of the source roots.
+     * @return the existing source roots, as absolute files in the order of the paths.
+     */
+    public static List<File> existingRoots(List<String> paths) {
+        Map<String, File> roots = new LinkedHashMap<>();
+        for (String path : paths) {
+            File root = new File(path).getAbsoluteFile();
+            if (root.isDirectory()) {
+                roots.put(root.getPath(), root);
+            }
+        }
+        return new ArrayList<>(roots.values());
+    }
+
+    /**
+     * Scans several directories at the same time. Each scanner runs on a thread of its own rather than on the common
+     * pool, which it feeds with its subdirectories and waits for.
+     *
+     * @param scanners the scanners.
+     * @return the matching files of each scanner, in the order of the scanners.
+     * @throws IOException if a directory can't be walked.
+     */
+    public static List<List<Source>> scanAll(List<SourceScanner> scanners) throws IOException {
+        List<List<Source>> result = new ArrayList<>(scanners.size());
+        if (scanners.size() < 2) {
+            for (SourceScanner scanner : scanners) {
+                result.add(scanner.scan());
+            }
+            return result;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(scanners.size());
+        try {
+            List<Future<List<Source>>> scans = new ArrayList<>(scanners.size());
+            for (final SourceScanner scanner : scanners) {
+                scans.add(executor.submit(new Callable<List<Source>>() {
+                    @Override
+                    public List<Source> call() throws IOException {
+                        return scanner.scan();
+                    }
+                }));
+            }
+            for (Future<List<Source>> scan : scans) {
+                result.add(get(scan, "source roots"));
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T get(Future<T> future, Object scanned) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning " + scanned, ie);
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Can't scan " + scanned, cause);
+        }
+    }
+
+    /**
+     * Lists the matching files.
+     *
+     * @return the matching files, sorted by path.
+     * @throws IOException if the directory can't be walked.
+     */
+    public List<File> getFiles() throws IOException {
+        List<Source> scanned = scan();
+        List<File> files = new ArrayList<>(scanned.size());
+        for (Source source : scanned) {
+            files.add(source.getFile());
+        }
+        return files;
+    }
+
+    /**
+     * Keeps the paths matching the include and exclude patterns, without walking the directory.
+     *
+     * @param paths paths relative to the scanned directory, with <code>/</code> as separator.
+     * @return the matching files.
+     */
+    public List<File> select(List<String> paths) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            if (isIncluded(basedir.getFileSystem().getPath(path))) {
+                files.add(basedir.resolve(path).toFile());
+            }
+        }
+        return files;
+    }
+
+    private List<Source> walk() throws IOException {
+        final Queue<Source> found = new ConcurrentLinkedQueue<>();
+        final List<Future<Void>> subtrees = new ArrayList<>();
+        if (!Files.isDirectory(basedir)) {
+            return new ArrayList<>();
+        }
+        // the top level is walked here, and each of its subdirectories in a task of its own
+        Files.walkFileTree(basedir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new Visitor(found) {
+            @Override
+            public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isDirectory()) {
+                    return super.visitFile(file, attrs);
+                }
+                if (!isExcludedDirectory(basedir.relativize(file))) {
+                    subtrees.add(ForkJoinPool.commonPool().submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            Files.walkFileTree(
+                                    file,
+                                    EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                                    Integer.MAX_VALUE,
+                                    new Visitor(found));
+                            return null;
+                        }
+                    }));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        for (Future<Void> subtree : subtrees) {
+            get(subtree, basedir);
+        }
+
+        List<Source> result = new ArrayList<>(found);
+        Collections.sort(result, new Comparator<Source>() {
+            @Override
+            public int compare(Source a, Source b) {
+                return a.getPath().compareTo(b.getPath());
+            }
+        });
+        return result;
+    }
+
+    private boolean isIncluded(Path path) {
+        return matches(includes, path) && !matches(excludes, path);
+    }
+
+    private boolean isExcludedDirectory(Path path) {
+        return matches(excludedDirectories, path);
+    }
+
+    private static boolean matches(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String normalize(String pattern) {
+        String normalized = pattern.trim().replace('\\', '/');
+        if (normalized.startsWith(REGEX_PREFIX)) {
+            return pattern.trim();
+        }
+        if (normalized.startsWith(ANT_PREFIX) && normalized.endsWith("]")) {
+            normalized = normalized.substring(ANT_PREFIX.length(), normalized.length() - 1);
+        }
+        if (normalized.endsWith("/")) {
+            // a directory stands for everything below it
+            normalized += "**";
+        }
+        return normalized;
+    }
+
+    /**
+     * Compiles an include or exclude pattern, with the syntax of the plexus <code>DirectoryScanner</code>:
+     * <code>*</code> and <code>?</code> match within a path element, <code>**</code> matches any number of directories,
+     * and <code>%regex[...]</code> is a regular expression over the relative path.
+     */
+    /* package */ static PathMatcher matcher(String pattern) {
+        String normalized = normalize(pattern);
+        if (normalized.startsWith(REGEX_PREFIX) && normalized.endsWith("]")) {
+            return new RegexMatcher(
+                    Pattern.compile(normalized.substring(REGEX_PREFIX.length(), normalized.length() - 1)));
+        }
+        StringBuilder regex = new StringBuilder();
+        String[] elements = normalized.split("/+");
+        for (int i = 0; i < elements.length; i++) {
+            boolean last = (i == elements.length - 1);
+            if ("**".equals(elements[i])) {
+                regex.append(last ? ".*" : "(?:[^/]*/)*");
+                continue;
+            }
+            StringBuilder literal = new StringBuilder();
+            for (char c : elements[i].toCharArray()) {
+                if (c == '*' || c == '?') {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                    regex.append((c == '*') ? "[^/]*" : "[^/]");
+                } else {
+                    literal.append(c);
+                }
+            }
+            regex.append(Pattern.quote(literal.toString()));
+            if (!last) {
+                regex.append('/');
+            }
+        }
+        return new RegexMatcher(Pattern.compile(regex.toString()));
+    }
+
+    /**
+     * A source file found by the scan.
+     */
+    public static final class Source {
+        private final File file;
+
+        private final String path;
+
+        private final long size;
+
+        private Source(File file, String path, long size) {
+            this.file = file;
+            this.path = path;
+            this.size = size;
+        }
+
+        /**
+         * Gets the file
+         * @return File
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the path relative to the scanned directory, with <code>/</code> as separator
+         * @return String
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the size of the file at the time of the scan
+         * @return long
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+
+    // matches a path relative to the scanned directory, with / as separator on every platform
+    private static final class RegexMatcher implements PathMatcher {
+        private final Pattern pattern;
+
+        private RegexMatcher(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean matches(Path path) {
+            return pattern.matcher(toString(path)).matches();
+        }
+
+        private static String toString(Path path) {
+            StringBuilder result = new StringBuilder();
+            for (Path element : path) {
+                if (result.length() > 0) {
+                    result.append('/');
+                }
+                result.append(element.toString());
+            }
+            return result.toString();
+        }
+    }
+
+    private class Visitor extends SimpleFileVisitor<Path> {
+        private final Queue<Source> found;
+
+        private Visitor(Queue<Source> found) {
+            this.found = found;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return isExcludedDirectory(basedir.relativize(dir))
+                    ? FileVisitResult.SKIP_SUBTREE
+                    : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            Path relative = basedir.relativize(file);
+            if (attrs.isRegularFile() && isIncluded(relative)) {
+                found.add(new Source(file.toFile(), RegexMatcher.toString(relative), attrs.size()));
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // like DirectoryScanner, skip what can't be read, e.g. a symbolic link cycle
+            return FileVisitResult.CONTINUE;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Creates the executor running the analysis tasks.<br>
+ * This is the Java 8 version: a fixed pool of platform threads, one per allowed parse. The plugin jar is a
+ * multi-release jar whose Java 21 version of this class runs each task on a virtual thread instead.
+ *
+ * @version $Id$
+ */
+final class WorkerExecutors {
+    private WorkerExecutors() {
+        // utility class
+    }
+
+    /**
+     * Creates the executor.
+     *
+     * @param parallelism the number of sources parsed at the same time.
+     * @return the executor.
+     */
+    static ExecutorService newExecutor(int parallelism) {
+        return NcssWorkers.newPlatformExecutor(parallelism, "javancss-worker-");
+    }
+
+    /**
+     * Tells whether a task blocked on I/O leaves its thread to other tasks. When it does, the tasks read their sources
+     * ahead before waiting for a parse permit.
+     *
+     * @return <code>false</code>: a platform thread waiting for the file system is lost for the other tasks.
+     */
+    static boolean isVirtual() {
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package org.codehaus.mojo.javancss;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the executor running the analysis tasks.<br>
+ * This is the Java 21 version: each task runs on a virtual thread, so that tasks waiting for a slow file system don't
+ * hold a platform thread. The CPU-bound parse step is bounded by the parse permits of the analyzer, not by the
+ * executor, and runs on platform threads of its own, see {@link NcssWorkers}: a parse abandoned after a timeout then
+ * never pins a carrier thread of the virtual threads.
+ *
+ * @version $Id$
+ */
+final class WorkerExecutors {
+
+    private WorkerExecutors() {
+        // utility class
+    }
+
+    /**
+     * Creates the executor.
+     *
+     * @param parallelism the number of sources parsed at the same time, ignored: virtual threads are not pooled.
+     * @return the executor.
+     */
+    static ExecutorService newExecutor(int parallelism) {
+        return Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("javancss-worker-", 1).factory());
+    }
+
+    /**
+     * Tells whether a task blocked on I/O leaves its thread to other tasks. When it does, the tasks read their sources
+     * ahead before waiting for a parse permit.
+     *
+     * @return <code>true</code>: a virtual thread waiting for the file system is unmounted from its carrier.
+     */
+    static boolean isVirtual() {
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+// Shows the full listing of the JavaNCSS report one data page at a time, see NcssListingWriter.
+(function () {
+    var root = document.getElementById('javancss-listing');
+    if (!root) {
+        return;
+    }
+    var base = root.getAttribute('data-base');
+    // the sorts of each table, with the header naming them
+    var tables = {
+        functions: {
+            headers: root.getAttribute('data-functions').split('|'),
+            sorts: [['ncss', 1], ['ccn', 2], ['name', 0]]
+        },
+        objects: {
+            headers: root.getAttribute('data-objects').split('|'),
+            sorts: [['ncss', 1], ['functions', 2], ['name', 0]]
+        }
+    };
+    var state = {table: 'functions', sort: 'ncss', page: 0, pages: 1};
+
+    var controls = document.createElement('p');
+    var tableSelect = document.createElement('select');
+    var sortSelect = document.createElement('select');
+    var previous = document.createElement('button');
+    var next = document.createElement('button');
+    var status = document.createElement('span');
+    var content = document.createElement('div');
+    addOption(tableSelect, 'functions', tables.functions.headers[0]);
+    addOption(tableSelect, 'objects', tables.objects.headers[0]);
+    previous.type = 'button';
+    previous.appendChild(document.createTextNode(root.getAttribute('data-previous')));
+    next.type = 'button';
+    next.appendChild(document.createTextNode(root.getAttribute('data-next')));
+    controls.appendChild(tableSelect);
+    controls.appendChild(document.createTextNode(' '));
+    controls.appendChild(sortSelect);
+    controls.appendChild(document.createTextNode(' '));
+    controls.appendChild(previous);
+    controls.appendChild(document.createTextNode(' '));
+    controls.appendChild(status);
+    controls.appendChild(document.createTextNode(' '));
+    controls.appendChild(next);
+    root.appendChild(controls);
+    root.appendChild(content);
+
+    function addOption(select, value, label) {
+        var option = document.createElement('option');
+        option.value = value;
+        option.appendChild(document.createTextNode(label));
+        select.appendChild(option);
+    }
+
+    function fillSorts() {
+        var table = tables[state.table];
+        while (sortSelect.firstChild) {
+            sortSelect.removeChild(sortSelect.firstChild);
+        }
+        for (var i = 0; i < table.sorts.length; i++) {
+            addOption(sortSelect, table.sorts[i][0], table.headers[table.sorts[i][1]]);
+        }
+        state.sort = table.sorts[0][0];
+    }
+
+    function load() {
+        var old = document.getElementById('javancss-listing-page');
+        if (old) {
+            old.parentNode.removeChild(old);
+        }
+        var script = document.createElement('script');
+        script.id = 'javancss-listing-page';
+        script.src = base + '/' + state.table + '-' + state.sort + '-' + state.page + '.js';
+        document.body.appendChild(script);
+    }
+
+    function cell(row, tag, text) {
+        var element = document.createElement(tag);
+        element.appendChild(document.createTextNode(text));
+        row.appendChild(element);
+    }
+
+    // called by each data page
+    window.javancssListingPage = function (page) {
+        if (page.table !== state.table || page.sort !== state.sort || page.page !== state.page) {
+            return;
+        }
+        state.pages = page.pages;
+        var table = document.createElement('table');
+        table.className = 'bodyTable';
+        var header = document.createElement('tr');
+        var headers = tables[page.table].headers;
+        for (var i = 0; i < headers.length; i++) {
+            cell(header, 'th', headers[i]);
+        }
+        table.appendChild(header);
+        for (var r = 0; r < page.rows.length; r++) {
+            var row = document.createElement('tr');
+            for (var c = 0; c < page.rows[r].length; c++) {
+                cell(row, 'td', String(page.rows[r][c]));
+            }
+            table.appendChild(row);
+        }
+        while (content.firstChild) {
+            content.removeChild(content.firstChild);
+        }
+        content.appendChild(table);
+        status.textContent = root.getAttribute('data-page') + ' ' + (page.page + 1) + ' / ' + page.pages
+            + ' (' + page.total + ')';
+        previous.disabled = page.page === 0;
+        next.disabled = page.page + 1 >= page.pages;
+    };
+
+    tableSelect.onchange = function () {
+        state.table = tableSelect.value;
+        state.page = 0;
+        fillSorts();
+        load();
+    };
+    sortSelect.onchange = function () {
+        state.sort = sortSelect.value;
+        state.page = 0;
+        load();
+    };
+    previous.onclick = function () {
+        if (state.page > 0) {
+            state.page--;
+            load();
+        }
+    };
+    next.onclick = function () {
+        if (state.page + 1 < state.pages) {
+            state.page++;
+            load();
+        }
+    };
+    fillSorts();
+    load();
+})();
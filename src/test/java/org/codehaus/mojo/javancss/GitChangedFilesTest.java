@@ -0,0 +1,89 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for GitChangedFiles class.
+ */
+public class GitChangedFilesTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File repository;
+
+    private File sources;
+
+    private File log;
+
+    @Before
+    public void setUp() throws Exception {
+        repository = folder.newFolder("repository");
+        log = folder.newFile("git.log");
+        sources = new File(repository, "src/main/java");
+        write("src/main/java/org/foo/Old.java", "class Old {}");
+        write("src/main/java/org/foo/Gone.java", "class Gone {}");
+        write("README.txt", "readme");
+        Assume.assumeTrue(git("init", "-q") == 0);
+        git("add", ".");
+        assertEquals(0, git("-c", "user.name=test", "-c", "user.email=test@example.com", "commit", "-q", "-m", "base"));
+        git("tag", "base");
+    }
+
+    @Test
+    public void testListsChangesSinceRef() throws Exception {
+        write("src/main/java/org/foo/Old.java", "class Old { void changed() {} }");
+        write("src/main/java/org/foo/New.java", "class New {}");
+        write("src/main/java/org/foo/notes.txt", "notes");
+        write("README.txt", "changed");
+        assertTrue(new File(sources, "org/foo/Gone.java").delete());
+
+        List<String> changed = GitChangedFiles.list(sources, "base");
+        Collections.sort(changed);
+        assertEquals(Arrays.asList("org/foo/New.java", "org/foo/Old.java", "org/foo/notes.txt"), changed);
+
+        List<File> selected = GitChangedFiles.select(sources, changed, null, new String[] {"**/New.java"});
+        assertEquals(Collections.singletonList(new File(sources, "org/foo/Old.java")), selected);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnknownRef() throws IOException {
+        GitChangedFiles.list(sources, "no-such-ref");
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(repository, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int git(String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        try {
+            return new ProcessBuilder(command)
+                    .directory(repository)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                    .start()
+                    .waitFor();
+        } catch (IOException ioe) {
+            // no git on this machine
+            return -1;
+        }
+    }
+}
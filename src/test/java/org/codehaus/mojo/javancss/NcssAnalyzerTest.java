@@ -0,0 +1,218 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.reporting.MavenReportException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssAnalyzer class.
+ */
+public class NcssAnalyzerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<File> files;
+
+    private File bad;
+
+    @Before
+    public void setUp() throws IOException {
+        files = new ArrayList<>();
+        files.add(source("A", "class A { void a() {} }"));
+        files.add(source("B", "class B { void b() {} }"));
+        bad = source("Bad", "class Bad { Runnable r = () -> {}; }");
+        files.add(bad);
+        files.add(source("C", "class C { void c() {} }"));
+        files.add(source("D", "class D { void d() {} }"));
+    }
+
+    @Test(expected = MavenReportException.class)
+    public void testParseFailureFailsAnalysis() throws MavenReportException {
+        new NcssAnalyzer().analyze(files);
+    }
+
+    @Test
+    public void testParseFailureIsIsolated() throws MavenReportException {
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setIsolateParseFailures(true);
+        NcssMetrics metrics = analyzer.analyze(files);
+
+        assertEquals(1, metrics.getFailures().size());
+        assertEquals(bad.getPath(), metrics.getFailures().get(0).getFile());
+        assertEquals(4, metrics.getTotals().getFunctionCount());
+        assertEquals(4, metrics.getTotals().getObjectCount());
+    }
+
+    @Test
+    public void testParseFailureIsIsolatedInParallel() throws MavenReportException {
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setIsolateParseFailures(true);
+        analyzer.setThreads(2);
+        NcssMetrics metrics = analyzer.analyze(files);
+
+        assertEquals(1, metrics.getFailures().size());
+        assertEquals(4, metrics.getTotals().getFunctionCount());
+    }
+
+    @Test
+    public void testKnownFailureIsSkippedUntilChanged() throws IOException, MavenReportException {
+        File failureFile = new File(folder.getRoot(), "failures.bin");
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setIsolateParseFailures(true);
+        analyzer.setFailureFile(failureFile);
+        analyzer.analyze(files);
+
+        NcssKnownFailures known = NcssKnownFailures.load(failureFile, NcssAnalyzer.getJavaNCSSVersion(), null);
+        assertEquals(1, known.size());
+        assertNotNull(known.get(bad));
+
+        NcssMetrics metrics = analyzer.analyze(files);
+        assertEquals(1, metrics.getFailures().size());
+        assertEquals(4, metrics.getTotals().getFunctionCount());
+
+        write(bad, "class Bad { void bad() {} }");
+        metrics = analyzer.analyze(files);
+        assertTrue(metrics.getFailures().isEmpty());
+        assertEquals(5, metrics.getTotals().getFunctionCount());
+        assertEquals(
+                0,
+                NcssKnownFailures.load(failureFile, NcssAnalyzer.getJavaNCSSVersion(), null)
+                        .size());
+    }
+
+    @Test
+    public void testFailureIsNotCached() throws MavenReportException {
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setIsolateParseFailures(true);
+        analyzer.setCacheFile(new File(folder.getRoot(), "cache.bin"));
+        analyzer.analyze(files);
+
+        NcssCache cache = NcssCache.load(analyzer.getCacheFile(), NcssAnalyzer.getJavaNCSSVersion(), null);
+        assertEquals(4, cache.size());
+        assertEquals(Arrays.asList(bad.getPath()), failedFiles(analyzer.analyze(files)));
+    }
+
+    @Test
+    public void testSlowFileTimesOut() throws IOException, MavenReportException {
+        File slow = slowSource();
+        List<File> sources = Arrays.asList(files.get(0), slow, files.get(1));
+
+        File failureFile = new File(folder.getRoot(), "failures.bin");
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setFileTimeout(200);
+        analyzer.setIsolateParseFailures(true);
+        analyzer.setFailureFile(failureFile);
+        NcssMetrics metrics = analyzer.analyze(sources);
+
+        assertEquals(Arrays.asList(slow.getPath()), failedFiles(metrics));
+        assertTrue(metrics.getFailures().get(0).getMessage().startsWith("Timed out"));
+        assertEquals(2, metrics.getTotals().getFunctionCount());
+        // a timeout depends on the machine, so the file is analyzed again next time
+        assertEquals(
+                0,
+                NcssKnownFailures.load(failureFile, NcssAnalyzer.getJavaNCSSVersion(), null)
+                        .size());
+    }
+
+    @Test
+    public void testTimeoutIsPerFile() throws IOException, MavenReportException {
+        // one chunk of many quick files: the budget of the slow file must not include theirs
+        List<File> sources = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            sources.add(source("Quick" + i, "class Quick" + i + " { void q() {} }"));
+        }
+        File slow = slowSource();
+        sources.add(30, slow);
+
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setFileTimeout(200);
+        NcssMetrics metrics = analyzer.analyze(sources);
+
+        assertEquals(Arrays.asList(slow.getPath()), failedFiles(metrics));
+        assertEquals(60, metrics.getTotals().getFunctionCount());
+    }
+
+    @Test
+    public void testTimeoutWatchesAllTasks() throws IOException, MavenReportException {
+        // the first chunk runs longer than the slow file takes to end, though none of its files is over budget
+        List<File> medium = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            medium.add(nestedSource("Medium" + i, 20));
+        }
+        List<File> slow = Collections.singletonList(slowSource());
+
+        NcssWorkers workers = new NcssWorkers(2);
+        try {
+            List<IsolatedJavancss.Result> results = workers.analyze(Arrays.asList(medium, slow), null, 1300);
+            assertNull(results.get(0).getLastError());
+            assertTrue(results.get(1).getLastError() instanceof TimeoutException);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharedWorkersOutliveAnalyzers() throws MavenReportException {
+        NcssWorkers workers = new NcssWorkers(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                NcssAnalyzer analyzer = new NcssAnalyzer();
+                analyzer.setIsolateParseFailures(true);
+                analyzer.setWorkers(workers);
+                NcssMetrics metrics = analyzer.analyze(files);
+                analyzer.close();
+
+                assertEquals(1, metrics.getFailures().size());
+                assertEquals(4, metrics.getTotals().getFunctionCount());
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static List<String> failedFiles(NcssMetrics metrics) {
+        List<String> paths = new ArrayList<>();
+        for (NcssFailure failure : metrics.getFailures()) {
+            paths.add(failure.getFile());
+        }
+        return paths;
+    }
+
+    private File slowSource() throws IOException {
+        // this takes seconds to parse
+        return nestedSource("Slow", 22);
+    }
+
+    private File nestedSource(String name, int depth) throws IOException {
+        // JavaNCSS looks ahead over nested parentheses in exponential time
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            nested.insert(0, '(').append(')');
+        }
+        return source(name, "class " + name + " { int f() { return " + nested.insert(depth, '1') + "; } }");
+    }
+
+    private File source(String name, String content) throws IOException {
+        File file = folder.newFile(name + ".java");
+        write(file, content);
+        return file;
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,125 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssCache class.
+ */
+public class NcssCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source;
+
+    private File cacheFile;
+
+    @Before
+    public void setUp() throws IOException {
+        source = folder.newFile("Foo.java");
+        write(source, "class Foo {}");
+        cacheFile = new File(folder.getRoot(), "cache.bin");
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        NcssCache cache = new NcssCache("1.0", "UTF-8");
+        cache.put(source, NcssCache.stamp(source), result("Foo.bar()", 3, 2));
+        cache.save(cacheFile);
+
+        NcssMetrics cached = NcssCache.load(cacheFile, "1.0", "UTF-8").get(source);
+        assertNotNull(cached);
+        assertEquals(
+                new NcssFunction("Foo.bar()", 3, 2, 0), cached.getFunctions().get(0));
+        assertEquals(3, cached.getTotals().getFunctionTotal().getNcss());
+    }
+
+    @Test
+    public void testIncompatibleCacheIsEmpty() throws IOException {
+        NcssCache cache = new NcssCache("1.0", "UTF-8");
+        cache.put(source, NcssCache.stamp(source), result("Foo.bar()", 3, 2));
+        cache.save(cacheFile);
+
+        assertEquals(0, NcssCache.load(cacheFile, "2.0", "UTF-8").size());
+        assertEquals(0, NcssCache.load(cacheFile, "1.0", null).size());
+    }
+
+    @Test
+    public void testTouchedFileIsHit() throws IOException {
+        NcssCache cache = new NcssCache("1.0", null);
+        cache.put(source, NcssCache.stamp(source), result("Foo.bar()", 3, 2));
+        assertTrue(source.setLastModified(source.lastModified() - 10000));
+        assertNotNull(cache.get(source));
+    }
+
+    @Test
+    public void testChangedFileIsMiss() throws IOException {
+        NcssCache cache = new NcssCache("1.0", null);
+        cache.put(source, NcssCache.stamp(source), result("Foo.bar()", 3, 2));
+        write(source, "class Foo { void bar() {} }");
+        assertNull(cache.get(source));
+    }
+
+    @Test
+    public void testRetainAllDropsDeletedFiles() throws IOException {
+        File other = folder.newFile("Bar.java");
+        NcssCache cache = new NcssCache("1.0", null);
+        cache.put(source, NcssCache.stamp(source), result("Foo.bar()", 3, 2));
+        cache.put(other, NcssCache.stamp(other), result("Bar.baz()", 1, 1));
+        cache.retainAll(Collections.singletonList(other));
+        assertEquals(1, cache.size());
+        assertNull(cache.get(source));
+        assertNotNull(cache.get(other));
+    }
+
+    @Test
+    public void testSaveOverLoadedCache() throws IOException {
+        File other = folder.newFile("Bar.java");
+        NcssCache cache = new NcssCache("1.0", null);
+        cache.put(source, NcssCache.stamp(source), result("Foo.bar()", 3, 2));
+        cache.save(cacheFile);
+        cache.close();
+
+        try (NcssCache loaded = NcssCache.load(cacheFile, "1.0", null)) {
+            loaded.put(other, NcssCache.stamp(other), result("Bar.baz()", 1, 1));
+            loaded.save(cacheFile);
+            // read back from the written file
+            assertEquals(3, loaded.get(source).getTotals().getFunctionTotal().getNcss());
+        }
+        try (NcssCache loaded = NcssCache.load(cacheFile, "1.0", null)) {
+            assertEquals(2, loaded.size());
+            assertEquals(
+                    new NcssFunction("Foo.bar()", 3, 2, 0),
+                    loaded.get(source).getFunctions().get(0));
+            assertEquals(
+                    new NcssFunction("Bar.baz()", 1, 1, 0),
+                    loaded.get(other).getFunctions().get(0));
+        }
+    }
+
+    @Test
+    public void testCorruptCacheIsEmpty() throws IOException {
+        write(cacheFile, "not a cache");
+        assertEquals(0, NcssCache.load(cacheFile, "1.0", null).size());
+    }
+
+    private static NcssMetrics result(String name, int ncss, int ccn) {
+        return new NcssMetricsBuilder()
+                .addFunction(new NcssFunction(name, ncss, ccn, 0))
+                .build();
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
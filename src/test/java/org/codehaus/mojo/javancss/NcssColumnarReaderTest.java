@@ -0,0 +1,108 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssColumnarReader class, reading back what NcssColumnarWriter wrote.
+ */
+public class NcssColumnarReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File report;
+
+    private NcssMetrics metrics;
+
+    @Before
+    public void setUp() throws IOException {
+        report = folder.newFile("javancss-raw-report.xml");
+        metrics = new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 2, 3, 12, 1, 3, 1, 0))
+                .addPackage(new NcssPackage("org.bär", 1, 1, 2500, 0, 0, 4, 5))
+                .addObject(new NcssObject("org.foo.A<T>", 10, 2, 0, 1, 3, 0, 0))
+                .addObject(new NcssObject("org.bär.B", 2500, 1, 0, 0, 0, 4, 5))
+                .addFunction(new NcssFunction("org.foo.A.run(List<T>)", 8, 3, 1))
+                .addFunction(new NcssFunction("org.bär.B.b()", 2499, 40, 0))
+                .addFunction(new NcssFunction("org.foo.A.run(List<T>)", 1, 1, 0))
+                .addRoot(new NcssRoot("src/main/java", Arrays.asList(new NcssPackage("org.foo", 1, 2, 10, 1, 3, 0, 0))))
+                .addRoot(new NcssRoot("src/test/java", Arrays.asList(new NcssPackage("org.foo", 1, 1, 2, 0, 0, 1, 0))))
+                .addFailure(new NcssFailure("src/Bad.java", "ParseException in src/Bad.java\nEncountered \"->\""))
+                .build();
+        NcssXmlWriter.write(report, metrics);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        NcssColumnarWriter.write(report, metrics);
+        assertEquals(new File(folder.getRoot(), "javancss-raw-report.bin"), NcssColumnarWriter.forReport(report));
+        assertEquals(
+                NcssColumnarWriter.forReport(report),
+                NcssColumnarWriter.forReport(new File(folder.getRoot(), "javancss-raw-report.xml.gz")));
+
+        NcssMetrics read = NcssColumnarReader.open(report).readMetrics();
+        assertEquals(metrics.getPackages(), read.getPackages());
+        assertEquals(metrics.getObjects(), read.getObjects());
+        assertEquals(metrics.getFunctions(), read.getFunctions());
+        assertEquals(metrics.getFailures(), read.getFailures());
+        assertEquals(2, read.getRoots().size());
+        assertEquals("src/test/java", read.getRoots().get(1).getDirectory());
+        assertEquals(
+                metrics.getRoots().get(1).getPackages(), read.getRoots().get(1).getPackages());
+        assertEquals(metrics.getTotals().getNcss(), read.getTotals().getNcss());
+    }
+
+    @Test
+    public void testBlocks() throws IOException {
+        try (NcssColumnarWriter writer = new NcssColumnarWriter(NcssColumnarWriter.forReport(report))) {
+            writer.handle(new NcssMetricsBuilder()
+                    .addObject(metrics.getObjects().get(0))
+                    .addFunction(metrics.getFunctions().get(0))
+                    .build());
+            writer.handle(new NcssMetricsBuilder().build());
+            writer.handle(new NcssMetricsBuilder()
+                    .addObject(metrics.getObjects().get(1))
+                    .addFunction(metrics.getFunctions().get(1))
+                    .addFunction(metrics.getFunctions().get(2))
+                    .build());
+            writer.finish(metrics, report);
+        }
+
+        NcssColumnarReader reader = NcssColumnarReader.open(report);
+        assertEquals(metrics.getFunctions(), reader.readFunctions());
+        assertEquals(metrics.getObjects(), reader.readMetrics().getObjects());
+    }
+
+    @Test
+    public void testStaleSidecarIsIgnored() throws IOException {
+        NcssColumnarWriter.write(report, metrics);
+        NcssXmlWriter.write(report, new NcssMetricsBuilder().build());
+        assertTrue(report.setLastModified(report.lastModified() + 5000));
+        assertNull(NcssColumnarReader.open(report));
+    }
+
+    @Test
+    public void testMissingSidecar() throws IOException {
+        assertNull(NcssColumnarReader.open(report));
+    }
+
+    @Test
+    public void testTruncatedSidecarIsIgnored() throws IOException {
+        NcssColumnarWriter.write(report, metrics);
+        File sidecar = NcssColumnarWriter.forReport(report);
+        try (FileChannel channel = FileChannel.open(sidecar.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        assertNull(NcssColumnarReader.open(report));
+    }
+}
@@ -0,0 +1,197 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.reporting.MavenReportException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssDaemon and NcssDaemonClient classes, with the daemon running in a thread of the test.
+ */
+public class NcssDaemonTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File directory;
+
+    private List<File> files;
+
+    private Thread daemon;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("daemon");
+        files = new ArrayList<>();
+        files.add(source("A", "package a; class A { /** doc */ void a() { if (true) {} } }"));
+        files.add(source("B", "package b; class B { void b() {} void c() {} }"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (daemon != null && daemon.isAlive()) {
+            new NcssDaemonClient(directory, 0).stop();
+            daemon.join(10000);
+        }
+    }
+
+    @Test
+    public void testAnalysisInDaemon() throws Exception {
+        startDaemon(60000);
+        NcssDaemonClient client = new NcssDaemonClient(directory, 60000);
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setBatchSize(1);
+        final List<NcssMetrics> batches = new ArrayList<>();
+        client.analyze(analyzer, files, new NcssMetricsHandler() {
+            @Override
+            public void handle(NcssMetrics batch) {
+                batches.add(batch);
+            }
+        });
+        assertTrue(client.isUsed());
+        assertEquals(2, batches.size());
+
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (NcssMetrics batch : batches) {
+            builder.addAll(batch);
+        }
+        NcssMetrics local = new NcssAnalyzer().analyze(files);
+        NcssMetrics remote = builder.build();
+        assertEquals(local.getPackages(), remote.getPackages());
+        assertEquals(local.getObjects(), remote.getObjects());
+        assertEquals(local.getFunctions(), remote.getFunctions());
+
+        client.stop();
+        daemon.join(10000);
+        assertFalse(daemon.isAlive());
+        assertFalse(new File(directory, NcssDaemon.STATE_FILE_NAME).exists());
+    }
+
+    @Test
+    public void testParseFailureInDaemon() throws Exception {
+        startDaemon(60000);
+        files.add(source("Bad", "class Bad { Runnable r = () -> {}; }"));
+        NcssDaemonClient client = new NcssDaemonClient(directory, 60000);
+        try {
+            client.analyze(new NcssAnalyzer(), files, new NcssSummaryCollector(10));
+            fail("parse error expected");
+        } catch (MavenReportException mre) {
+            assertTrue(mre.getMessage(), mre.getMessage().startsWith("Parsing error"));
+        }
+
+        NcssAnalyzer analyzer = new NcssAnalyzer();
+        analyzer.setIsolateParseFailures(true);
+        NcssSummaryCollector summary = new NcssSummaryCollector(10);
+        client.analyze(analyzer, files, summary);
+        assertEquals(1, summary.getMetrics().getFailures().size());
+        assertEquals(3, summary.getMetrics().getTotals().getFunctionCount());
+    }
+
+    @Test
+    public void testConnectionsAreServedConcurrently() throws Exception {
+        startDaemon(60000);
+        File stateFile = new File(directory, NcssDaemon.STATE_FILE_NAME);
+        Properties state = NcssDaemonClient.readState(stateFile);
+        // a build that connected but did not send its request yet
+        try (Socket idle = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(state.getProperty("port")))) {
+            NcssDaemonClient client = new NcssDaemonClient(directory, 60000);
+            NcssSummaryCollector summary = new NcssSummaryCollector(10);
+            long start = System.currentTimeMillis();
+            client.analyze(new NcssAnalyzer(), files, summary);
+            assertTrue(client.isUsed());
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertEquals(3, summary.getMetrics().getTotals().getFunctionCount());
+            assertEquals(
+                    state.getProperty("token"),
+                    NcssDaemonClient.readState(stateFile).getProperty("token"));
+        }
+    }
+
+    @Test
+    public void testParallelBuildsShareTheDaemon() throws Exception {
+        startDaemon(60000);
+        File stateFile = new File(directory, NcssDaemon.STATE_FILE_NAME);
+        String token = NcssDaemonClient.readState(stateFile).getProperty("token");
+        ExecutorService builds = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> used = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                used.add(builds.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        NcssDaemonClient client = new NcssDaemonClient(directory, 60000);
+                        NcssSummaryCollector summary = new NcssSummaryCollector(10);
+                        client.analyze(new NcssAnalyzer(), files, summary);
+                        assertEquals(3, summary.getMetrics().getTotals().getFunctionCount());
+                        return client.isUsed();
+                    }
+                }));
+            }
+            for (Future<Boolean> build : used) {
+                assertTrue(build.get());
+            }
+        } finally {
+            builds.shutdown();
+        }
+        assertEquals(token, NcssDaemonClient.readState(stateFile).getProperty("token"));
+    }
+
+    @Test
+    public void testStateNamesThePluginBuild() throws Exception {
+        startDaemon(60000);
+        Properties state = NcssDaemonClient.readState(new File(directory, NcssDaemon.STATE_FILE_NAME));
+        assertEquals(NcssAnalyzer.getJavaNCSSVersion(), state.getProperty("version"));
+        assertEquals(NcssDaemon.getPluginBuild(), state.getProperty("plugin"));
+    }
+
+    @Test
+    public void testIdleDaemonExits() throws Exception {
+        startDaemon(200);
+        daemon.join(10000);
+        assertFalse(daemon.isAlive());
+        assertFalse(new File(directory, NcssDaemon.STATE_FILE_NAME).exists());
+    }
+
+    private void startDaemon(final long idleTimeout) throws InterruptedException {
+        final NcssDaemon server = new NcssDaemon(directory, idleTimeout);
+        daemon = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.run();
+                } catch (IOException ioe) {
+                    throw new IllegalStateException(ioe);
+                }
+            }
+        };
+        daemon.setDaemon(true);
+        daemon.start();
+        File stateFile = new File(directory, NcssDaemon.STATE_FILE_NAME);
+        for (int i = 0; i < 200 && !stateFile.isFile() && daemon.isAlive(); i++) {
+            Thread.sleep(50);
+        }
+    }
+
+    private File source(String name, String content) throws IOException {
+        File file = folder.newFile(name + ".java");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,119 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssDistributions class.
+ */
+public class NcssDistributionsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPerPackage() {
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 1, 2, 10, 0, 0, 0, 0))
+                .addPackage(new NcssPackage("org.foo.bar", 1, 1, 20, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.foo.A", 10, 2, 0, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.foo.bar.B", 20, 1, 0, 0, 0, 0, 0))
+                .addFunction(new NcssFunction("org.foo.A.a(java.lang.String)", 3, 1, 0))
+                .addFunction(new NcssFunction("org.foo.A.b()", 5, 4, 0))
+                .addFunction(new NcssFunction("org.foo.bar.B.c()", 17, 9, 0))
+                .addFunction(new NcssFunction("org.other.C.d()", 7, 2, 0))
+                .build();
+
+        NcssDistributions distributions = metrics.getDistributions();
+        assertSame(distributions, metrics.getDistributions());
+        List<NcssDistribution> packages = distributions.getPackages();
+        assertEquals(2, packages.size());
+        NcssDistribution foo = packages.get(0);
+        assertEquals("org.foo", foo.getName());
+        assertEquals(2, foo.getFunctionCcn().getCount());
+        assertEquals(4, foo.getFunctionCcn().getMax());
+        assertEquals(3, foo.getFunctionNcss().getPercentile(50));
+        assertEquals(10, foo.getObjectNcss().getMax());
+        NcssDistribution bar = packages.get(1);
+        assertEquals("org.foo.bar", bar.getName());
+        assertEquals(1, bar.getFunctionCcn().getCount());
+        assertEquals(9, bar.getFunctionCcn().getPercentile(99));
+        assertEquals(20, bar.getObjectNcss().getPercentile(50));
+
+        NcssDistribution total = distributions.getTotal();
+        assertNull(total.getName());
+        assertEquals(4, total.getFunctionCcn().getCount());
+        assertEquals(2, total.getObjectNcss().getCount());
+        assertEquals(17, total.getFunctionNcss().getMax());
+        assertEquals(5, total.getFunctionNcss().getPercentile(50));
+    }
+
+    @Test
+    public void testAnalyzedSources() throws Exception {
+        List<File> files = Arrays.asList(
+                source("A", "class A { void a() { if (true) {} } }"),
+                source("B", "package p; class B { void b() {} void c() {} }"));
+        NcssMetrics metrics = new NcssAnalyzer().analyze(files);
+
+        NcssDistributions distributions = metrics.getDistributions();
+        int functions = 0;
+        for (NcssDistribution distribution : distributions.getPackages()) {
+            functions += (int) distribution.getFunctionCcn().getCount();
+        }
+        assertEquals(3, functions);
+        assertEquals(3, distributions.getTotal().getFunctionCcn().getCount());
+        assertEquals(2, distributions.getTotal().getFunctionCcn().getMax());
+    }
+
+    @Test
+    public void testBatchesMergedLikeTheWhole() {
+        NcssMetricsBuilder whole = new NcssMetricsBuilder();
+        NcssSummaryCollector collector = new NcssSummaryCollector(1);
+        for (int batch = 0; batch < 3; batch++) {
+            NcssMetricsBuilder builder =
+                    new NcssMetricsBuilder().addPackage(new NcssPackage("p" + batch % 2, 1, 1, 1, 0, 0, 0, 0));
+            for (int i = 0; i < 50; i++) {
+                builder.addFunction(new NcssFunction("p" + batch % 2 + ".C.f" + i + "()", i * batch, i % 9, 0));
+            }
+            NcssMetrics metrics = builder.build();
+            collector.handle(metrics);
+            whole.addAll(metrics);
+        }
+        NcssDistributions expected = whole.build().getDistributions();
+        NcssDistributions merged = collector.getMetrics().getDistributions();
+
+        assertEquals(2, merged.getPackages().size());
+        for (int i = 0; i < 2; i++) {
+            assertHistogramEquals(
+                    expected.getPackages().get(i).getFunctionNcss(),
+                    merged.getPackages().get(i).getFunctionNcss());
+        }
+        assertHistogramEquals(
+                expected.getTotal().getFunctionCcn(), merged.getTotal().getFunctionCcn());
+        assertHistogramEquals(
+                expected.getTotal().getFunctionNcss(), merged.getTotal().getFunctionNcss());
+    }
+
+    private static void assertHistogramEquals(NcssHistogram expected, NcssHistogram actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getMax(), actual.getMax());
+        for (int percent : new int[] {1, 25, 50, 75, 90, 99, 100}) {
+            assertEquals(expected.getPercentile(percent), actual.getPercentile(percent));
+        }
+    }
+
+    private File source(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name + ".java");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,145 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.reporting.MavenReportException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssExecuter class.
+ */
+public class NcssExecuterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Map<String, String[]> roots;
+
+    @Before
+    public void setUp() throws IOException {
+        roots = new LinkedHashMap<>();
+        roots.put("main", new String[] {
+            source("main/org/foo/A.java", "package org.foo; class A { void a() {} void b() {} }"),
+            source("main/org/foo/B.java", "package org.foo; class B { void b() {} }")
+        });
+        roots.put("generated", new String[] {
+            source("generated/org/foo/Gen.java", "package org.foo; class Gen { void gen() { if (true) {} } }")
+        });
+    }
+
+    @Test
+    public void testSourceRoots() throws IOException, MavenReportException {
+        File output = new File(folder.getRoot(), "javancss-raw-report.xml");
+        NcssExecuter executer = new NcssExecuter(roots, output.getPath());
+        executer.setThreads(2);
+        NcssMetrics metrics = executer.execute();
+
+        assertEquals(2, metrics.getRoots().size());
+        assertEquals("main", metrics.getRoots().get(0).getDirectory());
+        assertEquals(2, metrics.getRoots().get(0).getTotal().getClasses());
+        assertEquals("generated", metrics.getRoots().get(1).getDirectory());
+        assertEquals(1, metrics.getRoots().get(1).getTotal().getFunctions());
+        // the combined metrics merge the packages of all roots
+        assertEquals(1, metrics.getPackages().size());
+        assertEquals(3, metrics.getTotals().getPackageTotal().getClasses());
+        assertEquals(4, metrics.getTotals().getFunctionCount());
+
+        assertEquals(2, NcssXmlReader.read(output).getRoots().size());
+    }
+
+    @Test
+    public void testSourceRootsInBatches() throws MavenReportException {
+        NcssExecuter executer = new NcssExecuter(roots, null);
+        executer.setBatchSize(1);
+        NcssMetrics metrics = executer.execute();
+
+        assertEquals(2, metrics.getRoots().size());
+        assertEquals(2, metrics.getRoots().get(0).getTotal().getClasses());
+        assertEquals(4, metrics.getTotals().getFunctionCount());
+    }
+
+    @Test
+    public void testColumnarReportInBatches() throws Exception {
+        File report = new File(folder.getRoot(), "javancss-raw-report.xml");
+        NcssExecuter executer = new NcssExecuter(roots, report.getPath());
+        executer.setBatchSize(1);
+        executer.execute();
+
+        NcssMetrics xml = NcssXmlReader.read(report);
+        NcssColumnarReader columns = NcssColumnarReader.open(report);
+        assertNotNull(columns);
+        assertEquals(xml.getFunctions(), columns.readFunctions());
+        NcssMetrics read = columns.readMetrics();
+        assertEquals(xml.getPackages(), read.getPackages());
+        assertEquals(xml.getObjects(), read.getObjects());
+        assertEquals(2, read.getRoots().size());
+    }
+
+    @Test
+    public void testRendersWhileWritingInBatches() throws Exception {
+        File report = new File(folder.getRoot(), "javancss-raw-report.xml");
+        NcssExecuter executer = new NcssExecuter(roots, report.getPath());
+        executer.setBatchSize(1);
+        final List<NcssMetrics> rendered = new ArrayList<>();
+        NcssMetrics metrics = executer.execute(new NcssMetricsHandler() {
+            @Override
+            public void handle(NcssMetrics batch) {
+                rendered.add(batch);
+            }
+        });
+
+        assertEquals(1, rendered.size());
+        assertSame(metrics, rendered.get(0));
+        // the raw report is complete once the execution returns
+        assertEquals(4, NcssXmlReader.read(report).getTotals().getFunctionCount());
+    }
+
+    @Test
+    public void testExportsAllRowsInBatches() throws Exception {
+        File export = folder.newFolder("export");
+        NcssExecuter executer = new NcssExecuter(roots, null);
+        executer.setBatchSize(1);
+        executer.setLineThreshold(1);
+        executer.setExportFormats(Collections.singletonList(NcssExporter.CSV));
+        executer.setExportDirectory(export);
+        NcssMetrics metrics = executer.execute();
+
+        assertEquals(1, metrics.getFunctions().size());
+        // header and every function, not only the kept ones
+        List<String> lines =
+                Files.readAllLines(NcssCsvExporter.getFile(export, "functions").toPath(), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertEquals(
+                4,
+                Files.readAllLines(NcssCsvExporter.getFile(export, "totals").toPath(), StandardCharsets.UTF_8)
+                        .size());
+    }
+
+    @Test
+    public void testSingleRootHasNoRootSection() throws MavenReportException {
+        roots.remove("generated");
+        NcssMetrics metrics = new NcssExecuter(roots, null).execute();
+
+        assertTrue(metrics.getRoots().isEmpty());
+        assertEquals(3, metrics.getTotals().getFunctionCount());
+    }
+
+    private String source(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file.getPath();
+    }
+}
@@ -0,0 +1,102 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssExporter class.
+ */
+public class NcssExporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static NcssMetrics metrics() {
+        return new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 1, 2, 10, 1, 3, 0, 0))
+                .addObject(new NcssObject("org.foo.A", 10, 2, 0, 1, 3, 0, 0))
+                .addFunction(new NcssFunction("org.foo.A.a(int,\"x\")", 4, 2, 1))
+                .addFunction(new NcssFunction("org.foo.A.b()", 5, 1, 0))
+                .addFailure(new NcssFailure("Broken.java", "Encountered \"}\""))
+                .build();
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        File directory = folder.getRoot();
+        try (NcssExporter exporter = NcssExporter.open(Collections.singletonList(NcssExporter.JSONL), directory)) {
+            exporter.export(metrics());
+        }
+        List<String> lines = read(new File(directory, NcssJsonLinesExporter.FILE_NAME));
+        assertEquals(
+                Arrays.asList(
+                        "{\"type\":\"object\",\"name\":\"org.foo.A\",\"ncss\":10,\"functions\":2,\"classes\":0,"
+                                + "\"javadocs\":1,\"javadocs_lines\":3,\"single_comment_lines\":0,"
+                                + "\"implementation_comment_lines\":0}",
+                        "{\"type\":\"function\",\"name\":\"org.foo.A.a(int,\\\"x\\\")\",\"ncss\":4,\"ccn\":2,"
+                                + "\"javadocs\":1}",
+                        "{\"type\":\"function\",\"name\":\"org.foo.A.b()\",\"ncss\":5,\"ccn\":1,\"javadocs\":0}",
+                        "{\"type\":\"package\",\"name\":\"org.foo\",\"classes\":1,\"functions\":2,\"ncss\":10,"
+                                + "\"javadocs\":1,\"javadoc_lines\":3,\"single_comment_lines\":0,"
+                                + "\"multi_comment_lines\":0}",
+                        "{\"type\":\"totals\",\"packages\":1,\"classes\":1,\"functions\":2,\"ncss\":10,"
+                                + "\"javadocs\":1,\"javadoc_lines\":3,\"single_comment_lines\":0,"
+                                + "\"multi_comment_lines\":0}",
+                        "{\"type\":\"failure\",\"file\":\"Broken.java\",\"message\":\"Encountered \\\"}\\\"\"}"),
+                lines);
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        File directory = new File(folder.getRoot(), "export");
+        NcssMetrics metrics = metrics();
+        try (NcssExporter exporter = NcssExporter.open(Arrays.asList("CSV", "csv"), directory)) {
+            exporter.handle(metrics);
+            exporter.finish(metrics);
+        }
+        assertEquals(
+                Arrays.asList("name,ncss,ccn,javadocs", "\"org.foo.A.a(int,\"\"x\"\")\",4,2,1", "org.foo.A.b(),5,1,0"),
+                read(NcssCsvExporter.getFile(directory, "functions")));
+        assertEquals(2, read(NcssCsvExporter.getFile(directory, "objects")).size());
+        assertEquals(
+                Arrays.asList(
+                        "name,classes,functions,ncss,javadocs,javadoc_lines,single_comment_lines,multi_comment_lines",
+                        "org.foo,1,2,10,1,3,0,0"),
+                read(NcssCsvExporter.getFile(directory, "packages")));
+        assertEquals(
+                Arrays.asList(
+                        "root,packages,classes,functions,ncss,javadocs,javadoc_lines,single_comment_lines,"
+                                + "multi_comment_lines",
+                        ",1,1,2,10,1,3,0,0"),
+                read(NcssCsvExporter.getFile(directory, "totals")));
+        assertEquals(
+                Arrays.asList("file,message", "Broken.java,\"Encountered \"\"}\"\"\""),
+                read(NcssCsvExporter.getFile(directory, "failures")));
+    }
+
+    @Test
+    public void testFormats() throws IOException {
+        assertNull(NcssExporter.open(Collections.<String>emptyList(), folder.getRoot()));
+        assertEquals(Arrays.asList("jsonl", "csv"), NcssExporter.checkFormats(Arrays.asList(" JSONL", "csv", "jsonl")));
+        try {
+            NcssExporter.checkFormats(Collections.singletonList("xml"));
+            fail();
+        } catch (IllegalArgumentException iae) {
+            assertTrue(iae.getMessage().contains("'xml'"));
+        }
+    }
+
+    private static List<String> read(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
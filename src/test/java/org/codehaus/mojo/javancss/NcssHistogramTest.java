@@ -0,0 +1,67 @@
+package org.codehaus.mojo.javancss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssHistogram class.
+ */
+public class NcssHistogramTest {
+    @Test
+    public void testBuckets() {
+        assertEquals(31, NcssHistogram.bucket(31));
+        assertEquals(32, NcssHistogram.bucket(32));
+        assertEquals(32, NcssHistogram.bucket(33));
+        assertEquals(33, NcssHistogram.bucket(34));
+        assertEquals(NcssHistogram.BUCKETS - 1, NcssHistogram.bucket(Integer.MAX_VALUE));
+        assertEquals(Integer.MAX_VALUE, NcssHistogram.upperBound(NcssHistogram.BUCKETS - 1));
+        for (int value : new int[] {0, 1, 31, 32, 33, 47, 64, 100, 1000, 65535, 1 << 20, Integer.MAX_VALUE}) {
+            int upper = NcssHistogram.upperBound(NcssHistogram.bucket(value));
+            assertTrue(value + " <= " + upper, value <= upper);
+            assertTrue(value + " ~ " + upper, upper - value <= value / 16);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        NcssHistogram histogram = new NcssHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 100; i++) {
+            histogram.add(i % 10 + 1);
+        }
+        histogram.add(-3);
+        histogram.add(500);
+        assertEquals(102, histogram.getCount());
+        assertEquals(5, histogram.getPercentile(50));
+        assertEquals(10, histogram.getPercentile(90));
+        assertEquals(10, histogram.getPercentile(99));
+        assertEquals(500, histogram.getPercentile(100));
+        assertEquals(0, histogram.getPercentile(0));
+        assertEquals(500, histogram.getMax());
+    }
+
+    @Test
+    public void testPercentileRoundedUpToMax() {
+        NcssHistogram histogram = new NcssHistogram();
+        histogram.add(100);
+        histogram.add(1000);
+        // 100 is in the bucket 96..103, 1000 in 960..1023
+        assertEquals(103, histogram.getPercentile(50));
+        assertEquals(1000, histogram.getPercentile(99));
+    }
+
+    @Test
+    public void testAddAll() {
+        NcssHistogram small = new NcssHistogram();
+        small.add(1);
+        small.add(2);
+        NcssHistogram large = new NcssHistogram();
+        large.add(200);
+        small.addAll(large);
+        assertEquals(3, small.getCount());
+        assertEquals(200, small.getMax());
+        assertEquals(2, small.getPercentile(50));
+        assertEquals(200, small.getPercentile(90));
+    }
+}
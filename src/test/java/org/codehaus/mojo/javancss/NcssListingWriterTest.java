@@ -0,0 +1,59 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssListingWriter class.
+ */
+public class NcssListingWriterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testWritesPages() throws IOException {
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addFunction(new NcssFunction("a.A.x()", 1, 9, 0))
+                .addFunction(new NcssFunction("a.A.y(\"</script>)", 5, 1, 0))
+                .addFunction(new NcssFunction("a.A.z()", 3, 2, 1))
+                .build();
+        NcssListingWriter.write(folder.getRoot(), metrics, 2);
+
+        File listing = new File(folder.getRoot(), NcssListingWriter.DIRECTORY);
+        assertTrue(new File(listing, NcssListingWriter.SCRIPT).isFile());
+        assertEquals(
+                "javancssListingPage({\"table\":\"functions\",\"sort\":\"ncss\",\"page\":0,\"pages\":2,\"total\":3,"
+                        + "\"rows\":[\n[\"a.A.y(\\\"\\u003c/script>)\",5,1,0],\n[\"a.A.z()\",3,2,1]]});\n",
+                read(listing, NcssListingWriter.pageName("functions", "ncss", 0)));
+        assertTrue(
+                read(listing, NcssListingWriter.pageName("functions", "ccn", 0)).contains("[\n[\"a.A.x()\",1,9,0]"));
+        assertTrue(read(listing, NcssListingWriter.pageName("functions", "name", 1))
+                .contains("a.A.z()"));
+        // no objects, but an empty first page all the same
+        assertTrue(read(listing, NcssListingWriter.pageName("objects", "functions", 0))
+                .contains("\"rows\":[]"));
+        assertFalse(new File(listing, NcssListingWriter.pageName("functions", "ncss", 2)).exists());
+    }
+
+    @Test
+    public void testReplacesOldPages() throws IOException {
+        File listing = new File(folder.getRoot(), NcssListingWriter.DIRECTORY);
+        assertTrue(listing.mkdirs());
+        File stale = new File(listing, NcssListingWriter.pageName("functions", "ncss", 7));
+        assertTrue(stale.createNewFile());
+        NcssListingWriter.write(folder.getRoot(), new NcssMetricsBuilder().build(), 10);
+        assertFalse(stale.exists());
+    }
+
+    private static String read(File directory, String name) throws IOException {
+        return new String(Files.readAllBytes(new File(directory, name).toPath()), StandardCharsets.UTF_8);
+    }
+}
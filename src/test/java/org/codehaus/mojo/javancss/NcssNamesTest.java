@@ -0,0 +1,85 @@
+package org.codehaus.mojo.javancss;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssNames class.
+ */
+public class NcssNamesTest {
+    @Test
+    public void testSharesPrefixes() {
+        NcssNames names = new NcssNames();
+        int a = names.add("com.acme.Foo.a(java.lang.String,int)");
+        int b = names.add("com.acme.Foo.b()");
+        int foo = names.add("com.acme.Foo");
+        assertEquals("com.acme.Foo.a(java.lang.String,int)", names.get(a));
+        assertEquals("com.acme.Foo.b()", names.get(b));
+        assertEquals(foo, names.getParent(a));
+        assertEquals(foo, names.getParent(b));
+        assertEquals("Foo", names.getSegment(foo));
+        assertEquals("a(java.lang.String,int)", names.getSegment(a));
+        // root, com, acme, Foo, a(...), b()
+        assertEquals(6, names.size());
+        assertEquals(a, names.add("com.acme.Foo.a(java.lang.String,int)"));
+    }
+
+    @Test
+    public void testOddNames() {
+        NcssNames names = new NcssNames();
+        assertEquals(-1, names.add(null));
+        assertNull(names.get(-1));
+        for (String name : new String[] {"", ".", ".a", "a.", "a..b", "Foo", "x.y(a.b).z"}) {
+            assertEquals(name, names.get(names.add(name)));
+        }
+    }
+
+    @Test
+    public void testManyNames() {
+        NcssNames names = new NcssNames();
+        int[] ids = new int[5000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = names.add("p" + (i % 7) + ".C" + (i % 50) + ".m" + i + "()");
+        }
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals("p" + (i % 7) + ".C" + (i % 50) + ".m" + i + "()", names.get(ids[i]));
+        }
+        NcssNames copy = new NcssNames(names);
+        assertEquals(ids[42], copy.add("p0.C42.m42()"));
+        assertEquals(names.size() + 1, copy.add("p0.C42.n()") + 1);
+    }
+
+    @Test
+    public void testRollup() {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        builder.addFunction(new NcssFunction("a.Foo.x()", 3, 1, 0));
+        builder.addFunction(new NcssFunction("a.Foo.y()", 4, 1, 0));
+        builder.addFunction(new NcssFunction("a.Bar.z()", 5, 1, 0));
+        builder.addFunction(new NcssFunction("b.Baz.z()", 6, 1, 0));
+        NcssFunctionRows rows = builder.build().getFunctions();
+        long[] totals = rows.rollup(NcssFunctionRows.NCSS);
+        NcssNames names = rows.getNames();
+        assertEquals(7, totals[names.getParent(rows.getNameId(0))]);
+        assertEquals(12, totals[names.getParent(names.getParent(rows.getNameId(0)))]);
+        assertEquals(18, totals[NcssNames.ROOT]);
+    }
+
+    @Test
+    public void testAppendAllTranslatesIds() {
+        NcssMetrics first = new NcssMetricsBuilder()
+                .addFunction(new NcssFunction("b.Y.f()", 1, 1, 0))
+                .build();
+        NcssMetrics second = new NcssMetricsBuilder()
+                .addFunction(new NcssFunction("a.X.g()", 2, 1, 0))
+                .addFunction(new NcssFunction("b.Y.h()", 3, 1, 0))
+                .build();
+        NcssFunctionRows rows =
+                new NcssMetricsBuilder().addAll(first).addAll(second).build().getFunctions();
+        assertEquals("b.Y.f()", rows.getName(0));
+        assertEquals("a.X.g()", rows.getName(1));
+        assertEquals("b.Y.h()", rows.getName(2));
+        assertEquals(
+                rows.getNames().getParent(rows.getNameId(0)), rows.getNames().getParent(rows.getNameId(2)));
+    }
+}
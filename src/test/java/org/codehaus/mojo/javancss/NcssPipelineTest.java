@@ -0,0 +1,63 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssPipeline class.
+ */
+public class NcssPipelineTest {
+    private static NcssMetrics batch(String function) {
+        return new NcssMetricsBuilder()
+                .addFunction(new NcssFunction(function, 1, 1, 0))
+                .build();
+    }
+
+    @Test
+    public void testHandlesBatchesInOrder() throws IOException {
+        final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+        NcssPipeline pipeline = new NcssPipeline(
+                new NcssMetricsHandler() {
+                    @Override
+                    public void handle(NcssMetrics batch) {
+                        handled.add(batch.getFunctions().getName(0));
+                    }
+                },
+                1);
+        for (int i = 0; i < 50; i++) {
+            pipeline.handle(batch("f" + i + "()"));
+        }
+        pipeline.close();
+        assertEquals(50, handled.size());
+        assertEquals("f0()", handled.get(0));
+        assertEquals("f49()", handled.get(49));
+    }
+
+    @Test
+    public void testThrowsFailureOfHandler() {
+        NcssPipeline pipeline = new NcssPipeline(
+                new NcssMetricsHandler() {
+                    @Override
+                    public void handle(NcssMetrics batch) throws IOException {
+                        throw new IOException("disk full");
+                    }
+                },
+                1);
+        try {
+            // the producer must not block on a queue nobody takes from anymore
+            for (int i = 0; i < 10; i++) {
+                pipeline.handle(batch("f()"));
+            }
+            pipeline.close();
+            fail();
+        } catch (IOException ioe) {
+            assertEquals("disk full", ioe.getMessage());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.codehaus.mojo.javancss;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssRanking class.
+ */
+public class NcssRankingTest {
+    @Test
+    public void testParse() {
+        NcssRanking ranking = NcssRanking.parse(" function : ccn ");
+        assertTrue(ranking.isFunction());
+        assertEquals(NcssFunctionRows.CCN, ranking.getColumn());
+        assertEquals("function:ccn", ranking.toString());
+        assertEquals(
+                NcssObjectRows.MULTI_COMMENT_LINES,
+                NcssRanking.parse("object:implementation_comment_lines").getColumn());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownMetric() {
+        NcssRanking.parse("function:classes");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownKind() {
+        NcssRanking.parse("package:ncss");
+    }
+
+    @Test
+    public void testParseList() {
+        assertSame(NcssRanking.DEFAULTS, NcssRanking.parse((String[]) null));
+        assertSame(NcssRanking.DEFAULTS, NcssRanking.parse(new String[0]));
+        List<NcssRanking> rankings =
+                NcssRanking.parse(new String[] {"function:ccn", "object:ncss", "function:ncss", "function:ccn"});
+        assertEquals(3, rankings.size());
+        assertArrayEquals(new int[] {NcssFunctionRows.CCN, NcssFunctionRows.NCSS}, NcssRanking.columns(rankings, true));
+        assertArrayEquals(new int[] {NcssObjectRows.NCSS}, NcssRanking.columns(rankings, false));
+        assertEquals(
+                Arrays.asList("object:ncss", "object:functions", "function:ncss"),
+                Arrays.asList(
+                        NcssRanking.DEFAULTS.get(0).toString(),
+                        NcssRanking.DEFAULTS.get(1).toString(),
+                        NcssRanking.DEFAULTS.get(2).toString()));
+    }
+}
@@ -0,0 +1,40 @@
+package org.codehaus.mojo.javancss;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssReportGenerator class.
+ */
+public class NcssReportGeneratorTest {
+    @Test
+    public void testSectionsComputedConcurrently() {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.small", 1, 1, 5, 0, 0, 0, 0))
+                .addPackage(new NcssPackage("org.big", 2, 3, 50, 1, 3, 1, 0));
+        for (int i = 0; i < 200; i++) {
+            builder.addObject(new NcssObject("org.big.C" + i, i % 17, i % 5, 0, 0, 0, 0, 0));
+            builder.addFunction(new NcssFunction("org.big.C" + i + ".f()", i % 13, i % 7, 0));
+        }
+        NcssMetrics metrics = builder.build();
+        List<NcssRanking> rankings =
+                NcssRanking.parse(new String[] {"object:ncss", "function:ccn", "object:functions", "function:ncss"});
+
+        NcssReportGenerator.Sections sequential =
+                NcssReportGenerator.Sections.compute(metrics, rankings, 10, Integer.MAX_VALUE);
+        NcssReportGenerator.Sections concurrent = NcssReportGenerator.Sections.compute(metrics, rankings, 10, 0);
+
+        assertEquals("org.big", sequential.packages.get(0).getName());
+        assertEquals(2, sequential.objects.length);
+        assertEquals(2, sequential.functions.length);
+        assertEquals(10, sequential.functions[0].length);
+        assertEquals(6, metrics.getFunctions().getValue(NcssFunctionRows.CCN, sequential.functions[0][0]));
+        assertEquals(sequential.packages, concurrent.packages);
+        assertTrue(Arrays.deepEquals(sequential.objects, concurrent.objects));
+        assertTrue(Arrays.deepEquals(sequential.functions, concurrent.functions));
+    }
+}
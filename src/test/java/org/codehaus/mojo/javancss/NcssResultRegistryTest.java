@@ -0,0 +1,42 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystemSession;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssResultRegistry class.
+ */
+public class NcssResultRegistryTest {
+    private final File report = new File("target/javancss-raw-report.xml");
+
+    @Test
+    public void testOneRegistryPerSession() {
+        RepositorySystemSession session = newSession();
+        assertSame(NcssResultRegistry.forSession(session), NcssResultRegistry.forSession(session));
+        assertNotSame(NcssResultRegistry.forSession(session), NcssResultRegistry.forSession(newSession()));
+    }
+
+    @Test
+    public void testConsume() {
+        NcssResultRegistry registry = NcssResultRegistry.forSession(newSession());
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addFunction(new NcssFunction("A.a()", 1, 1, 0))
+                .build();
+        registry.publish("org.foo:a:jar:1.0", report, metrics);
+
+        assertNull(registry.consume("org.foo:b:jar:1.0", report));
+        assertNull(registry.consume("org.foo:a:jar:1.0", new File("target/other.xml")));
+        assertSame(metrics, registry.consume("org.foo:a:jar:1.0", report));
+        assertNull(registry.consume("org.foo:a:jar:1.0", report));
+    }
+
+    @SuppressWarnings("deprecation")
+    private static RepositorySystemSession newSession() {
+        return new DefaultRepositorySystemSession();
+    }
+}
@@ -0,0 +1,125 @@
+package org.codehaus.mojo.javancss;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssRows class.
+ */
+public class NcssRowsTest {
+    private static NcssFunctionRows functions(int... ncss) {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (int i = 0; i < ncss.length; i++) {
+            builder.addFunction(new NcssFunction("f" + i + "()", ncss[i], i, 0));
+        }
+        return builder.build().getFunctions();
+    }
+
+    @Test
+    public void testRows() {
+        NcssFunctionRows rows = functions(3, 5);
+        assertEquals(2, rows.size());
+        assertEquals(new NcssFunction("f1()", 5, 1, 0), rows.get(1));
+        assertEquals("f0()", rows.getName(0));
+        assertEquals(5, rows.getValue(NcssFunctionRows.NCSS, 1));
+        assertEquals(8, rows.sum(NcssFunctionRows.NCSS));
+        assertEquals(Arrays.asList(new NcssFunction("f0()", 3, 0, 0), new NcssFunction("f1()", 5, 1, 0)), rows);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testReadOnly() {
+        functions(1).add(new NcssFunction("g()", 1, 1, 0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfRange() {
+        functions(1).get(1);
+    }
+
+    @Test
+    public void testTopKeepsOrderOfEqualValues() {
+        NcssFunctionRows rows = functions(2, 7, 4, 7, 1, 4, 9);
+        assertArrayEquals(new int[] {6, 1, 3, 2}, rows.top(NcssFunctionRows.NCSS, 4));
+        assertArrayEquals(new int[] {6, 1, 3, 2, 5, 0, 4}, rows.top(NcssFunctionRows.NCSS, 100));
+        assertArrayEquals(new int[0], rows.top(NcssFunctionRows.NCSS, 0));
+        assertArrayEquals(new int[0], functions().top(NcssFunctionRows.NCSS, 10));
+    }
+
+    @Test
+    public void testTopMatchesStableSort() {
+        int[] ncss = new int[1000];
+        for (int i = 0; i < ncss.length; i++) {
+            ncss[i] = (i * 7919) % 37;
+        }
+        NcssFunctionRows rows = functions(ncss);
+        Integer[] sorted = new Integer[ncss.length];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = i;
+        }
+        final int[] values = ncss;
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Integer.compare(values[b], values[a]);
+            }
+        });
+        int[] top = rows.top(NcssFunctionRows.NCSS, 50);
+        for (int i = 0; i < top.length; i++) {
+            assertEquals(sorted[i].intValue(), top[i]);
+        }
+    }
+
+    @Test
+    public void testTopBySeveralColumns() {
+        NcssFunctionRows rows = functions(2, 7, 4, 7, 1);
+        int[][] ranked = rows.top(new int[] {NcssFunctionRows.NCSS, NcssFunctionRows.CCN, NcssFunctionRows.NCSS}, 2);
+        assertArrayEquals(new int[] {1, 3}, ranked[0]);
+        assertArrayEquals(new int[] {4, 3}, ranked[1]);
+        assertArrayEquals(ranked[0], ranked[2]);
+        assertEquals(0, rows.top(new int[0], 2).length);
+        assertArrayEquals(new int[0], rows.top(new int[] {NcssFunctionRows.CCN}, 0)[0]);
+    }
+
+    @Test
+    public void testSort() {
+        NcssFunctionRows rows = functions(2, 7, 4, 7, 1, 4, 9);
+        assertArrayEquals(new int[] {6, 1, 3, 2, 5, 0, 4}, rows.sort(NcssFunctionRows.NCSS));
+        assertArrayEquals(new int[] {6, 5, 4, 3, 2, 1, 0}, rows.sort(NcssFunctionRows.CCN));
+        assertArrayEquals(new int[0], functions().sort(NcssFunctionRows.NCSS));
+    }
+
+    @Test
+    public void testSortLargeAndNegativeValues() {
+        int[] ncss = {70000, -1, 3, 1 << 20, 70000, -70000, 0, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        NcssFunctionRows rows = functions(ncss);
+        assertArrayEquals(rows.top(NcssFunctionRows.NCSS, ncss.length), rows.sort(NcssFunctionRows.NCSS));
+    }
+
+    @Test
+    public void testSortByName() {
+        NcssMetricsBuilder builder = new NcssMetricsBuilder();
+        for (String name : new String[] {"b.B.x()", "a.C.y()", "b.A.z()", "a.C.y()"}) {
+            builder.addFunction(new NcssFunction(name, 1, 1, 0));
+        }
+        assertArrayEquals(new int[] {1, 3, 2, 0}, builder.build().getFunctions().sortByName());
+    }
+
+    @Test
+    public void testExceeding() {
+        NcssFunctionRows rows = functions(2, 7, 4, 7);
+        assertArrayEquals(new int[] {1, 3}, rows.exceeding(NcssFunctionRows.NCSS, 4));
+        assertArrayEquals(new int[] {2, 3}, rows.exceeding(NcssFunctionRows.CCN, 1));
+    }
+
+    @Test
+    public void testOfList() {
+        NcssObject object = new NcssObject("A", 1, 2, 3, 4, 5, 6, 7);
+        NcssObjectRows rows = NcssObjectRows.of(Arrays.asList(object));
+        assertEquals(object, rows.get(0));
+        assertSame(rows, NcssObjectRows.of(rows));
+    }
+}
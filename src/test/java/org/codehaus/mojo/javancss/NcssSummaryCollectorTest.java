@@ -0,0 +1,95 @@
+package org.codehaus.mojo.javancss;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssSummaryCollector class.
+ */
+public class NcssSummaryCollectorTest {
+
+    @Test
+    public void testKeepsTopRowsAndAllTotals() {
+        NcssSummaryCollector collector = new NcssSummaryCollector(2);
+        collector.handle(new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 2, 3, 30, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.foo.A", 10, 1, 0, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.foo.B", 20, 0, 0, 0, 0, 0, 0))
+                .addFunction(new NcssFunction("org.foo.A.a()", 5, 1, 0))
+                .addFunction(new NcssFunction("org.foo.B.b()", 5, 2, 0))
+                .build());
+        collector.handle(new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 1, 1, 12, 0, 0, 0, 0))
+                .addPackage(new NcssPackage("org.bar", 1, 0, 1, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.foo.C", 12, 5, 0, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.bar.D", 1, 0, 0, 0, 0, 0, 0))
+                .addFunction(new NcssFunction("org.foo.C.c()", 9, 1, 0))
+                .addFunction(new NcssFunction("org.foo.C.d()", 5, 1, 0))
+                .build());
+
+        NcssMetrics metrics = collector.getMetrics();
+        assertEquals(2, metrics.getPackages().size());
+        assertEquals(
+                new NcssPackage("org.foo", 3, 4, 42, 0, 0, 0, 0),
+                metrics.getPackages().get(1));
+        assertEquals(4, metrics.getTotals().getObjectCount());
+        assertEquals(43, metrics.getTotals().getObjectTotal().getNcss());
+        assertEquals(4, metrics.getTotals().getFunctionCount());
+        assertEquals(24, metrics.getTotals().getFunctionTotal().getNcss());
+        assertEquals(43, metrics.getTotals().getNcss());
+
+        // top 2 by ncss (B, C) and by functions (C, A), in analysis order
+        assertEquals(Arrays.asList("org.foo.A", "org.foo.B", "org.foo.C"), objectNames(metrics));
+        // ties are kept in analysis order: c() then the first function with 5 statements
+        assertEquals(Arrays.asList("org.foo.A.a()", "org.foo.C.c()"), functionNames(metrics));
+    }
+
+    @Test
+    public void testConfiguredRankings() {
+        NcssSummaryCollector collector =
+                new NcssSummaryCollector(1, NcssRanking.parse(new String[] {"function:ccn", "object:classes"}));
+        collector.handle(new NcssMetricsBuilder()
+                .addObject(new NcssObject("org.foo.A", 10, 1, 0, 0, 0, 0, 0))
+                .addObject(new NcssObject("org.foo.B", 1, 1, 3, 0, 0, 0, 0))
+                .addFunction(new NcssFunction("org.foo.A.a()", 9, 1, 0))
+                .addFunction(new NcssFunction("org.foo.B.b()", 1, 4, 0))
+                .build());
+        NcssMetrics metrics = collector.getMetrics();
+        assertEquals(Arrays.asList("org.foo.B"), objectNames(metrics));
+        assertEquals(Arrays.asList("org.foo.B.b()"), functionNames(metrics));
+    }
+
+    @Test
+    public void testZeroRowLimit() {
+        NcssSummaryCollector collector = new NcssSummaryCollector(0);
+        collector.handle(new NcssMetricsBuilder()
+                .addObject(new NcssObject("org.foo.A", 10, 1, 0, 0, 0, 0, 0))
+                .addFunction(new NcssFunction("org.foo.A.a()", 5, 1, 0))
+                .build());
+        NcssMetrics metrics = collector.getMetrics();
+        assertTrue(metrics.getObjects().isEmpty());
+        assertTrue(metrics.getFunctions().isEmpty());
+        assertEquals(1, metrics.getTotals().getFunctionCount());
+    }
+
+    private static List<String> objectNames(NcssMetrics metrics) {
+        List<String> names = new ArrayList<>();
+        for (NcssObject metric : metrics.getObjects()) {
+            names.add(metric.getName());
+        }
+        return names;
+    }
+
+    private static List<String> functionNames(NcssMetrics metrics) {
+        List<String> names = new ArrayList<>();
+        for (NcssFunction metric : metrics.getFunctions()) {
+            names.add(metric.getName());
+        }
+        return names;
+    }
+}
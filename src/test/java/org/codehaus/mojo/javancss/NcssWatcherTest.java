@@ -0,0 +1,107 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssWatcher class.
+ */
+public class NcssWatcherTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    private File foo;
+
+    private NcssAnalyzer analyzer;
+
+    private NcssWatcher watcher;
+
+    @Before
+    public void setUp() throws Exception {
+        root = folder.newFolder("src").getCanonicalFile();
+        foo = new File(root, "Foo.java");
+        write(foo, "class Foo { void a() {} }");
+        write(new File(root, "Bar.java"), "class Bar { void b() {} }");
+        analyzer = new NcssAnalyzer();
+        analyzer.setIsolateParseFailures(true);
+        analyzer.setKeepWorkers(true);
+        watcher = new NcssWatcher(Collections.singletonList(root), null, new String[] {"**/Skip*"}, analyzer);
+        watcher.analyzeAll();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        watcher.close();
+        analyzer.close();
+    }
+
+    @Test
+    public void testAnalyzeAll() {
+        assertEquals(2, watcher.getMetrics().getTotals().getObjectCount());
+        assertEquals(2, watcher.getMetrics().getTotals().getFunctionCount());
+    }
+
+    @Test
+    public void testUpdateChangedSource() throws Exception {
+        write(foo, "class Foo { void a() {} void c() { if (true) {} } }");
+        assertTrue(watcher.update(Collections.singletonList(foo)));
+        assertEquals(3, watcher.getMetrics().getTotals().getFunctionCount());
+        assertEquals(
+                2,
+                watcher.getMetrics(Collections.singletonList(foo))
+                        .getFunctions()
+                        .size());
+    }
+
+    @Test
+    public void testUpdateUnchangedMetrics() throws Exception {
+        write(foo, "class Foo {\n  void a() {}\n}\n");
+        assertFalse(watcher.update(Collections.singletonList(foo)));
+    }
+
+    @Test
+    public void testUpdateDeletedAndBrokenSources() throws Exception {
+        assertTrue(foo.delete());
+        File broken = new File(root, "Broken.java");
+        write(broken, "class Broken {");
+        assertTrue(watcher.update(Arrays.asList(foo, broken)));
+        NcssMetrics metrics = watcher.getMetrics();
+        assertEquals(1, metrics.getTotals().getObjectCount());
+        assertEquals(1, metrics.getFailures().size());
+        assertEquals(broken.getPath(), metrics.getFailures().get(0).getFile());
+    }
+
+    @Test
+    public void testAwaitChanges() throws Exception {
+        watcher.start();
+        File created = new File(root, "pkg/Baz.java");
+        assertTrue(created.getParentFile().mkdirs());
+        write(created, "package pkg; class Baz {}");
+        write(new File(root, "Skipped.java"), "class Skipped {}");
+        write(foo, "class Foo {}");
+
+        Set<File> changed = watcher.awaitChanges(200);
+        assertTrue(changed.toString(), changed.contains(foo));
+        assertTrue(changed.toString(), changed.contains(created));
+        assertFalse(changed.toString(), changed.contains(new File(root, "Skipped.java")));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,144 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for NcssXmlReader class, reading back what NcssXmlWriter wrote.
+ */
+public class NcssXmlReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 1, 2, 10, 1, 3, 0, 0))
+                .addPackage(new NcssPackage("org.bar", 1, 1, 2500, 0, 0, 4, 5))
+                .addPackage(new NcssPackage("org.foo", 1, 0, 2, 0, 0, 1, 0))
+                .addObject(new NcssObject("org.foo.A<T>", 10, 2, 0, 1, 3, 0, 0))
+                .addObject(new NcssObject("org.bar.B", 2500, 1, 0, 0, 0, 4, 5))
+                .addObject(new NcssObject("org.foo.C", 2, 0, 0, 0, 0, 1, 0))
+                .addFunction(new NcssFunction("org.foo.A.run(List<T>)", 8, 3, 1))
+                .addFunction(new NcssFunction("org.bar.B.b()", 2499, 40, 0))
+                .addFunction(new NcssFunction("org.foo.C.c()", 1, 1, 0))
+                .addFailure(new NcssFailure("src/Bad.java", "ParseException in src/Bad.java\nEncountered \"->\""))
+                .build();
+        File file = folder.newFile("javancss-raw-report.xml");
+        NcssXmlWriter.write(file, metrics);
+
+        NcssMetrics read = NcssXmlReader.read(file);
+        assertEquals(metrics.getPackages(), read.getPackages());
+        assertEquals(metrics.getObjects(), read.getObjects());
+        assertEquals(metrics.getFunctions(), read.getFunctions());
+        assertEquals(metrics.getFailures(), read.getFailures());
+        assertEquals(2, read.getTotals().getPackageCount());
+        assertEquals(2512, read.getTotals().getNcss());
+        assertEquals(
+                new NcssPackage("org.foo", 2, 2, 12, 1, 3, 1, 0),
+                read.getPackages().get(1));
+
+        // the distributions are written, and computed again from the rows when read back
+        String xml = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(xml, xml.contains("      <function_ccn>\n        <count>3</count>\n        <p50>3</p50>\n"));
+        assertTrue(xml, xml.contains("        <p99>40</p99>\n        <max>40</max>\n      </function_ccn>\n"));
+        assertEquals(2499, read.getDistributions().getTotal().getFunctionNcss().getMax());
+    }
+
+    @Test
+    public void testRootsRoundTrip() throws IOException {
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 2, 3, 12, 1, 3, 1, 0))
+                .addRoot(new NcssRoot("src/main/java", Arrays.asList(new NcssPackage("org.foo", 1, 2, 10, 1, 3, 0, 0))))
+                .addRoot(new NcssRoot(
+                        "target/generated-sources/<gen>",
+                        Arrays.asList(new NcssPackage("org.foo", 1, 1, 2, 0, 0, 1, 0))))
+                .build();
+        File file = folder.newFile("javancss-raw-report.xml");
+        NcssXmlWriter.write(file, metrics);
+
+        NcssMetrics read = NcssXmlReader.read(file);
+        assertEquals(metrics.getPackages(), read.getPackages());
+        assertEquals(2, read.getRoots().size());
+        assertEquals("target/generated-sources/<gen>", read.getRoots().get(1).getDirectory());
+        assertEquals(
+                metrics.getRoots().get(0).getPackages(), read.getRoots().get(0).getPackages());
+        assertEquals(2, read.getRoots().get(1).getTotal().getNcss());
+    }
+
+    @Test
+    public void testAverages() {
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addFunction(new NcssFunction("a()", 1, 1, 0))
+                .addFunction(new NcssFunction("b()", 1, 1, 0))
+                .addFunction(new NcssFunction("c()", 2, 2, 0))
+                .build();
+        NcssTotals totals = metrics.getTotals();
+        assertEquals(1.33, NcssTotals.average(totals.getFunctionTotal().getNcss(), totals.getFunctionCount()), 0);
+        assertEquals(0, NcssTotals.average(totals.getObjectTotal().getNcss(), totals.getObjectCount()), 0);
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws IOException {
+        NcssMetrics metrics = new NcssMetricsBuilder()
+                .addPackage(new NcssPackage("org.foo", 1, 2, 10, 1, 3, 0, 0))
+                .addFunction(new NcssFunction("org.foo.A.run()", 8, 3, 1))
+                .build();
+        File file = new File(folder.getRoot(), "javancss-raw-report.xml.gz");
+        NcssXmlWriter.write(file, metrics);
+
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(0x1f, bytes[0] & 0xff);
+        assertEquals(0x8b, bytes[1] & 0xff);
+        assertEquals(metrics.getFunctions(), NcssXmlReader.read(file).getFunctions());
+
+        // recognized by its content, not by its name
+        File renamed = new File(folder.getRoot(), "renamed.xml");
+        assertTrue(file.renameTo(renamed));
+        assertEquals(metrics.getPackages(), NcssXmlReader.read(renamed).getPackages());
+    }
+
+    @Test
+    public void testLocate() throws IOException {
+        File plain = new File(folder.getRoot(), "javancss-raw-report.xml");
+        File compressed = new File(folder.getRoot(), "javancss-raw-report.xml.gz");
+        assertEquals(plain, NcssXmlReader.locate(plain));
+        assertTrue(compressed.createNewFile());
+        assertEquals(compressed, NcssXmlReader.locate(plain));
+        assertTrue(plain.createNewFile());
+        assertTrue(compressed.setLastModified(plain.lastModified() - 10000));
+        assertEquals(plain, NcssXmlReader.locate(plain));
+    }
+
+    @Test
+    public void testSkipsUnknownElements() throws IOException {
+        File file = folder.newFile("javancss-raw-report.xml");
+        String xml = "<?xml version=\"1.0\"?>\n<javancss><!-- JavaNCSS -->\n  <date>2024-01-01</date>\n"
+                + "  <objects><object><name>A</name><ncss> 3 </ncss><extra><ncss>9</ncss></extra></object>\n"
+                + "    <averages><ncss>3.00</ncss></averages></objects>\n"
+                + "  <functions><function><name>A.a()</name><ccn>2</ccn></function><ncss>3</ncss></functions>\n"
+                + "</javancss>\n";
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        NcssMetrics read = NcssXmlReader.read(file);
+        assertEquals(Arrays.asList(new NcssObject("A", 3, 0, 0, 0, 0, 0, 0)), read.getObjects());
+        assertEquals(Arrays.asList(new NcssFunction("A.a()", 0, 2, 0)), read.getFunctions());
+        assertTrue(read.getPackages().isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidFile() throws IOException {
+        File file = folder.newFile("broken.xml");
+        Files.write(file.toPath(), "<javancss><packages>".getBytes(StandardCharsets.UTF_8));
+        NcssXmlReader.read(file);
+    }
+}
@@ -0,0 +1,74 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for SourceChunker class.
+ */
+public class SourceChunkerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<File> files;
+
+    @Before
+    public void setUp() throws IOException {
+        files = new ArrayList<>();
+        int[] sizes = {10, 70, 20, 40, 30, 50, 60};
+        for (int i = 0; i < sizes.length; i++) {
+            File file = folder.newFile("Source" + i + ".java");
+            Files.write(file.toPath(), new byte[sizes[i]]);
+            files.add(file);
+        }
+    }
+
+    @Test
+    public void testEveryFileIsInExactlyOneChunk() {
+        List<List<File>> chunks = SourceChunker.split(files, 3);
+        assertEquals(3, chunks.size());
+        Set<File> seen = new HashSet<>();
+        for (List<File> chunk : chunks) {
+            for (File file : chunk) {
+                assertTrue(seen.add(file));
+            }
+        }
+        assertEquals(new HashSet<>(files), seen);
+    }
+
+    @Test
+    public void testChunksAreBalancedAndLargestFirst() {
+        List<List<File>> chunks = SourceChunker.split(files, 2);
+        assertEquals(2, chunks.size());
+        // 70+40+30 against 60+50+20+10
+        assertEquals(140, cost(chunks.get(0)));
+        assertEquals(140, cost(chunks.get(1)));
+        assertEquals(70, chunks.get(0).get(0).length());
+    }
+
+    @Test
+    public void testNoMoreChunksThanFiles() {
+        assertEquals(files.size(), SourceChunker.split(files, 100).size());
+        assertTrue(SourceChunker.split(new ArrayList<File>(), 4).isEmpty());
+    }
+
+    private static long cost(List<File> chunk) {
+        long cost = 0;
+        for (File file : chunk) {
+            cost += file.length();
+        }
+        return cost;
+    }
+}
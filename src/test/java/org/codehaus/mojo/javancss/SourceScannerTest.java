@@ -0,0 +1,125 @@
+package org.codehaus.mojo.javancss;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test for SourceScanner class.
+ */
+public class SourceScannerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File basedir;
+
+    @Before
+    public void setUp() throws IOException {
+        basedir = folder.newFolder("src");
+        write("Root.java", "class Root {}");
+        write("org/foo/Foo.java", "class Foo {}");
+        write("org/foo/Foo.txt", "not java");
+        write("org/foo/generated/Gen.java", "class Gen {}");
+        write("org/bar/Bar.java", "class Bar { void bar() {} }");
+        write("com/baz/deep/er/Baz.java", "class Baz {}");
+    }
+
+    @Test
+    public void testDefaultIncludes() throws IOException {
+        assertEquals(
+                Arrays.asList(
+                        "Root.java",
+                        "com/baz/deep/er/Baz.java",
+                        "org/bar/Bar.java",
+                        "org/foo/Foo.java",
+                        "org/foo/generated/Gen.java"),
+                paths(new SourceScanner(basedir, null, null).scan()));
+    }
+
+    @Test
+    public void testSameFilesAsDirectoryScanner() throws IOException {
+        String[][] cases = {
+            {"**\\*.java", null},
+            {"org/**", "**/generated/**"},
+            {"**/*.java", "**/generated/"},
+            {"org/*/F?o.java", null},
+            {"*.java", "org/**"},
+            {"**/deep/**/*.java,org/bar/*", "Root.java"},
+            {"%regex[.*Ba.\\.java]", null},
+        };
+        for (String[] patterns : cases) {
+            String[] includes = patterns[0].split(",");
+            String[] excludes = (patterns[1] != null) ? patterns[1].split(",") : null;
+            DirectoryScanner ds = new DirectoryScanner();
+            ds.setBasedir(basedir);
+            ds.setIncludes(includes);
+            ds.setExcludes(excludes);
+            ds.scan();
+            List<String> expected = new ArrayList<>();
+            for (String path : ds.getIncludedFiles()) {
+                expected.add(path.replace(File.separatorChar, '/'));
+            }
+            List<String> actual = paths(new SourceScanner(basedir, includes, excludes).scan());
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals(Arrays.toString(patterns), expected, actual);
+        }
+    }
+
+    @Test
+    public void testSizes() throws IOException {
+        for (SourceScanner.Source source : new SourceScanner(basedir, null, null).scan()) {
+            assertEquals(source.getFile().length(), source.getSize());
+        }
+    }
+
+    @Test
+    public void testScanIsKept() throws IOException {
+        SourceScanner scanner = new SourceScanner(basedir, null, null);
+        List<SourceScanner.Source> first = scanner.scan();
+        write("org/foo/Late.java", "class Late {}");
+        assertSame(first, scanner.scan());
+    }
+
+    @Test
+    public void testSelect() {
+        List<String> paths = Arrays.asList("org/foo/Foo.java", "org/foo/generated/Gen.java", "README.md");
+        SourceScanner scanner = new SourceScanner(basedir, null, new String[] {"**/generated/**"});
+        assertEquals(Collections.singletonList(new File(basedir, "org/foo/Foo.java")), scanner.select(paths));
+    }
+
+    @Test
+    public void testExistingRoots() {
+        File foo = new File(basedir, "org/foo");
+        List<String> paths =
+                Arrays.asList(foo.getPath(), new File(basedir, "missing").getPath(), basedir.getPath(), foo.getPath());
+        assertEquals(Arrays.asList(foo, basedir), SourceScanner.existingRoots(paths));
+    }
+
+    private static List<String> paths(List<SourceScanner.Source> sources) {
+        List<String> paths = new ArrayList<>();
+        for (SourceScanner.Source source : sources) {
+            paths.add(source.getPath());
+        }
+        return paths;
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(basedir, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}